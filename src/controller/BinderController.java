@@ -35,7 +35,8 @@ public class BinderController extends ContainerController {
     /**
      * Handles the complete trade process between a card from a binder and a card from the collection.
      * Prompts the user to select an outgoing card and input an incoming card.
-     * If the trade is unbalanced by more than 1.0 in value, it asks for user confirmation.
+     * If the trade is unbalanced by $1.00 or more in value, it asks for user confirmation.
+     * The swap itself is applied as one transaction, so a rejected trade leaves the binder unchanged.
      * After a successful trade, updates the binder and refreshes the GUI.
      *
      * @param binder The binder where the trade is taking place.
@@ -44,13 +45,14 @@ public class BinderController extends ContainerController {
         Card outgoingCard = BinderViewHelper.selectOutgoingCard(binder);
         if (outgoingCard == null) return;
 
-        Card incomingCard = BinderViewHelper.createIncomingCardDialog(binder);
+        Card incomingCard = BinderViewHelper.createIncomingCardDialog(binder, tcis.getCatalog());
         if (incomingCard == null) return;
+        incomingCard = tcis.getCatalog().intern(incomingCard);
 
         try {
-            double valueDifference = incomingCard.getTotalValue() - outgoingCard.getTotalValue();
+            Money valueDifference = incomingCard.getTotalValue().minus(outgoingCard.getTotalValue());
 
-            if (Math.abs(valueDifference) >= 1.0) {
+            if (valueDifference.abs().compareTo(Money.ofCents(100)) >= 0) {
                 boolean proceed = BinderViewHelper.confirmUnbalancedTrade(
                     outgoingCard.getName(),
                     incomingCard.getName(),
@@ -59,8 +61,7 @@ public class BinderController extends ContainerController {
                 if (!proceed) return;
             }
 
-            binder.addCard(incomingCard);
-            binder.removeCard(outgoingCard);
+            tcis.tradeIn(binder, outgoingCard, incomingCard);
 
             gui.refreshAll();
             BinderViewHelper.showTradeSuccess(outgoingCard.getName(), incomingCard.getName());
@@ -78,16 +79,16 @@ public class BinderController extends ContainerController {
      * @return The total sale value after applying applicable adjustments.
      */
     @Override
-    protected double calculateSaleValue(CardContainer container) {
+    protected Money calculateSaleValue(CardContainer container) {
         if (!(container instanceof Binder)) {
             return super.calculateSaleValue(container);
         }
 
         Binder binder = (Binder) container;
-        double value = super.calculateSaleValue(binder);
+        Money value = super.calculateSaleValue(binder);
 
         if (binder.getType() == BinderType.RARES || binder.getType() == BinderType.LUXURY) {
-            value *= 1.1;
+            value = value.scale(110, 100);
         }
 
         return value;
@@ -99,8 +100,8 @@ public class BinderController extends ContainerController {
      * @param binder   The binder whose price is to be updated.
      * @param newPrice The new selling price to be set.
      */
-    public void handleSetPrice(Binder binder, double newPrice) {
-        binder.setSellingPrice(newPrice);
+    public void handleSetPrice(Binder binder, Money newPrice) {
+        tcis.setSellingPrice(binder, newPrice);
         gui.refreshAll();
     }
 }
@@ -13,10 +13,13 @@
 package controller;
 
 import model.*;
+import persistence.*;
 import view.*;
 import enums.*;
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * A utility controller class responsible for managing user interactions with the card collection,
@@ -25,7 +28,8 @@ import java.awt.*;
 public class CollectionController {
 
     /**
-     * Opens a dialog to allow the user to input details for a new card and adds it to the collection if valid.
+     * Opens a dialog to allow the user to input details for a new card and adds the requested number
+     * of copies to the collection in one step if valid.
      * Also updates the UI components (panel and stats).
      *
      * @param tcis   The main TradingCardInventorySystem instance.
@@ -38,6 +42,7 @@ public class CollectionController {
         JComboBox<Rarity> rarityBox = new JComboBox<>(Rarity.values());
         JComboBox<Variant> variantBox = new JComboBox<>(Variant.values());
         JTextField valueField = new JTextField();
+        JTextField copiesField = new JTextField("1");
 
         dialogPanel.add(new JLabel("Name:"));
         dialogPanel.add(nameField);
@@ -47,6 +52,8 @@ public class CollectionController {
         dialogPanel.add(variantBox);
         dialogPanel.add(new JLabel("Base Value:"));
         dialogPanel.add(valueField);
+        dialogPanel.add(new JLabel("Copies:"));
+        dialogPanel.add(copiesField);
 
         int result = JOptionPane.showConfirmDialog(null, dialogPanel, "Add New Card", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
@@ -59,18 +66,25 @@ public class CollectionController {
                 Rarity rarity = (Rarity) rarityBox.getSelectedItem();
                 Variant variant = Variant.NORMAL;
 
-                if (rarity == Rarity.RARE || rarity == Rarity.LEGENDARY) {
+                if (rarity.hasVariants()) {
                     variant = (Variant) variantBox.getSelectedItem();
                 }
 
-                double value = Double.parseDouble(valueField.getText());
+                Money value = Money.parse(valueField.getText());
 
-                if (value < 0) {
+                if (value.isNegative()) {
                     throw new IllegalArgumentException("Value must not be negative.");
                 }
 
-                Card card = new Card(name, rarity, variant, value);
-                tcis.getCollection().addCard(card);
+                int copies = Integer.parseInt(copiesField.getText().trim());
+                if (copies < 1) {
+                    throw new IllegalArgumentException("Copies must be at least 1.");
+                }
+
+                Card card = CardContainerViewHelper.suggestExistingCard(tcis.getCatalog(),
+                                                                        new Card(name, rarity, variant, value));
+                if (card == null) return;
+                tcis.addCards(card, copies);
                 panel.refreshCards();
                 gui.updateStatsPanel();
             } catch (Exception ex) {
@@ -79,6 +93,47 @@ public class CollectionController {
         }
     }
 
+    /**
+     * Asks for a CSV or JSON-lines price list and imports every valid row into the collection,
+     * then reports how many rows were read and refused, with the first few refusals. The import
+     * runs on a background thread, so the window stays responsive while a large list is read.
+     *
+     * @param tcis  The main TradingCardInventorySystem instance.
+     * @param gui   The main GUI reference to update components after changes.
+     * @param panel The CollectionPanel to refresh once the import is done.
+     */
+    public static void openImportDialog(TradingCardInventorySystem tcis, TCISGUI gui, CollectionPanel panel) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(gui) != JFileChooser.APPROVE_OPTION) return;
+
+        Path file = chooser.getSelectedFile().toPath();
+        new SwingWorker<CardImporter.Report, Void>() {
+            @Override
+            protected CardImporter.Report doInBackground() throws IOException {
+                return CardImporter.importFile(file, tcis);
+            }
+
+            @Override
+            protected void done() {
+                panel.refreshCards();
+                gui.updateStatsPanel();
+                try {
+                    CardImporter.Report report = get();
+                    StringBuilder message = new StringBuilder();
+                    message.append(String.format("Imported %,d copies from %,d rows (%,.0f rows/sec).%n",
+                                                 report.copies(), report.rows(), report.rowsPerSecond()));
+                    message.append(String.format("Rejected rows: %,d", report.rejected()));
+                    report.rejections().stream().limit(10).forEach(rejection ->
+                        message.append(String.format("%nLine %d: %s", rejection.line(), rejection.reason())));
+                    JOptionPane.showMessageDialog(gui, message.toString());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(gui, "Could not import: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Creates a visual panel representing a card in the collection with relevant information and action buttons.
      * Allows users to view details, sell, or adjust the count of the card.
@@ -96,17 +151,24 @@ public class CollectionController {
 
         JLabel nameLabel = new JLabel(card.getName());
         JLabel countLabel = new JLabel("Copies: " + tcis.getCollection().getCardCount(card));
-        JLabel valueLabel = new JLabel("Value: $" + String.format("%.2f", card.getTotalValue()));
+        JLabel valueLabel = new JLabel("Value: $" + card.getTotalValue());
 
         // Details Button
         JButton detailsBtn = new JButton("Details");
         detailsBtn.addActionListener(e -> {
+            StringBuilder heldIn = new StringBuilder();
+            for (LocationIndex.Location location : tcis.locate(card)) {
+                String where = location.container() == tcis.getCollection() ? "Collection"
+                    : location.container().getName();
+                heldIn.append("\n  ").append(where).append(": ").append(location.count());
+            }
             JOptionPane.showMessageDialog(null,
                 "Name: " + card.getName() +
                 "\nRarity: " + card.getRarity() +
                 "\nVariant: " + card.getVariant() +
                 "\nBase Value: $" + card.getBaseValue() +
-                "\nTotal Value: $" + card.getTotalValue());
+                "\nTotal Value: $" + card.getTotalValue() +
+                "\nHeld in:" + heldIn);
         });
 
         // Sell Button
@@ -131,14 +193,18 @@ public class CollectionController {
             JButton minusBtn = new JButton("-");
 
             plusBtn.addActionListener(a -> {
-                tcis.getCollection().addCard(card);
-                gui.updateStatsPanel();
-                panel.refreshCards();
+                try {
+                    tcis.addCards(card, 1);
+                    gui.updateStatsPanel();
+                    panel.refreshCards();
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(null, ex.getMessage());
+                }
             });
 
             minusBtn.addActionListener(a -> {
                 if (tcis.getCollection().getCardCount(card) > 0) {
-                    tcis.getCollection().removeCard(card);
+                    tcis.removeCards(card, 1);
                     gui.updateStatsPanel();
                     panel.refreshCards();
                 } else {
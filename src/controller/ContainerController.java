@@ -59,7 +59,8 @@ public abstract class ContainerController {
      *   <li>Prevents duplicate entries within the container.</li>
      *   <li>Validates card compatibility with the container rules.</li>
      * </ul>
-     * On success, updates the system and GUI, and notifies the user.
+     * On success, updates the system and GUI, and notifies the user. The move itself is checked
+     * again when it runs, since another change may land between these checks and the move.
      *
      * @param container The target container.
      * @param card      The card to be added.
@@ -70,7 +71,7 @@ public abstract class ContainerController {
                 throw new IllegalArgumentException("Card not found in collection");
             }
 
-            if (container.getCards().contains(card)) {
+            if (container.getCardCount(card) > 0) {
                 throw new IllegalArgumentException("Card already exists in this binder");
             }
 
@@ -82,8 +83,11 @@ public abstract class ContainerController {
                  throw new IllegalArgumentException("Card count is zero.");
             }
             
-            container.addCard(card);
-            tcis.getCollection().removeCard(card);
+            if (!tcis.moveCard(card, container)) {
+                gui.refreshAll();
+                throw new IllegalArgumentException("Could not add " + card.getName() + " to "
+                                                   + container.getName() + "; the collection changed meanwhile.");
+            }
             gui.refreshAll();
 
             BinderViewHelper.showInfoDialog(
@@ -121,7 +125,7 @@ public abstract class ContainerController {
      * @param container The container to sell.
      */
     public void handleSale(CardContainer container) {
-        double value = calculateSaleValue(container);
+        Money value = calculateSaleValue(container);
 
         if (JOptionPane.YES_OPTION ==
             JOptionPane.showConfirmDialog(
@@ -142,20 +146,19 @@ public abstract class ContainerController {
      * @param container The container whose value is being calculated.
      * @return The total sale value.
      */
-    protected double calculateSaleValue(CardContainer container) {
+    protected Money calculateSaleValue(CardContainer container) {
         return container.getTotalValue();
     }
 
     /**
-     * Removes a card from the container and returns it to the main collection.
-     * Refreshes the GUI afterward.
+     * Removes a card from the container and returns all of its copies to the main collection
+     * in one bulk transfer. Refreshes the GUI once afterward.
      *
      * @param container The container to remove the card from.
      * @param card      The card to be removed and returned to the collection.
      */
     public void handleRemoveCard(CardContainer container, Card card) {
-        container.remove(card);
-        tcis.getCollection().addCard(card);
+        tcis.returnToCollection(container, card);
         gui.refreshAll();
     }
 }
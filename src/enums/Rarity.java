@@ -15,5 +15,15 @@ public enum Rarity {
     COMMON,
     UNCOMMON,
     RARE,
-    LEGENDARY
+    LEGENDARY;
+
+    /**
+     * Indicates whether cards of this rarity come in variants. Cards of any other rarity are
+     * always {@link Variant#NORMAL}, whatever variant was asked for.
+     *
+     * @return True for rare and legendary cards.
+     */
+    public boolean hasVariants() {
+        return this == RARE || this == LEGENDARY;
+    }
 }
\ No newline at end of file
@@ -21,8 +21,12 @@ public enum Variant {
     /** Value multiplier based on variant type. */
     private final double multiplier;
 
+    /** The same multiplier in hundredths, for exact fixed-point arithmetic. */
+    private final int multiplierPercent;
+
     Variant(double multiplier) {
         this.multiplier = multiplier;
+        this.multiplierPercent = (int) Math.round(multiplier * 100);
     }
 
     /**
@@ -33,4 +37,14 @@ public enum Variant {
     public double getMultiplier() {
         return multiplier;
     }
+
+    /**
+     * Returns the value multiplier in hundredths (e.g. 150 for 1.5x),
+     * so values in cents can be scaled without floating-point error.
+     *
+     * @return The multiplier as a percentage.
+     */
+    public int getMultiplierPercent() {
+        return multiplierPercent;
+    }
 }
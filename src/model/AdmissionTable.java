@@ -0,0 +1,218 @@
+/**
+ * AdmissionTable.java
+ *
+ * A compiled card admission rule. Every rule that depends only on a card's rarity and variant is
+ * compiled once into a 4x4 Rarity x Variant bitmask, so checking a card is a single bit test and
+ * checking many cards at once can run over the collection's bitmap indexes instead of card by card.
+ *
+ * The built-in {@link BinderType} rules are precompiled; custom rules are compiled with
+ * {@link #compile(BiPredicate)} into the same representation.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import enums.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Rarity x Variant admission bitmask with single-card and bulk checks.
+ */
+public final class AdmissionTable {
+
+    /** Number of variants, which is the width of one rarity row in the mask. */
+    private static final int VARIANTS = Variant.values().length;
+
+    /** Precompiled tables for each binder type. */
+    private static final Map<BinderType, AdmissionTable> BY_TYPE = new EnumMap<>(BinderType.class);
+
+    static {
+        for (BinderType type : BinderType.values()) {
+            BY_TYPE.put(type, compile((rarity, variant) -> switch (type) {
+                case PAUPER -> rarity == Rarity.COMMON || rarity == Rarity.UNCOMMON;
+                case RARES -> rarity == Rarity.RARE || rarity == Rarity.LEGENDARY;
+                case LUXURY -> variant != Variant.NORMAL;
+                case COLLECTOR -> (rarity == Rarity.RARE || rarity == Rarity.LEGENDARY)
+                        && variant != Variant.NORMAL;
+                case NON_CURATED -> true;
+            }));
+        }
+    }
+
+    /** Bit {@code rarity * VARIANTS + variant} is set when that combination is admitted. */
+    private final int mask;
+
+    /**
+     * Constructs a table from a compiled mask.
+     *
+     * @param mask The admission bitmask.
+     */
+    private AdmissionTable(int mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Returns the precompiled table for a binder type.
+     *
+     * @param type The binder type.
+     * @return The table enforcing that type's rules.
+     */
+    public static AdmissionTable forType(BinderType type) {
+        return BY_TYPE.get(type);
+    }
+
+    /**
+     * Compiles a rule over rarity and variant into a table by evaluating it once per combination.
+     *
+     * @param rule The rule deciding whether a combination is admitted.
+     * @return The compiled table.
+     */
+    public static AdmissionTable compile(BiPredicate<Rarity, Variant> rule) {
+        int mask = 0;
+        for (Rarity rarity : Rarity.values()) {
+            for (Variant variant : Variant.values()) {
+                if (rule.test(rarity, variant)) {
+                    mask |= 1 << bit(rarity, variant);
+                }
+            }
+        }
+        return new AdmissionTable(mask);
+    }
+
+    /**
+     * Rebuilds a table from a mask returned by {@link #getMask()}, for example when reading a
+     * saved binder back. Masks equal to a built-in type's return that type's shared table.
+     *
+     * @param mask The admission bitmask.
+     * @return The table.
+     * @throws IllegalArgumentException If the mask has bits outside the Rarity x Variant grid.
+     */
+    public static AdmissionTable fromMask(int mask) {
+        if ((mask & -(1 << Rarity.values().length * VARIANTS)) != 0) {
+            throw new IllegalArgumentException("Invalid admission mask " + Integer.toHexString(mask) + ".");
+        }
+        for (AdmissionTable table : BY_TYPE.values()) {
+            if (table.mask == mask) return table;
+        }
+        return new AdmissionTable(mask);
+    }
+
+    /**
+     * Returns the compiled bitmask, with bit {@code rarity.ordinal() * 4 + variant.ordinal()}
+     * set for each admitted combination.
+     *
+     * @return The admission bitmask.
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Checks whether a rarity and variant combination is admitted.
+     *
+     * @param rarity  The rarity.
+     * @param variant The variant.
+     * @return True if admitted.
+     */
+    public boolean admits(Rarity rarity, Variant variant) {
+        return (mask >>> bit(rarity, variant) & 1) != 0;
+    }
+
+    /**
+     * Checks whether a card is admitted.
+     *
+     * @param card The card to check.
+     * @return True if admitted.
+     */
+    public boolean admits(Card card) {
+        return admits(card.getRarity(), card.getVariant());
+    }
+
+    /**
+     * Returns the admitted cards out of a group of cards.
+     *
+     * @param cards The candidate cards.
+     * @return The admitted cards, in iteration order.
+     */
+    public List<Card> filter(Iterable<Card> cards) {
+        List<Card> admitted = new ArrayList<>();
+        for (Card card : cards) {
+            if (admits(card)) {
+                admitted.add(card);
+            }
+        }
+        return admitted;
+    }
+
+    /**
+     * Returns the catalog ids of all cards owned in the collection that this table admits,
+     * computed in one pass over the collection's rarity and variant bitmaps.
+     *
+     * @param collection The collection to select from.
+     * @return A new bitmap of admitted catalog ids.
+     */
+    public BitSet select(Collection collection) {
+        BitSet result = new BitSet();
+        int fullRow = (1 << VARIANTS) - 1;
+        synchronized (collection) {
+            for (Rarity rarity : Rarity.values()) {
+                int row = mask >>> (rarity.ordinal() * VARIANTS) & fullRow;
+                if (row == 0) continue;
+
+                BitSet rarityBits = collection.rarityBits(rarity);
+                if (row == fullRow) {
+                    result.or(rarityBits);
+                    continue;
+                }
+                for (Variant variant : Variant.values()) {
+                    if ((row >>> variant.ordinal() & 1) != 0) {
+                        BitSet pair = (BitSet) rarityBits.clone();
+                        pair.and(collection.variantBits(variant));
+                        result.or(pair);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares two tables by the combinations they admit.
+     *
+     * @param obj The object to compare.
+     * @return True if both admit exactly the same combinations.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof AdmissionTable other && other.mask == mask;
+    }
+
+    /**
+     * Generates a hash code from the mask.
+     *
+     * @return Hash code based on the admitted combinations.
+     */
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    /**
+     * Returns the bit position of a combination in the mask.
+     *
+     * @param rarity  The rarity.
+     * @param variant The variant.
+     * @return The bit index.
+     */
+    private static int bit(Rarity rarity, Variant variant) {
+        return rarity.ordinal() * VARIANTS + variant.ordinal();
+    }
+}
@@ -29,8 +29,11 @@ public class Binder extends CardContainer implements Sellable, Tradeable {
     /** Type of the binder determining its rules and behavior. */
     private BinderType type;
 
+    /** Compiled rule deciding which cards the binder accepts. */
+    private AdmissionTable admission;
+
     /** The assigned or computed selling price of the binder. */
-    private double sellingPrice;
+    private volatile Money sellingPrice;
 
     /**
      * Constructs a binder with a given name and type.
@@ -40,9 +43,22 @@ public class Binder extends CardContainer implements Sellable, Tradeable {
      * @param type The type of the binder.
      */
     public Binder(String name, BinderType type) {
+        this(name, type, AdmissionTable.forType(type));
+    }
+
+    /**
+     * Constructs a binder with a given name and type but a custom admission rule.
+     * The default capacity is set to 20 cards.
+     *
+     * @param name      The name of the binder.
+     * @param type      The type of the binder.
+     * @param admission The compiled rule deciding which cards the binder accepts.
+     */
+    public Binder(String name, BinderType type, AdmissionTable admission) {
         super(name, 20);
         this.type = type;
-        this.sellingPrice = 0;
+        this.admission = admission;
+        this.sellingPrice = Money.ZERO;
     }
 
     /**
@@ -54,12 +70,21 @@ public class Binder extends CardContainer implements Sellable, Tradeable {
         return type;
     }
 
+    /**
+     * Gets the compiled admission rule of the binder, for bulk admission checks.
+     *
+     * @return The binder's {@link AdmissionTable}.
+     */
+    public AdmissionTable getAdmissionTable() {
+        return admission;
+    }
+
     /**
      * Gets the current selling price of the binder.
      *
      * @return The selling price.
      */
-    public double getSellingPrice() {
+    public Money getSellingPrice() {
         return sellingPrice;
     }
 
@@ -68,32 +93,20 @@ public class Binder extends CardContainer implements Sellable, Tradeable {
      *
      * @param price The price to set.
      */
-    public void setSellingPrice(double price) {
+    public void setSellingPrice(Money price) {
         this.sellingPrice = price;
     }
 
     /**
-     * Checks if a card can be added to this binder based on its type restrictions.
+     * Checks if a card can be added to this binder based on its type restrictions,
+     * which are precompiled into the binder's {@link AdmissionTable}.
      *
      * @param card The card to check.
      * @return True if the card is allowed in this binder, false otherwise.
      */
     public boolean canAddCard(Card card) {
         if (getUniqueCards() >= capacity) return false;
-
-        switch (type) {
-            case PAUPER:
-                return card.getRarity() == Rarity.COMMON || card.getRarity() == Rarity.UNCOMMON;
-            case RARES:
-                return card.getRarity() == Rarity.RARE || card.getRarity() == Rarity.LEGENDARY;
-            case LUXURY:
-                return card.getVariant() != Variant.NORMAL;
-            case COLLECTOR:
-                return (card.getRarity() == Rarity.RARE || card.getRarity() == Rarity.LEGENDARY)
-                        && card.getVariant() != Variant.NORMAL;
-            default:
-                return true;
-        }
+        return admission.admits(card);
     }
 
     /**
@@ -117,38 +130,23 @@ public class Binder extends CardContainer implements Sellable, Tradeable {
     /**
      * Computes the binder's selling value.
      * For RARES and LUXURY types, the higher between total value and user-set price is used,
-     * with a 10% bonus applied.
+     * with a 10% bonus applied (rounded half-even to the cent).
      *
      * @return The computed selling value.
      */
-    public double getSellingValue() {
-        double value = getTotalValue();
+    public Money getSellingValue() {
+        Money value = getTotalValue();
         if (type == BinderType.LUXURY || type == BinderType.RARES) {
-            value = Math.max(value, sellingPrice);
-            return value * 1.1;
+            return value.max(sellingPrice).scale(110, 100);
         }
         return value;
     }
 
     /**
-     * Adds a card to the binder and updates the selling price accordingly.
-     *
-     * @param card The card to add.
-     */
-    @Override
-    public void addCard(Card card) {
-        super.addCard(card);
-        this.sellingPrice = getTotalValue();
-    }
-
-    /**
-     * Removes a card from the binder and updates the selling price accordingly.
-     *
-     * @param card The card to remove.
+     * Updates the selling price to the new total value after every change to the binder's cards.
      */
     @Override
-    public void removeCard(Card card) {
-        super.removeCard(card);
+    protected void contentsChanged() {
         this.sellingPrice = getTotalValue();
     }
 }
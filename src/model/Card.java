@@ -2,8 +2,11 @@
  * Card.java
  *
  * Represents a trading card with a name, rarity, visual variant, and base monetary value.
- * The total value of the card is determined by multiplying the base value with the variant's multiplier.
+ * The total value of the card is determined by multiplying the base value with the variant's multiplier,
+ * rounded half-even to the cent and computed once, since a card's attributes never change.
  * Equality and hashing are based solely on the card's name.
+ * Cards interned through a {@link CardCatalog} are canonical instances, so equal cards are usually
+ * the same object, and they carry a dense integer id that per-card structures can index by.
  * 
  * Used across containers like collections, binders, and decks within the Trading Card Inventory System.
  * 
@@ -31,7 +34,13 @@ public class Card {
     private Variant variant;
 
     /** The base monetary value of the card before applying variant multiplier. */
-    private double baseValue;
+    private Money baseValue;
+
+    /** The base value multiplied by the variant multiplier. */
+    private Money totalValue;
+
+    /** The catalog id of the card, or -1 if the card has not been interned. */
+    private int id = -1;
 
     /**
      * Constructs a new card instance.
@@ -41,11 +50,12 @@ public class Card {
      * @param variant   The card's visual variant.
      * @param baseValue The card's base value.
      */
-    public Card(String name, Rarity rarity, Variant variant, double baseValue) {
+    public Card(String name, Rarity rarity, Variant variant, Money baseValue) {
         this.name = name;
         this.rarity = rarity;
         this.variant = variant;
         this.baseValue = baseValue;
+        this.totalValue = variant == null ? baseValue : baseValue.scale(variant.getMultiplierPercent(), 100);
     }
 
     /**
@@ -80,17 +90,48 @@ public class Card {
      *
      * @return Base value.
      */
-    public double getBaseValue() {
+    public Money getBaseValue() {
         return baseValue;
     }
 
+    /**
+     * Returns the catalog id of the card.
+     *
+     * @return The dense catalog id, or -1 if the card was not interned through a {@link CardCatalog}.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Assigns the catalog id of the card. Only called by {@link CardCatalog} when interning.
+     *
+     * @param id The dense catalog id.
+     */
+    void assignId(int id) {
+        this.id = id;
+    }
+
     /**
      * Returns the total value of the card, calculated as base value multiplied by variant multiplier.
      *
      * @return Total card value.
      */
-    public double getTotalValue() {
-        return baseValue * variant.getMultiplier();
+    public Money getTotalValue() {
+        return totalValue;
+    }
+
+    /**
+     * Checks whether another card has all the same attributes, not only the same name.
+     * Equal cards that differ here are different versions of a card, such as before and after
+     * a change in price.
+     *
+     * @param other The other card.
+     * @return True if name, rarity, variant and base value all match.
+     */
+    public boolean sameAs(Card other) {
+        return this == other || (name.equals(other.name) && rarity == other.rarity
+            && variant == other.variant && baseValue.equals(other.baseValue));
     }
 
     /**
@@ -125,12 +166,12 @@ public class Card {
     @Override
     public String toString() {
         return String.format(
-            "Name: %s | Rarity: %s | Variant: %s | Base Value: $%.2f | Total Value: $%.2f",
+            "Name: %s | Rarity: %s | Variant: %s | Base Value: $%s | Total Value: $%s",
             name,
             rarity,
             variant,
             baseValue,
-            getTotalValue()
+            totalValue
         );
     }
 }
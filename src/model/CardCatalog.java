@@ -0,0 +1,204 @@
+/**
+ * CardCatalog.java
+ *
+ * Interns every distinct (name, rarity, variant, base value) combination into one canonical
+ * {@link Card} instance with a dense integer id. Ids are handed out in order starting at 0 and are
+ * never reused, so any per-card structure can be a flat array indexed by {@link Card#getId()}.
+ *
+ * Dialogs and imports should create cards through the catalog instead of calling the {@link Card}
+ * constructor, so that the collection, binders, decks and trades all share the same objects.
+ *
+ * Names can also be searched with typos allowed, through a trigram index that is built the first
+ * time it is needed and then kept up to date as cards are interned. Dialogs use it to offer an
+ * existing card before a near-duplicate of it is created.
+ *
+ * The catalog is safe to share between threads; all methods synchronize on it.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import enums.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of canonical cards, addressable by their attributes or by id.
+ */
+public class CardCatalog {
+
+    /**
+     * Identity of a card in the catalog.
+     */
+    private record CardKey(String name, Rarity rarity, Variant variant, Money baseValue) {
+    }
+
+    /** Canonical cards by their identifying attributes. */
+    private final Map<CardKey, Card> byKey;
+
+    /** Canonical cards by id. */
+    private Card[] byId;
+
+    /** Number of interned cards, which is also the next id to hand out. */
+    private int size;
+
+    /** Typo-tolerant index of card names; null until the first fuzzy search. */
+    private CardNameIndex nameIndex;
+
+    /**
+     * Constructs an empty catalog.
+     */
+    public CardCatalog() {
+        this.byKey = new HashMap<>();
+        this.byId = new Card[64];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the canonical card with the given attributes, creating it if this is the first request.
+     *
+     * @param name      The card name.
+     * @param rarity    The card rarity.
+     * @param variant   The card variant.
+     * @param baseValue The card base value.
+     * @return The canonical card.
+     */
+    public synchronized Card intern(String name, Rarity rarity, Variant variant, Money baseValue) {
+        CardKey key = new CardKey(name, rarity, variant, baseValue);
+        Card card = byKey.get(key);
+        if (card == null) {
+            card = new Card(name, rarity, variant, baseValue);
+            register(key, card);
+        }
+        return card;
+    }
+
+    /**
+     * Returns the canonical card equivalent to the given one.
+     * If the card itself is not yet known, it becomes the canonical instance.
+     *
+     * @param card The card to intern.
+     * @return The canonical card.
+     */
+    public synchronized Card intern(Card card) {
+        int id = card.getId();
+        if (id >= 0 && id < size && byId[id] == card) {
+            return card;
+        }
+
+        CardKey key = new CardKey(card.getName(), card.getRarity(), card.getVariant(), card.getBaseValue());
+        Card canonical = byKey.get(key);
+        if (canonical == null) {
+            if (id >= 0) {
+                // Interned by another catalog; keep that id intact and register a copy.
+                canonical = new Card(card.getName(), card.getRarity(), card.getVariant(), card.getBaseValue());
+            } else {
+                canonical = card;
+            }
+            register(key, canonical);
+        }
+        return canonical;
+    }
+
+    /**
+     * Returns the canonical card with the given id.
+     *
+     * @param id The catalog id.
+     * @return The card with that id.
+     * @throws IllegalArgumentException If no card has that id.
+     */
+    public synchronized Card get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown card id: " + id);
+        }
+        return byId[id];
+    }
+
+    /**
+     * Checks whether the given instance is the canonical card of this catalog.
+     *
+     * @param card The card to check.
+     * @return True if the card was interned by this catalog.
+     */
+    public synchronized boolean contains(Card card) {
+        int id = card.getId();
+        return id >= 0 && id < size && byId[id] == card;
+    }
+
+    /**
+     * Returns the number of interned cards. Valid ids range from 0 to {@code size() - 1}.
+     *
+     * @return Number of interned cards.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds cards whose names are close to the given one, allowing a number of typos that grows with
+     * the length of the name. See {@link #findSimilar(String, int, int)}.
+     *
+     * @param name  The name, possibly misspelled.
+     * @param limit The most cards to return.
+     * @return The closest cards first.
+     */
+    public synchronized List<Card> findSimilar(String name, int limit) {
+        String query = name.trim();
+        return findSimilar(query, CardNameIndex.defaultDistance(query.length()), limit);
+    }
+
+    /**
+     * Finds cards whose names are within an edit distance of the given one, ignoring case. Each
+     * insertion, deletion or substitution of a character counts as one edit. Cards that share a
+     * name but differ in rarity, variant or value are all returned. Every match is found as long as
+     * maxDistance is at most a third of the name's length; above that, names sharing no three-letter
+     * run with the query at all can be missed.
+     *
+     * @param name        The name, possibly misspelled.
+     * @param maxDistance The most edits allowed.
+     * @param limit       The most cards to return.
+     * @return The closest cards first; among equally close cards, the one whose name is nearer in
+     *         length comes first, then the one interned earlier.
+     * @throws IllegalArgumentException If maxDistance or limit is negative.
+     */
+    public synchronized List<Card> findSimilar(String name, int maxDistance, int limit) {
+        if (maxDistance < 0 || limit < 0) {
+            throw new IllegalArgumentException("Distance and limit must not be negative.");
+        }
+        if (nameIndex == null) {
+            nameIndex = new CardNameIndex();
+            for (int id = 0; id < size; id++) {
+                nameIndex.add(id, byId[id].getName());
+            }
+        }
+        List<Card> cards = new ArrayList<>();
+        for (CardNameIndex.Match match : nameIndex.search(name.trim(), maxDistance, limit)) {
+            cards.add(byId[match.id()]);
+        }
+        return cards;
+    }
+
+    /**
+     * Stores a new canonical card under the next id.
+     *
+     * @param key  The attributes of the card.
+     * @param card The card to register.
+     */
+    private void register(CardKey key, Card card) {
+        if (size == byId.length) {
+            byId = Arrays.copyOf(byId, size * 2);
+        }
+        card.assignId(size);
+        byId[size++] = card;
+        byKey.put(key, card);
+        if (nameIndex != null) {
+            nameIndex.add(card.getId(), card.getName());
+        }
+    }
+}
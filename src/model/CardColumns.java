@@ -0,0 +1,241 @@
+/**
+ * CardColumns.java
+ *
+ * A read-only, column-oriented snapshot of the live entries of a {@link CardContainer}, meant for
+ * reporting scans by rarity, variant and value. Each row is one card with at least one copy, and
+ * its attributes are stored in parallel primitive arrays (rarity and variant ordinals as bytes,
+ * per-copy values as long cents and copy counts as ints), so valuation and filter queries run as
+ * tight loops over primitive arrays instead of chasing a {@link Card} object per entry.
+ * Values are exact cents, so totals do not depend on the order rows are summed in.
+ *
+ * Snapshots are obtained through {@link CardContainer#getColumns()}, which rebuilds them lazily
+ * only when the container has changed since the last call.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import enums.*;
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays view of a container's cards for analytics scans.
+ */
+public class CardColumns {
+
+    /** Number of rows. */
+    private final int size;
+
+    /** The card of each row, used only to map results back to objects. */
+    private final Card[] cards;
+
+    /** Rarity ordinal of each row. */
+    private final byte[] rarities;
+
+    /** Variant ordinal of each row. */
+    private final byte[] variants;
+
+    /** Per-copy total value of each row, in cents. */
+    private final long[] valueCents;
+
+    /** Copy count of each row. */
+    private final int[] counts;
+
+    /** Version of the container the snapshot was built from. */
+    private final long version;
+
+    /**
+     * Builds the columns from the live entries of a card map.
+     *
+     * @param map     The map to read.
+     * @param live    The number of live entries in the map.
+     * @param version The version of the owning container.
+     */
+    CardColumns(CardCountMap map, int live, long version) {
+        this.size = live;
+        this.cards = new Card[live];
+        this.rarities = new byte[live];
+        this.variants = new byte[live];
+        this.valueCents = new long[live];
+        this.counts = new int[live];
+        this.version = version;
+
+        int row = 0;
+        for (int slot = map.nextLiveSlot(-1); slot >= 0; slot = map.nextLiveSlot(slot)) {
+            Card card = map.keyAt(slot);
+            cards[row] = card;
+            rarities[row] = (byte) card.getRarity().ordinal();
+            variants[row] = (byte) card.getVariant().ordinal();
+            valueCents[row] = card.getTotalValue().getCents();
+            counts[row] = map.countAt(slot);
+            row++;
+        }
+    }
+
+    /**
+     * Returns the number of rows, one per card with at least one copy.
+     *
+     * @return Number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the container version the snapshot reflects.
+     *
+     * @return The container version at build time.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the card of a row.
+     *
+     * @param row The row index.
+     * @return The card.
+     */
+    public Card cardAt(int row) {
+        return cards[row];
+    }
+
+    /**
+     * Returns the copy count of a row.
+     *
+     * @param row The row index.
+     * @return The number of copies.
+     */
+    public int countAt(int row) {
+        return counts[row];
+    }
+
+    /**
+     * Builds a bit mask selecting the given rarities, for use with the filtered queries.
+     * Passing no rarities selects all of them.
+     *
+     * @param rarities The rarities to select.
+     * @return The rarity mask.
+     */
+    public static int rarityMask(Rarity... rarities) {
+        if (rarities.length == 0) return ~0;
+        int mask = 0;
+        for (Rarity r : rarities) {
+            mask |= 1 << r.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Builds a bit mask selecting the given variants, for use with the filtered queries.
+     * Passing no variants selects all of them.
+     *
+     * @param variants The variants to select.
+     * @return The variant mask.
+     */
+    public static int variantMask(Variant... variants) {
+        if (variants.length == 0) return ~0;
+        int mask = 0;
+        for (Variant v : variants) {
+            mask |= 1 << v.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the total value of every copy in the snapshot.
+     *
+     * @return The total value.
+     */
+    public Money totalValue() {
+        return totalValue(~0, ~0);
+    }
+
+    /**
+     * Returns the total value of every copy whose rarity and variant are selected by the masks.
+     *
+     * @param rarityMask  Mask from {@link #rarityMask(Rarity...)}.
+     * @param variantMask Mask from {@link #variantMask(Variant...)}.
+     * @return The total value of the matching copies.
+     */
+    public Money totalValue(int rarityMask, int variantMask) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if ((rarityMask >>> rarities[i] & 1) != 0 && (variantMask >>> variants[i] & 1) != 0) {
+                total = Math.addExact(total, Math.multiplyExact(valueCents[i], counts[i]));
+            }
+        }
+        return Money.ofCents(total);
+    }
+
+    /**
+     * Returns the number of copies whose rarity and variant are selected by the masks.
+     *
+     * @param rarityMask  Mask from {@link #rarityMask(Rarity...)}.
+     * @param variantMask Mask from {@link #variantMask(Variant...)}.
+     * @return The number of matching copies.
+     */
+    public long countCopies(int rarityMask, int variantMask) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if ((rarityMask >>> rarities[i] & 1) != 0 && (variantMask >>> variants[i] & 1) != 0) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total value of all copies grouped by rarity.
+     *
+     * @return Values in cents indexed by {@link Rarity#ordinal()}.
+     */
+    public long[] valueByRarity() {
+        long[] totals = new long[Rarity.values().length];
+        for (int i = 0; i < size; i++) {
+            totals[rarities[i]] = Math.addExact(totals[rarities[i]], Math.multiplyExact(valueCents[i], counts[i]));
+        }
+        return totals;
+    }
+
+    /**
+     * Returns the total value of all copies grouped by variant.
+     *
+     * @return Values in cents indexed by {@link Variant#ordinal()}.
+     */
+    public long[] valueByVariant() {
+        long[] totals = new long[Variant.values().length];
+        for (int i = 0; i < size; i++) {
+            totals[variants[i]] = Math.addExact(totals[variants[i]], Math.multiplyExact(valueCents[i], counts[i]));
+        }
+        return totals;
+    }
+
+    /**
+     * Returns the rows whose rarity and variant are selected by the masks
+     * and whose per-copy total value lies within the given range.
+     *
+     * @param rarityMask  Mask from {@link #rarityMask(Rarity...)}.
+     * @param variantMask Mask from {@link #variantMask(Variant...)}.
+     * @param minValue    The minimum per-copy total value, inclusive.
+     * @param maxValue    The maximum per-copy total value, inclusive.
+     * @return The matching row indexes in ascending order.
+     */
+    public int[] select(int rarityMask, int variantMask, Money minValue, Money maxValue) {
+        long min = minValue.getCents();
+        long max = maxValue.getCents();
+        int[] rows = new int[size];
+        int found = 0;
+        for (int i = 0; i < size; i++) {
+            long value = valueCents[i];
+            if ((rarityMask >>> rarities[i] & 1) != 0 && (variantMask >>> variants[i] & 1) != 0
+                    && value >= min && value <= max) {
+                rows[found++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, found);
+    }
+}
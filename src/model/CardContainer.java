@@ -6,7 +6,28 @@
  * Subclasses must define specific behaviors for rules such as which cards can be added,
  * and whether the container can be sold.
  * 
- * This class uses a Map to store cards and their counts, allowing flexible access and updates.
+ * This class uses a {@link CardCountMap} to store cards and their counts without boxing,
+ * allowing flexible access and in-place updates.
+ *
+ * When the last copy of a card is removed, its entry stays in the map with a count of zero
+ * (a dead entry), so adding the card again reuses the slot. Dead entries are skipped by every
+ * query and view. Once they make up more than the compaction ratio of all stored entries,
+ * the table is rebuilt with only the live entries.
+ *
+ * Every mutation also updates a {@link PersistentCardMap} of the live contents by path copying,
+ * at O(log n) cost. Each version of that map is immutable, so the set and map views, {@link #forEachCard},
+ * {@link #snapshot()} and {@link InventoryHistory} all hand out the current version without copying
+ * anything, and reading a view never makes a later write copy the card table.
+ *
+ * The container is safe to share between threads. Every mutation and every read of the card table
+ * holds the container's own lock, so operations are linearizable and containers never contend with
+ * each other; {@link InventoryTransaction} takes the same locks. The running totals, the version and
+ * the persistent map are volatile, so reading them never blocks.
+ *
+ * While a container belongs to a {@link TradingCardInventorySystem}, every change in a card's count
+ * is also reported to the system's {@link CountListener}, which keeps the system-wide indexes that
+ * span all containers in step with them. The report carries the stored card, which is the canonical
+ * one, and is only collected while the lock is held; the indexes are updated after the commit.
  * 
  * @version 2.0
  * @author Theodore Garcia
@@ -16,21 +37,72 @@
 package model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 public abstract class CardContainer {
 
+    /**
+     * Receives every change in the count of a card in a container, under the container's lock.
+     */
+    interface CountListener {
+
+        /**
+         * Called after a card's count in a container changed.
+         *
+         * @param container The container.
+         * @param card      The stored card.
+         * @param oldCount  The count before, 0 if the card had no copies.
+         * @param newCount  The count after, 0 if no copies are left.
+         */
+        void countChanged(CardContainer container, Card card, int oldCount, int newCount);
+    }
+
+    /** Default share of dead entries above which the card table is compacted. */
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    /** Dead entries below this number never trigger a compaction, so small containers keep their slots. */
+    private static final int MIN_DEAD_ENTRIES = 16;
+
     /** The name of the container. */
     protected String name;
 
     /** Stores each card and how many copies are in the container. */
-    protected Map<Card, Integer> cards;
+    protected CardCountMap cards;
 
     /** The maximum number of unique cards allowed in this container. */
     protected int capacity;
 
+    /** Running total of all copies in the container, kept in sync by the mutators. */
+    private volatile int totalCards;
+
+    /** Running number of cards with a count above zero, kept in sync by the mutators. */
+    private volatile int uniqueCards;
+
+    /** Running total value in cents of all copies in the container, kept in sync by the mutators. */
+    private volatile long totalValueCents;
+
+    /** Share of dead entries among all stored entries that triggers a compaction. */
+    private double compactionRatio;
+
+    /** Number of compactions performed so far. */
+    private int compactions;
+
+    /** Incremented by every mutation, so cached views can tell when they are stale. */
+    private volatile long version;
+
+    /** Last columnar snapshot handed out, or null if none has been built. */
+    private CardColumns columns;
+
+    /** Last immutable snapshot handed out, or null if none has been taken. */
+    private ContainerSnapshot snapshot;
+
+    /** Persistent copy of the live contents, replaced by every mutation. */
+    private volatile PersistentCardMap persistent = PersistentCardMap.EMPTY;
+
+    /** Told about count changes while the container belongs to a system; null otherwise. */
+    private CountListener countListener;
+
     /**
      * Constructs a new CardContainer with the given name and capacity.
      *
@@ -40,7 +112,8 @@ public abstract class CardContainer {
     public CardContainer(String name, int capacity) {
         this.name = name;
         this.capacity = capacity;
-        this.cards = new HashMap<>();
+        this.cards = new CardCountMap();
+        this.compactionRatio = DEFAULT_COMPACTION_RATIO;
     }
 
     /**
@@ -76,37 +149,463 @@ public abstract class CardContainer {
      * @param card The card to add.
      */
     public void addCard(Card card) {
-        cards.put(card, cards.getOrDefault(card, 0) + 1);
+        addCards(card, 1);
     }
 
     /**
-     * Removes one copy of a card from the container. If it's the last copy, sets count to 0.
+     * Adds several copies of a card in one step: one table update and one change notification,
+     * however many copies are added.
+     *
+     * @param card   The card to add.
+     * @param copies The number of copies to add.
+     * @throws IllegalArgumentException If copies is negative.
+     */
+    public synchronized void addCards(Card card, int copies) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Copies must not be negative: " + copies);
+        }
+        if (copies == 0) return;
+
+        // A dead entry left by another version of the card, such as one at an older price, is
+        // dropped below so the card is stored as itself.
+        int found = cards.slotOf(card);
+        boolean stale = found >= 0 && cards.countAt(found) == 0 && !cards.keyAt(found).sameAs(card);
+        Card stored = found >= 0 && !stale ? cards.keyAt(found) : card;
+
+        // Check both totals for overflow before anything changes, so a refused add leaves no trace.
+        int newTotalCards = Math.addExact(totalCards, copies);
+        long newTotalValueCents = Math.addExact(totalValueCents, stored.getTotalValue().times(copies).getCents());
+
+        if (stale) {
+            Card dead = cards.keyAt(found);
+            cards.removeAt(found);
+            cardDeleted(dead);
+        }
+        int entries = cards.size();
+        int slot = cards.addTo(card, copies);
+        Card key = cards.keyAt(slot);
+        int count = cards.countAt(slot);
+        if (cards.size() != entries) {
+            cardInserted(key);
+        }
+
+        version++;
+        totalCards = newTotalCards;
+        totalValueCents = newTotalValueCents;
+        if (count == copies) {
+            uniqueCards++;
+            liveCardAdded(key);
+        }
+        track(key, count);
+        counted(key, count - copies, count);
+        contentsChanged();
+        assert verifyTotals();
+    }
+
+    /**
+     * Removes one copy of a card from the container. If it's the last copy, sets count to 0,
+     * leaving a dead entry that may trigger a compaction.
      *
      * @param card The card to remove.
      */
     public void removeCard(Card card) {
-        if (cards.containsKey(card)) {
-            int count = cards.get(card);
-            if (count > 1) {
-                cards.put(card, count - 1);
+        removeCards(card, 1);
+    }
+
+    /**
+     * Removes up to the given number of copies of a card in one step. If no copies are left,
+     * the count is set to 0, leaving a dead entry that may trigger a compaction.
+     *
+     * @param card   The card to remove.
+     * @param copies The number of copies to remove.
+     * @return The number of copies actually removed, which is less than requested if the container
+     *         held fewer.
+     * @throws IllegalArgumentException If copies is negative.
+     */
+    public synchronized int removeCards(Card card, int copies) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Copies must not be negative: " + copies);
+        }
+        int slot = cards.slotOf(card);
+        if (slot < 0 || copies == 0 || cards.countAt(slot) == 0) {
+            return 0;
+        }
+
+        version++;
+        int removed = Math.min(copies, cards.countAt(slot));
+        int count = cards.addAt(slot, -removed);
+        Card key = cards.keyAt(slot);
+        totalCards -= removed;
+        totalValueCents = Math.subtractExact(totalValueCents, key.getTotalValue().times(removed).getCents());
+        if (count == 0) {
+            uniqueCards--;
+            liveCardRemoved(key);
+            compactIfNeeded();
+        }
+        track(key, count);
+        counted(key, count + removed, count);
+        contentsChanged();
+        assert verifyTotals();
+        return removed;
+    }
+
+    /**
+     * Removes a card and all of its copies from the container.
+     *
+     * @param card The card to remove.
+     * @return The number of copies removed.
+     */
+    public synchronized int remove(Card card) {
+        int slot = cards.slotOf(card);
+        if (slot < 0) {
+            return 0;
+        }
+
+        version++;
+        int count = cards.countAt(slot);
+        Card key = cards.keyAt(slot);
+        if (count > 0) {
+            totalCards -= count;
+            totalValueCents = Math.subtractExact(totalValueCents, key.getTotalValue().times(count).getCents());
+            uniqueCards--;
+        }
+        cards.removeAt(slot);
+        if (count > 0) {
+            liveCardRemoved(key);
+        }
+        cardDeleted(key);
+        track(key, 0);
+        counted(key, count, 0);
+        contentsChanged();
+        assert verifyTotals();
+        return count;
+    }
+
+    /**
+     * Replaces a card with another version of itself, such as the same card at a new price,
+     * keeping its count.
+     *
+     * @param card        The card held now.
+     * @param replacement The version to hold instead; it must have the same name.
+     * @return The number of copies replaced, 0 if the container does not hold this version.
+     * @throws IllegalArgumentException If the replacement has a different name.
+     */
+    public synchronized int replaceCard(Card card, Card replacement) {
+        if (!card.equals(replacement)) {
+            throw new IllegalArgumentException(replacement.getName() + " cannot replace " + card.getName() + ".");
+        }
+        Card stored = getStoredCard(card);
+        if (stored == null || !stored.sameAs(card)) {
+            return 0;
+        }
+        int count = remove(card);
+        addCards(replacement, count);
+        return count;
+    }
+
+    /**
+     * Removes every card from the container in one step.
+     *
+     * @return The number of copies removed.
+     */
+    public synchronized int clear() {
+        if (cards.isEmpty()) {
+            return 0;
+        }
+
+        CardCountMap old = cards;
+        int removed = totalCards;
+        cards = new CardCountMap();
+        version++;
+        totalCards = 0;
+        uniqueCards = 0;
+        totalValueCents = 0;
+        persistent = PersistentCardMap.EMPTY;
+
+        for (int slot = old.nextSlot(-1); slot >= 0; slot = old.nextSlot(slot)) {
+            if (old.countAt(slot) > 0) {
+                liveCardRemoved(old.keyAt(slot));
+            }
+            cardDeleted(old.keyAt(slot));
+            counted(old.keyAt(slot), old.countAt(slot), 0);
+        }
+        contentsChanged();
+        return removed;
+    }
+
+    /**
+     * Checks whether several copies of a card could be added at once.
+     * The default only asks {@link #canAddCard(Card)}, which suits containers whose limit is on
+     * unique cards; containers that limit total copies override this.
+     *
+     * @param card   The card to check.
+     * @param copies The number of copies.
+     * @return True if all copies can be added.
+     */
+    public boolean canAddCards(Card card, int copies) {
+        return copies <= 0 || canAddCard(card);
+    }
+
+    /**
+     * Returns the live contents as a persistent map. Every mutation keeps it up to date, so the
+     * call is free and does not take the lock.
+     *
+     * @return The persistent map of live cards and counts.
+     */
+    PersistentCardMap persistentCards() {
+        return persistent;
+    }
+
+    /**
+     * Changes the contents to match a persistent map taken earlier from this kind of container.
+     * Only the cards that differ are touched, and all hooks fire as for ordinary mutations, so
+     * subclass indexes stay in sync.
+     *
+     * @param target The contents to restore.
+     */
+    synchronized void restoreContents(PersistentCardMap target) {
+        PersistentCardMap current = persistent;
+        if (current == target) return;
+
+        current.diff(target, (card, oldCount, newCount) -> {
+            if (newCount > oldCount) {
+                addCards(card, newCount - oldCount);
+            } else if (newCount == 0) {
+                // Drop the entry, so a newer version of the card that follows is stored as itself.
+                remove(card);
             } else {
-                cards.put(card, 0);
+                removeCards(card, oldCount - newCount);
             }
+        });
+        // Equal contents, but keep the target itself so it goes on sharing branches with history.
+        persistent = target;
+    }
+
+    /**
+     * Starts reporting count changes to a system's listener. Every card already held is reported
+     * first as going from no copies to its current count.
+     *
+     * @param listener The listener.
+     */
+    synchronized void attach(CountListener listener) {
+        countListener = listener;
+        for (int slot = cards.nextLiveSlot(-1); slot >= 0; slot = cards.nextLiveSlot(slot)) {
+            listener.countChanged(this, cards.keyAt(slot), 0, cards.countAt(slot));
         }
     }
 
-    public void remove(Card card) {
-        cards.remove(card);
+    /**
+     * Stops reporting count changes. Every card still held is reported first as going to no copies,
+     * so the listener forgets the container's contents.
+     */
+    synchronized void detach() {
+        CountListener listener = countListener;
+        if (listener == null) return;
+        for (int slot = cards.nextLiveSlot(-1); slot >= 0; slot = cards.nextLiveSlot(slot)) {
+            listener.countChanged(this, cards.keyAt(slot), cards.countAt(slot), 0);
+        }
+        countListener = null;
     }
+
     /**
-     * Checks if the container has a card by name.
+     * Reports a change in a card's count to the listener, if there is one and the count moved.
+     *
+     * @param card     The stored card.
+     * @param oldCount The count before.
+     * @param newCount The count after.
+     */
+    private void counted(Card card, int oldCount, int newCount) {
+        if (countListener != null && oldCount != newCount) {
+            countListener.countChanged(this, card, oldCount, newCount);
+        }
+    }
+
+    /**
+     * Records a card's new count in the persistent map.
+     *
+     * @param card  The stored card.
+     * @param count Its new count.
+     */
+    private void track(Card card, int count) {
+        persistent = persistent.with(card, count);
+    }
+
+    /**
+     * Returns an immutable view of the container as it is now. Taking a snapshot copies nothing,
+     * and repeated calls without an intervening change return the same object. The snapshot holds
+     * the current version of the persistent map, so it stays valid after the container changes
+     * and never makes the container copy its table.
+     *
+     * @return The snapshot of the current contents.
+     */
+    public synchronized ContainerSnapshot snapshot() {
+        ContainerSnapshot current = snapshot;
+        if (current == null || current.getVersion() != version) {
+            current = new ContainerSnapshot(name, persistent, version, totalCards, uniqueCards, totalValueCents);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Called after a card that was not stored before gets an entry in the container.
+     * Subclasses override this to keep secondary indexes in sync; the default does nothing.
+     *
+     * @param card The stored card.
+     */
+    protected void cardInserted(Card card) {
+    }
+
+    /**
+     * Called after a card's entry has been deleted from the container.
+     * Subclasses override this to keep secondary indexes in sync; the default does nothing.
+     *
+     * @param card The card that was stored.
+     */
+    protected void cardDeleted(Card card) {
+    }
+
+    /**
+     * Called after a card's count goes from zero (or absent) to one.
+     * Subclasses override this to keep indexes of owned cards in sync; the default does nothing.
+     *
+     * @param card The stored card.
+     */
+    protected void liveCardAdded(Card card) {
+    }
+
+    /**
+     * Called after a card's count drops to zero or its entry is removed while it still had copies.
+     * Subclasses override this to keep indexes of owned cards in sync; the default does nothing.
+     *
+     * @param card The stored card.
+     */
+    protected void liveCardRemoved(Card card) {
+    }
+
+    /**
+     * Called once at the end of every mutation, however many copies or cards it touched.
+     * Subclasses override this to refresh values derived from the contents; the default does nothing.
+     */
+    protected void contentsChanged() {
+    }
+
+    /**
+     * Returns the share of dead entries above which the card table is compacted.
+     *
+     * @return The compaction ratio.
+     */
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    /**
+     * Sets the share of dead entries above which the card table is compacted.
+     * A ratio of 1.0 disables automatic compaction.
+     *
+     * @param ratio A value greater than 0.0 and at most 1.0.
+     * @throws IllegalArgumentException If the ratio is out of range.
+     */
+    public synchronized void setCompactionRatio(double ratio) {
+        if (!(ratio > 0.0 && ratio <= 1.0)) {
+            throw new IllegalArgumentException("Compaction ratio must be in (0, 1]: " + ratio);
+        }
+        this.compactionRatio = ratio;
+        compactIfNeeded();
+    }
+
+    /**
+     * Returns the number of zero-count entries still held in the card table.
+     *
+     * @return Number of dead entries.
+     */
+    public synchronized int getDeadEntries() {
+        return cards.size() - uniqueCards;
+    }
+
+    /**
+     * Returns the share of stored entries that are live (count above zero).
+     * A value well below 1.0 means churn is leaving many dead entries behind.
+     *
+     * @return The live ratio, or 1.0 if nothing is stored.
+     */
+    public synchronized double getLiveRatio() {
+        return cards.isEmpty() ? 1.0 : (double) uniqueCards / cards.size();
+    }
+
+    /**
+     * Returns how many times the card table has been compacted.
+     *
+     * @return Number of compactions.
+     */
+    public int getCompactionCount() {
+        return compactions;
+    }
+
+    /**
+     * Rebuilds the card table with only the live entries, dropping every dead entry.
+     */
+    public synchronized void compact() {
+        if (getDeadEntries() == 0) return;
+
+        CardCountMap old = cards;
+        CardCountMap live = new CardCountMap(uniqueCards);
+        for (int slot = old.nextLiveSlot(-1); slot >= 0; slot = old.nextLiveSlot(slot)) {
+            live.addTo(old.keyAt(slot), old.countAt(slot));
+        }
+        cards = live;
+        compactions++;
+
+        for (int slot = old.nextSlot(-1); slot >= 0; slot = old.nextSlot(slot)) {
+            if (old.countAt(slot) == 0) {
+                cardDeleted(old.keyAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Compacts the card table once dead entries pass the compaction ratio.
+     */
+    private void compactIfNeeded() {
+        int dead = getDeadEntries();
+        if (dead >= MIN_DEAD_ENTRIES && dead > compactionRatio * cards.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the version of the container, which changes on every mutation.
+     *
+     * @return The current version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a read-only columnar snapshot of the container's live cards for analytics scans.
+     * The snapshot is cached and only rebuilt when the container has changed since the last call.
+     *
+     * @return The columnar snapshot.
+     */
+    public synchronized CardColumns getColumns() {
+        CardColumns snapshot = columns;
+        if (snapshot == null || snapshot.getVersion() != version) {
+            snapshot = new CardColumns(cards, uniqueCards, version);
+            columns = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Checks if the container has at least one copy of a card by name.
      *
      * @param cardName The name of the card to search for.
      * @return True if the card exists, false otherwise.
      */
-    public boolean hasCard(String cardName) {
-        Card lookup = new Card(cardName, null, null, 0.0);
-        return cards.containsKey(lookup);
+    public synchronized boolean hasCard(String cardName) {
+        Card lookup = new Card(cardName, null, null, Money.ZERO);
+        return cards.get(lookup) > 0;
     }
 
     /**
@@ -115,82 +614,125 @@ public abstract class CardContainer {
      * @param card The card to check.
      * @return The number of copies (0 if not present).
      */
-    public int getCardCount(Card card) {
-        if (cards.containsKey(card)) {
-            return cards.get(card);
-        }
-        return 0;
+    public synchronized int getCardCount(Card card) {
+        return cards.get(card);
+    }
+
+    /**
+     * Returns the version of a card the container holds, which may differ from the given card in
+     * everything but its name, such as its value.
+     *
+     * @param card The card to look up by name.
+     * @return The stored card, or null if the container holds no copies of it.
+     */
+    public synchronized Card getStoredCard(Card card) {
+        int slot = cards.slotOf(card);
+        return slot < 0 || cards.countAt(slot) == 0 ? null : cards.keyAt(slot);
     }
 
     /**
      * Returns the total number of cards in the container, including duplicates.
+     * This is a running total, so the call does not walk the container.
      *
      * @return Total card count.
      */
     public int getTotalCards() {
-        int total = 0;
-        for (Integer count : cards.values()) {
-            total += count;
-        }
-        return total;
+        return totalCards;
     }
 
     /**
      * Returns how many different cards are in the container (with count > 0).
+     * This is a running total, so the call does not walk the container.
      *
      * @return Number of unique cards.
      */
     public int getUniqueCards() {
-        int unique = 0;
-        for (Map.Entry<Card, Integer> entry : cards.entrySet()) {
-            if (entry.getValue() > 0) {
-                unique++;
-            }
-        }
-        return unique;
+        return uniqueCards;
     }
 
     /**
-     * Calculates the total value of all cards in the container, including duplicates.
+     * Returns the total value of all cards in the container, including duplicates.
+     * This is a running total in exact cents, so the call does not walk the container.
      *
      * @return The total value.
      */
-    public double getTotalValue() {
-        double total = 0.0;
-        for (Map.Entry<Card, Integer> entry : cards.entrySet()) {
-            total += entry.getKey().getTotalValue() * entry.getValue();
+    public Money getTotalValue() {
+        return Money.ofCents(totalValueCents);
+    }
+
+    /**
+     * Recounts the container from scratch and checks the result against the running totals.
+     * Called after every mutation when assertions are enabled ({@code java -ea}),
+     * and can also be called directly while debugging.
+     *
+     * @return True if the running totals match the recount.
+     * @throws IllegalStateException If a running total has drifted from the recount.
+     */
+    public synchronized boolean verifyTotals() {
+        int total = 0;
+        int unique = 0;
+        long value = 0;
+        for (int slot = cards.nextSlot(-1); slot >= 0; slot = cards.nextSlot(slot)) {
+            int count = cards.countAt(slot);
+            total += count;
+            if (count > 0) {
+                unique++;
+            }
+            value = Math.addExact(value, cards.keyAt(slot).getTotalValue().times(count).getCents());
         }
-        return total;
+
+        if (total != totalCards || unique != uniqueCards || value != totalValueCents) {
+            throw new IllegalStateException(String.format(
+                "Running totals of '%s' drifted: cards %d/%d, unique %d/%d, value %s/%s",
+                name, totalCards, total, uniqueCards, unique,
+                Money.ofCents(totalValueCents), Money.ofCents(value)));
+        }
+        return true;
     }
 
     /**
-     * Returns a Set of all unique cards in the container.
-     * This does not include quantities.
+     * Returns a Set of all unique cards in the container with at least one copy.
+     * This does not include quantities. The set is a read-only view of the contents as they are
+     * now, so it costs nothing to take, needs no lock to read, and does not change if the container
+     * is modified while it is iterated. To check for a single card, use {@link #getCardCount(Card)}.
      *
      * @return Set of cards.
      */
     public Set<Card> getCards() {
-        return cards.keySet();
+        return persistent.cardSet();
     }
 
     /**
-     * Returns a List of all unique cards in the container.
-     * Useful for iteration in a GUI.
+     * Returns a List of all unique cards in the container with at least one copy.
+     * Useful for iteration in a GUI. The list is a copy of the current version of the contents,
+     * made without holding the container's lock.
      *
      * @return List of cards.
      */
     public java.util.List<Card> getAllCards() {
-        return new ArrayList<>(cards.keySet());
+        return new ArrayList<>(persistent.cardSet());
+    }
+
+    /**
+     * Visits every card with at least one copy together with its count. The pairs come from the
+     * current version of the contents, which no later change can touch, so nothing is copied or
+     * locked and the consumer may modify this or other containers.
+     *
+     * @param consumer The callback receiving each (card, count) pair.
+     */
+    public void forEachCard(CardCountMap.CountConsumer consumer) {
+        persistent.forEach(consumer);
     }
 
     /**
-     * Returns a Map of cards and their counts.
-     * This is a copy, so changes to it won't affect the actual container.
+     * Returns a Map of cards with at least one copy and their counts.
+     * Like {@link #getCards()}, this is a read-only view of the contents as they are now, so it
+     * costs nothing to take and does not change if the container is modified later.
      *
      * @return Map of cards to counts.
      */
     public Map<Card, Integer> getCardsWithCounts() {
-        return new HashMap<>(cards);
+        return persistent.asMap();
     }
 
     /**
@@ -207,6 +749,6 @@ public abstract class CardContainer {
      *
      * @return The monetary selling value.
      */
-    protected abstract double getSellingValue();
+    protected abstract Money getSellingValue();
 }
 
@@ -0,0 +1,392 @@
+/**
+ * CardCountMap.java
+ *
+ * A purpose-built multiset from {@link Card} to an {@code int} count, used as the storage of every
+ * {@link CardContainer}. Keys and counts live in two parallel arrays addressed by open addressing
+ * with linear probing, so counts are never boxed and incrementing or decrementing an existing card
+ * updates its slot in place without allocating.
+ *
+ * Entries can be visited without allocation either through {@link #forEach(CountConsumer)} or with
+ * the slot cursor methods {@link #nextSlot(int)}, {@link #keyAt(int)} and {@link #countAt(int)}.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Open-addressing hash map from cards to primitive counts.
+ */
+public class CardCountMap {
+
+    /**
+     * Callback used to visit each (card, count) pair without allocating entry objects.
+     */
+    public interface CountConsumer {
+
+        /**
+         * Receives one entry of the map.
+         *
+         * @param card  The card stored in the map.
+         * @param count The number of copies of the card.
+         */
+        void accept(Card card, int count);
+    }
+
+    /** Smallest table size; always a power of two. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** Slot keys; a null key marks an empty slot. */
+    private Card[] keys;
+
+    /** Slot counts, parallel to {@link #keys}. */
+    private int[] counts;
+
+    /** Number of occupied slots. */
+    private int size;
+
+    /** Table size minus one, used to wrap probe positions. */
+    private int mask;
+
+    /** Number of occupied slots that triggers a resize (75% load). */
+    private int resizeAt;
+
+    /**
+     * Constructs an empty map with the default capacity.
+     */
+    public CardCountMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map sized to hold the given number of cards without resizing.
+     *
+     * @param expectedSize The number of cards expected to be stored.
+     */
+    public CardCountMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the number of cards stored in the map, including cards with a count of zero.
+     *
+     * @return Number of stored cards.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map holds no cards at all.
+     *
+     * @return True if the map is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether the card is stored in the map.
+     *
+     * @param card The card to look up.
+     * @return True if the card is present, even with a count of zero.
+     */
+    public boolean containsKey(Card card) {
+        return slotOf(card) >= 0;
+    }
+
+    /**
+     * Returns the count stored for a card.
+     *
+     * @param card The card to look up.
+     * @return The stored count, or 0 if the card is absent.
+     */
+    public int get(Card card) {
+        int slot = slotOf(card);
+        return slot >= 0 ? counts[slot] : 0;
+    }
+
+    /**
+     * Returns the slot holding the card.
+     *
+     * @param card The card to look up.
+     * @return The slot index, or -1 if the card is absent.
+     */
+    public int slotOf(Card card) {
+        if (card == null) return -1;
+        int slot = indexFor(card);
+        Card key;
+        while ((key = keys[slot]) != null) {
+            if (key == card || key.equals(card)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a delta to the count of a card, inserting the card with that count if it is absent.
+     *
+     * @param card  The card to update.
+     * @param delta The amount to add to its count.
+     * @return The slot now holding the card.
+     */
+    public int addTo(Card card, int delta) {
+        int slot = indexFor(card);
+        Card key;
+        while ((key = keys[slot]) != null) {
+            if (key == card || key.equals(card)) {
+                counts[slot] += delta;
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size >= resizeAt) {
+            resize(keys.length << 1);
+            return addTo(card, delta);
+        }
+        keys[slot] = card;
+        counts[slot] = delta;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Adds a delta to the count held in a slot.
+     *
+     * @param slot  An occupied slot.
+     * @param delta The amount to add.
+     * @return The new count.
+     */
+    public int addAt(int slot, int delta) {
+        return counts[slot] += delta;
+    }
+
+    /**
+     * Returns the card stored in a slot.
+     *
+     * @param slot The slot index.
+     * @return The stored card, or null if the slot is empty.
+     */
+    public Card keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Returns the count stored in a slot.
+     *
+     * @param slot The slot index.
+     * @return The stored count.
+     */
+    public int countAt(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Returns the next occupied slot after the given one, for allocation-free iteration:
+     * {@code for (int s = map.nextSlot(-1); s >= 0; s = map.nextSlot(s))}.
+     *
+     * @param slot The previous slot, or -1 to start.
+     * @return The next occupied slot, or -1 when there are no more.
+     */
+    public int nextSlot(int slot) {
+        for (int i = slot + 1; i < keys.length; i++) {
+            if (keys[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the next slot after the given one whose count is above zero,
+     * skipping empty slots and zero-count entries.
+     *
+     * @param slot The previous slot, or -1 to start.
+     * @return The next live slot, or -1 when there are no more.
+     */
+    public int nextLiveSlot(int slot) {
+        for (int i = slot + 1; i < keys.length; i++) {
+            if (keys[i] != null && counts[i] > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a card from the map.
+     *
+     * @param card The card to remove.
+     * @return The count the card had, or -1 if it was absent.
+     */
+    public int remove(Card card) {
+        int slot = slotOf(card);
+        if (slot < 0) return -1;
+        int count = counts[slot];
+        removeAt(slot);
+        return count;
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the same probe run back,
+     * so lookups never need tombstones.
+     *
+     * @param slot An occupied slot.
+     */
+    public void removeAt(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        Card key;
+        while ((key = keys[next]) != null) {
+            int home = indexFor(key);
+            // Move the entry into the gap unless its home lies cyclically in (gap, next].
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = null;
+        counts[gap] = 0;
+        size--;
+    }
+
+    /**
+     * Removes every card from the map.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * Visits every (card, count) pair without allocating.
+     *
+     * @param consumer The callback receiving each entry.
+     */
+    public void forEach(CountConsumer consumer) {
+        Card[] k = keys;
+        int[] c = counts;
+        for (int i = 0; i < k.length; i++) {
+            if (k[i] != null) {
+                consumer.accept(k[i], c[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a live, read-only set view of the stored cards.
+     *
+     * @return Set of cards backed by this map.
+     */
+    public Set<Card> keySet() {
+        return new AbstractSet<Card>() {
+            @Override
+            public Iterator<Card> iterator() {
+                return new Iterator<Card>() {
+                    private int slot = nextSlot(-1);
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot >= 0;
+                    }
+
+                    @Override
+                    public Card next() {
+                        if (slot < 0) throw new NoSuchElementException();
+                        Card card = keys[slot];
+                        slot = nextSlot(slot);
+                        return card;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Card card && containsKey(card);
+            }
+        };
+    }
+
+    /**
+     * Returns an independent copy of this map.
+     *
+     * @return A new map with the same entries.
+     */
+    public CardCountMap copy() {
+        CardCountMap copy = new CardCountMap(MIN_CAPACITY);
+        copy.keys = keys.clone();
+        copy.counts = counts.clone();
+        copy.size = size;
+        copy.mask = mask;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+
+    /**
+     * Computes the home slot of a card by spreading its hash code over the table.
+     *
+     * @param card The card to hash.
+     * @return The home slot index.
+     */
+    private int indexFor(Card card) {
+        int h = card.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Allocates empty arrays of the given size.
+     *
+     * @param capacity The table size, a power of two.
+     */
+    private void allocate(int capacity) {
+        keys = new Card[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity * 3 / 4;
+    }
+
+    /**
+     * Rehashes all entries into a table of the given size.
+     *
+     * @param capacity The new table size, a power of two.
+     */
+    private void resize(int capacity) {
+        Card[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            Card key = oldKeys[i];
+            if (key != null) {
+                int slot = indexFor(key);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
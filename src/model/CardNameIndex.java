@@ -0,0 +1,285 @@
+/**
+ * CardNameIndex.java
+ *
+ * A typo-tolerant search index over the names in a {@link CardCatalog}. Every name is broken into its
+ * trigrams (runs of three characters, with the name padded so its start and end count too), and each
+ * trigram has a posting list of the catalog ids whose names contain it. A misspelled name still
+ * shares most of its trigrams with the intended one, since one edit changes at most three of them,
+ * so the ids that turn up in enough of the query's posting lists are the only candidates; those are
+ * then checked with an edit distance that gives up as soon as the bound is passed.
+ *
+ * Trigrams are hashed into a fixed number of buckets instead of being stored exactly. Two trigrams
+ * that share a bucket only add candidates, which the edit distance check then throws out, so results
+ * stay exact while the index is a pair of flat arrays. The number of buckets grows with the catalog.
+ *
+ * A name within the bound must appear in some minimum number of the query's posting lists, and so in
+ * at least one of the shortest few. Candidates are gathered from those short lists only; the long
+ * lists of common trigrams are then probed by binary search for just those candidates, so a query
+ * never walks the posting list of a trigram that nearly every name has.
+ *
+ * Not thread-safe; the catalog guards it with its own lock.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Trigram index of card names with bounded edit distance verification.
+ */
+final class CardNameIndex {
+
+    /**
+     * One verified match.
+     *
+     * @param id               The catalog id.
+     * @param distance         The edit distance from the query, ignoring case.
+     * @param lengthDifference How much longer or shorter the name is than the query.
+     */
+    record Match(int id, int distance, int lengthDifference) {
+    }
+
+    /** Fewest hash buckets. */
+    private static final int MIN_BUCKET_BITS = 10;
+
+    /** Most hash buckets. */
+    private static final int MAX_BUCKET_BITS = 20;
+
+    /** Lower-case names by catalog id. */
+    private String[] names = new String[64];
+
+    /** Number of names indexed; ids run from 0 to size - 1. */
+    private int size;
+
+    /** Number of bits of a trigram hash used to pick its bucket. */
+    private int bucketBits = MIN_BUCKET_BITS;
+
+    /** Ids by bucket, each list in ascending order; null for an empty bucket. */
+    private int[][] postings = new int[1 << MIN_BUCKET_BITS][];
+
+    /** Used length of each posting list. */
+    private int[] lengths = new int[1 << MIN_BUCKET_BITS];
+
+    /** Per-id count of shared buckets during a search; all zero between searches. */
+    private int[] shared = new int[64];
+
+    /**
+     * Returns the default number of edits tolerated for a query of a given length: none for very
+     * short names, where one edit makes almost anything match, and more for longer ones.
+     *
+     * @param length The query length.
+     * @return The edit bound.
+     */
+    static int defaultDistance(int length) {
+        if (length < 3) return 0;
+        if (length <= 5) return 1;
+        if (length <= 10) return 2;
+        return 3;
+    }
+
+    /**
+     * Indexes the name of the next catalog id.
+     *
+     * @param id   The catalog id, which must be the number of names indexed so far.
+     * @param name The card name.
+     */
+    void add(int id, String name) {
+        if (id != size) {
+            throw new IllegalStateException("Names must be indexed in id order.");
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            shared = Arrays.copyOf(shared, size * 2);
+        }
+        names[size++] = name.toLowerCase(Locale.ROOT);
+        if (size > 2 << bucketBits && bucketBits < MAX_BUCKET_BITS) {
+            rebuild(bucketBits + 1);
+        } else {
+            post(id);
+        }
+    }
+
+    /**
+     * Finds the indexed names within an edit distance of a query, ignoring case.
+     *
+     * @param query       The name to look for.
+     * @param maxDistance The most edits allowed.
+     * @param limit       The most matches to return.
+     * @return The matches, closest first; ties go to the name nearer the query's length, then to
+     *         the lower id.
+     */
+    List<Match> search(String query, int maxDistance, int limit) {
+        String lower = query.toLowerCase(Locale.ROOT);
+        List<Match> matches = new ArrayList<>();
+        if (limit <= 0) return matches;
+
+        // A match must be in at least 'needed' of the query's lists, so it is in at least one of
+        // the shortest (lists - needed + 1). Gather candidates there; probe the rest by search.
+        int[] buckets = buckets(lower);
+        int lists = buckets.length;
+        int needed = Math.max(1, lists - 3 * maxDistance);
+        int[] order = sortByLength(buckets);
+        int gather = lists - needed + 1;
+
+        int[] touched = new int[16];
+        int count = 0;
+        for (int i = 0; i < gather; i++) {
+            int bucket = order[i];
+            int[] list = postings[bucket];
+            for (int j = 0, n = lengths[bucket]; j < n; j++) {
+                int id = list[j];
+                if (shared[id]++ == 0) {
+                    if (count == touched.length) touched = Arrays.copyOf(touched, count * 2);
+                    touched[count++] = id;
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int id = touched[i];
+            int found = shared[id];
+            shared[id] = 0;
+            for (int k = gather; k < lists && found < needed && found + lists - k >= needed; k++) {
+                int bucket = order[k];
+                if (lengths[bucket] > 0 && Arrays.binarySearch(postings[bucket], 0, lengths[bucket], id) >= 0) {
+                    found++;
+                }
+            }
+            if (found >= needed) {
+                int distance = distance(lower, names[id], maxDistance);
+                if (distance <= maxDistance) {
+                    matches.add(new Match(id, distance, Math.abs(names[id].length() - lower.length())));
+                }
+            }
+        }
+
+        matches.sort((a, b) -> a.distance() != b.distance() ? Integer.compare(a.distance(), b.distance())
+            : a.lengthDifference() != b.lengthDifference()
+                ? Integer.compare(a.lengthDifference(), b.lengthDifference())
+            : Integer.compare(a.id(), b.id()));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Orders buckets by the length of their posting lists, shortest first.
+     *
+     * @param buckets The buckets.
+     * @return The same buckets, reordered.
+     */
+    private int[] sortByLength(int[] buckets) {
+        long[] keyed = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            keyed[i] = (long) lengths[buckets[i]] << 32 | buckets[i];
+        }
+        Arrays.sort(keyed);
+        int[] order = new int[buckets.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (int) keyed[i];
+        }
+        return order;
+    }
+
+    /**
+     * Adds an id to the posting lists of its name's buckets.
+     *
+     * @param id The catalog id.
+     */
+    private void post(int id) {
+        for (int bucket : buckets(names[id])) {
+            int[] list = postings[bucket];
+            int length = lengths[bucket];
+            if (list == null) {
+                list = new int[4];
+                postings[bucket] = list;
+            } else if (length == list.length) {
+                list = Arrays.copyOf(list, length * 2);
+                postings[bucket] = list;
+            }
+            list[length] = id;
+            lengths[bucket] = length + 1;
+        }
+    }
+
+    /**
+     * Rebuilds every posting list with a new number of buckets.
+     *
+     * @param bits The new number of hash bits.
+     */
+    private void rebuild(int bits) {
+        bucketBits = bits;
+        postings = new int[1 << bits][];
+        lengths = new int[1 << bits];
+        for (int id = 0; id < size; id++) {
+            post(id);
+        }
+    }
+
+    /**
+     * Returns the distinct buckets of a name's trigrams. The name is padded with two spaces in front
+     * and one behind, so a name of n characters has n + 1 trigrams and its first letters weigh more.
+     *
+     * @param name The lower-case name.
+     * @return The bucket numbers, sorted and without repeats.
+     */
+    private int[] buckets(String name) {
+        String padded = "  " + name + " ";
+        int[] buckets = new int[padded.length() - 2];
+        for (int i = 0; i < buckets.length; i++) {
+            int hash = (padded.charAt(i) * 31 + padded.charAt(i + 1)) * 31 + padded.charAt(i + 2);
+            buckets[i] = (hash * 0x9E3779B9) >>> (32 - bucketBits);
+        }
+        Arrays.sort(buckets);
+        int distinct = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (i == 0 || buckets[i] != buckets[i - 1]) buckets[distinct++] = buckets[i];
+        }
+        return Arrays.copyOf(buckets, distinct);
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings, giving up once it must exceed a bound.
+     * Only the diagonal band of width {@code 2 * max + 1} is filled in.
+     *
+     * @param a   The first string.
+     * @param b   The second string.
+     * @param max The bound.
+     * @return The distance, or {@code max + 1} if it is larger than the bound.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+
+        int[] previous = new int[m + 2];
+        int[] current = new int[m + 2];
+        for (int j = 0; j <= m; j++) previous[j] = j;
+        previous[m + 1] = max + 1;
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[0] = i;
+            if (from > 1) current[from - 1] = max + 1;
+            int rowMin = from == 1 ? i : max + 1;
+            char c = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j - 1] + cost, previous[j] + 1), current[j - 1] + 1);
+                current[j] = value;
+                if (value < rowMin) rowMin = value;
+            }
+            current[to + 1] = max + 1;
+            if (rowMin > max) return max + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+}
@@ -3,7 +3,16 @@
  * This container has effectively unlimited capacity and accepts all card types.
  * Implements default sellable behavior with no additional selling rules.
  * 
- * Provides functionality to find a card by matching its name, rarity, and variant.
+ * Provides functionality to find a card by matching its name, rarity, and variant,
+ * backed by a composite-key index that is kept in sync with every add and remove.
+ *
+ * Also keeps one bitmap per {@link Rarity} and per {@link Variant} over catalog ids of the cards
+ * currently owned, so compound filters such as "all LEGENDARY ALT_ART cards" are answered with
+ * bitwise AND/OR instead of a scan over the whole collection.
+ *
+ * Owned cards are also kept in a sorted index by lower-case name, so a case-insensitive prefix
+ * search seeks straight to the first match and reads only the matches it returns, however many
+ * cards the collection holds. This backs the search box of the collection view.
  * 
  * @version 2.0
  * @author Theodore Garcia
@@ -12,6 +21,17 @@
 
 package model;
 
+import enums.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
 /**
  * The Collection class represents the user's central repository of cards.
  * It allows adding any card without restriction and has unlimited capacity.
@@ -19,28 +39,248 @@ package model;
 public class Collection extends CardContainer {
 
     /**
-     * Constructs the main collection with a default name and unlimited capacity.
+     * Composite key used to match cards by name, rarity and variant.
+     */
+    private record MatchKey(String name, Rarity rarity, Variant variant) {
+
+        /**
+         * Builds the match key of a card.
+         *
+         * @param card The card to describe.
+         * @return The card's match key.
+         */
+        static MatchKey of(Card card) {
+            return new MatchKey(card.getName(), card.getRarity(), card.getVariant());
+        }
+    }
+
+    /** Catalog that every card entering the collection is interned into. */
+    private final CardCatalog catalog;
+
+    /** Stored cards indexed by name, rarity and variant. */
+    private final Map<MatchKey, Card> matchIndex;
+
+    /** Owned cards by lower-case name, then exact name; see {@link #nameKey(Card)}. */
+    private final NavigableMap<String, Card> byName;
+
+    /** Catalog ids of owned cards, one bitmap per rarity ordinal. */
+    private final BitSet[] byRarity;
+
+    /** Catalog ids of owned cards, one bitmap per variant ordinal. */
+    private final BitSet[] byVariant;
+
+    /**
+     * Constructs the main collection with a default name, unlimited capacity and its own catalog.
      */
     public Collection() {
+        this(new CardCatalog());
+    }
+
+    /**
+     * Constructs the main collection with a default name and unlimited capacity,
+     * interning its cards into the given catalog.
+     *
+     * @param catalog The catalog shared with the rest of the inventory.
+     */
+    public Collection(CardCatalog catalog) {
         super("Main Collection", Integer.MAX_VALUE);
+        this.catalog = catalog;
+        this.matchIndex = new HashMap<>();
+        this.byName = new TreeMap<>();
+        this.byRarity = new BitSet[Rarity.values().length];
+        this.byVariant = new BitSet[Variant.values().length];
+        for (int i = 0; i < byRarity.length; i++) {
+            byRarity[i] = new BitSet();
+        }
+        for (int i = 0; i < byVariant.length; i++) {
+            byVariant[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Returns the catalog that cards in this collection are interned into.
+     *
+     * @return The card catalog.
+     */
+    public CardCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Adds copies of a card to the collection after interning it, so the collection only ever
+     * stores canonical catalog cards. Single-card adds go through here as well.
+     *
+     * @param card   The card to add.
+     * @param copies The number of copies to add.
+     */
+    @Override
+    public void addCards(Card card, int copies) {
+        super.addCards(catalog.intern(card), copies);
     }
 
     /**
      * Searches the collection for a card that matches the given template.
-     * A match requires identical name, rarity, and variant.
+     * A match requires identical name, rarity, and variant. The lookup is a single hash probe.
      *
      * @param template The card to match against.
      * @return The matching card in the collection, or null if not found.
      */
-    public Card findMatchingCard(Card template) {
-        for (Card c : cards.keySet()) {
-            if (c.getName().equals(template.getName())
-                && c.getRarity() == template.getRarity()
-                && c.getVariant() == template.getVariant()) {
-                return c;
-            }
+    public synchronized Card findMatchingCard(Card template) {
+        return matchIndex.get(MatchKey.of(template));
+    }
+
+    /**
+     * Indexes a card that has just been stored in the collection.
+     *
+     * @param card The stored card.
+     */
+    @Override
+    protected void cardInserted(Card card) {
+        matchIndex.put(MatchKey.of(card), card);
+    }
+
+    /**
+     * Drops a card whose entry has just been deleted from the collection.
+     *
+     * @param card The card that was stored.
+     */
+    @Override
+    protected void cardDeleted(Card card) {
+        matchIndex.remove(MatchKey.of(card));
+    }
+
+    /**
+     * Returns the owned cards whose names start with a prefix, ignoring case, in name order.
+     * The search seeks to the first match in O(log n) and then reads only the matches returned.
+     *
+     * @param prefix The start of the name; an empty prefix matches every card.
+     * @param limit  The most cards to return.
+     * @return Up to {@code limit} matching cards.
+     * @throws IllegalArgumentException If limit is negative.
+     */
+    public synchronized List<Card> findByNamePrefix(String prefix, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        List<Card> result = new ArrayList<>(Math.min(limit, 64));
+        for (Map.Entry<String, Card> entry : byName.tailMap(lower, true).entrySet()) {
+            if (result.size() >= limit || !entry.getKey().startsWith(lower)) break;
+            result.add(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key of a card in the name index: its lower-case name, so lookups ignore case,
+     * then its exact name, so names that differ only in case get their own entries.
+     *
+     * @param card The card.
+     * @return The index key.
+     */
+    private static String nameKey(Card card) {
+        return card.getName().toLowerCase(Locale.ROOT) + '\0' + card.getName();
+    }
+
+    /**
+     * Returns the catalog ids of owned cards whose rarity is in {@code rarities}
+     * and whose variant is in {@code variants}.
+     *
+     * @param rarities The accepted rarities.
+     * @param variants The accepted variants.
+     * @return A new bitmap of matching catalog ids.
+     */
+    public synchronized BitSet select(Set<Rarity> rarities, Set<Variant> variants) {
+        BitSet rarityBits = new BitSet();
+        for (Rarity r : rarities) {
+            rarityBits.or(byRarity[r.ordinal()]);
+        }
+        BitSet variantBits = new BitSet();
+        for (Variant v : variants) {
+            variantBits.or(byVariant[v.ordinal()]);
+        }
+        rarityBits.and(variantBits);
+        return rarityBits;
+    }
+
+    /**
+     * Returns the owned cards whose rarity is in {@code rarities} and whose variant is in {@code variants}.
+     *
+     * @param rarities The accepted rarities.
+     * @param variants The accepted variants.
+     * @return The matching cards in catalog id order.
+     */
+    public List<Card> findCards(Set<Rarity> rarities, Set<Variant> variants) {
+        return cardsOf(select(rarities, variants));
+    }
+
+    /**
+     * Counts the owned cards whose rarity is in {@code rarities} and whose variant is in {@code variants}.
+     *
+     * @param rarities The accepted rarities.
+     * @param variants The accepted variants.
+     * @return The number of matching cards.
+     */
+    public int countCards(Set<Rarity> rarities, Set<Variant> variants) {
+        return select(rarities, variants).cardinality();
+    }
+
+    /**
+     * Resolves a bitmap of catalog ids into cards.
+     *
+     * @param ids The catalog ids.
+     * @return The cards in catalog id order.
+     */
+    public List<Card> cardsOf(BitSet ids) {
+        List<Card> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(catalog.get(id));
         }
-        return null;
+        return result;
+    }
+
+    /**
+     * Returns the live bitmap of owned cards with a rarity. Callers must not modify it.
+     *
+     * @param rarity The rarity.
+     * @return The catalog ids of owned cards with that rarity.
+     */
+    BitSet rarityBits(Rarity rarity) {
+        return byRarity[rarity.ordinal()];
+    }
+
+    /**
+     * Returns the live bitmap of owned cards with a variant. Callers must not modify it.
+     *
+     * @param variant The variant.
+     * @return The catalog ids of owned cards with that variant.
+     */
+    BitSet variantBits(Variant variant) {
+        return byVariant[variant.ordinal()];
+    }
+
+    /**
+     * Marks a card as owned in the name index and the rarity and variant bitmaps.
+     *
+     * @param card The stored card.
+     */
+    @Override
+    protected void liveCardAdded(Card card) {
+        byName.put(nameKey(card), card);
+        byRarity[card.getRarity().ordinal()].set(card.getId());
+        byVariant[card.getVariant().ordinal()].set(card.getId());
+    }
+
+    /**
+     * Clears a card from the name index and the rarity and variant bitmaps once no copies are left.
+     *
+     * @param card The stored card.
+     */
+    @Override
+    protected void liveCardRemoved(Card card) {
+        byName.remove(nameKey(card));
+        byRarity[card.getRarity().ordinal()].clear(card.getId());
+        byVariant[card.getVariant().ordinal()].clear(card.getId());
     }
 
     /**
@@ -54,6 +294,18 @@ public class Collection extends CardContainer {
         return getTotalCards() < getCapacity();
     }
 
+    /**
+     * Checks whether the collection has room for several more copies.
+     *
+     * @param card   The card to evaluate.
+     * @param copies The number of copies.
+     * @return True if all copies fit.
+     */
+    @Override
+    public boolean canAddCards(Card card, int copies) {
+        return (long) getTotalCards() + copies <= getCapacity();
+    }
+
     /**
      * Indicates that the collection is sellable.
      *
@@ -70,7 +322,7 @@ public class Collection extends CardContainer {
      * @return Total collection value.
      */
     @Override
-    protected double getSellingValue() {
+    protected Money getSellingValue() {
         return getTotalValue();
     }
 }
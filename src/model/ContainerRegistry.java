@@ -0,0 +1,204 @@
+/**
+ * ContainerRegistry.java
+ *
+ * Keeps track of every binder and deck owned in the Trading Card Inventory System.
+ * Binders and decks are held in separate typed, insertion-ordered sets, binders are also bucketed
+ * by {@link BinderType}, and every container is indexed by its name case-insensitively.
+ * Listing is proportional to the result, and lookup, registration and removal are constant time.
+ *
+ * Container names are unique regardless of case. The registry is safe to share between threads;
+ * all methods synchronize on it, and listings are copies.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import enums.*;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typed, name-indexed registry of binders and decks.
+ */
+public class ContainerRegistry {
+
+    /** Containers by lower-cased name. */
+    private final Map<String, CardContainer> byName;
+
+    /** Binders in creation order. */
+    private final Set<Binder> binders;
+
+    /** Decks in creation order. */
+    private final Set<Deck> decks;
+
+    /** Binders in creation order, bucketed by type. */
+    private final Map<BinderType, Set<Binder>> bindersByType;
+
+    /**
+     * Constructs an empty registry.
+     */
+    public ContainerRegistry() {
+        this.byName = new HashMap<>();
+        this.binders = new LinkedHashSet<>();
+        this.decks = new LinkedHashSet<>();
+        this.bindersByType = new EnumMap<>(BinderType.class);
+        for (BinderType type : BinderType.values()) {
+            bindersByType.put(type, new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Adds a binder or deck to the registry.
+     *
+     * @param container The container to add.
+     * @throws IllegalArgumentException If the name is empty or already used by another container.
+     */
+    public synchronized void register(CardContainer container) {
+        String name = container.getName();
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Container name cannot be empty.");
+        }
+        String key = keyOf(name);
+        if (byName.containsKey(key)) {
+            throw new IllegalArgumentException("A container named '" + name + "' already exists.");
+        }
+
+        if (container instanceof Binder binder) {
+            binders.add(binder);
+            bindersByType.get(binder.getType()).add(binder);
+        } else if (container instanceof Deck deck) {
+            decks.add(deck);
+        } else {
+            throw new IllegalArgumentException("Only binders and decks can be registered.");
+        }
+        byName.put(key, container);
+    }
+
+    /**
+     * Removes a container from the registry.
+     *
+     * @param container The container to remove.
+     * @return True if the container was registered.
+     */
+    public synchronized boolean unregister(CardContainer container) {
+        String key = keyOf(container.getName());
+        if (byName.get(key) != container) {
+            return false;
+        }
+        byName.remove(key);
+        if (container instanceof Binder binder) {
+            binders.remove(binder);
+            bindersByType.get(binder.getType()).remove(binder);
+        } else {
+            decks.remove((Deck) container);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a container is registered.
+     *
+     * @param container The container to check.
+     * @return True if registered.
+     */
+    public synchronized boolean contains(CardContainer container) {
+        return byName.get(keyOf(container.getName())) == container;
+    }
+
+    /**
+     * Finds a container by name, ignoring case.
+     *
+     * @param name The name to look up.
+     * @return The container, or null if none has that name.
+     */
+    public synchronized CardContainer find(String name) {
+        return name == null ? null : byName.get(keyOf(name));
+    }
+
+    /**
+     * Returns all binders in creation order.
+     *
+     * @return A new list of binders.
+     */
+    public synchronized List<Binder> getBinders() {
+        return new ArrayList<>(binders);
+    }
+
+    /**
+     * Returns the binders of one type in creation order.
+     *
+     * @param type The binder type.
+     * @return A new list of binders of that type.
+     */
+    public synchronized List<Binder> getBinders(BinderType type) {
+        return new ArrayList<>(bindersByType.get(type));
+    }
+
+    /**
+     * Returns all decks in creation order.
+     *
+     * @return A new list of decks.
+     */
+    public synchronized List<Deck> getDecks() {
+        return new ArrayList<>(decks);
+    }
+
+    /**
+     * Returns the number of binders.
+     *
+     * @return Binder count.
+     */
+    public synchronized int getBinderCount() {
+        return binders.size();
+    }
+
+    /**
+     * Returns the number of binders of one type.
+     *
+     * @param type The binder type.
+     * @return Binder count for that type.
+     */
+    public synchronized int getBinderCount(BinderType type) {
+        return bindersByType.get(type).size();
+    }
+
+    /**
+     * Returns the number of decks.
+     *
+     * @return Deck count.
+     */
+    public synchronized int getDeckCount() {
+        return decks.size();
+    }
+
+    /**
+     * Returns every registered container, binders first, each group in creation order.
+     *
+     * @return A new list of containers.
+     */
+    public synchronized List<CardContainer> getAll() {
+        List<CardContainer> all = new ArrayList<>(binders.size() + decks.size());
+        all.addAll(binders);
+        all.addAll(decks);
+        return all;
+    }
+
+    /**
+     * Normalizes a container name for the case-insensitive index.
+     *
+     * @param name The container name.
+     * @return The index key.
+     */
+    private static String keyOf(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * ContainerSnapshot.java
+ *
+ * A read-only, versioned view of a {@link CardContainer} at one point in time.
+ * Handing out a snapshot copies nothing: it holds the version of the container's
+ * {@link PersistentCardMap} that was current, and later changes build new versions beside it.
+ * A snapshot therefore stays valid and unchanged no matter what happens to the container later,
+ * so renderers and exporters can read it without paying O(n) allocation just to look.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.Set;
+
+/**
+ * Immutable view of a container's cards, counts and totals.
+ */
+public final class ContainerSnapshot {
+
+    /** The container name at snapshot time. */
+    private final String name;
+
+    /** The contents at snapshot time. */
+    private final PersistentCardMap cards;
+
+    /** The container version the snapshot reflects. */
+    private final long version;
+
+    /** Total copies at snapshot time. */
+    private final int totalCards;
+
+    /** Cards with at least one copy at snapshot time. */
+    private final int uniqueCards;
+
+    /** Total value in cents at snapshot time. */
+    private final long totalValueCents;
+
+    /**
+     * Constructs a snapshot over one version of a container's contents.
+     *
+     * @param name            The container name.
+     * @param cards           The contents.
+     * @param version         The container version.
+     * @param totalCards      Total copies.
+     * @param uniqueCards     Cards with at least one copy.
+     * @param totalValueCents Total value in cents.
+     */
+    ContainerSnapshot(String name, PersistentCardMap cards, long version,
+                      int totalCards, int uniqueCards, long totalValueCents) {
+        this.name = name;
+        this.cards = cards;
+        this.version = version;
+        this.totalCards = totalCards;
+        this.uniqueCards = uniqueCards;
+        this.totalValueCents = totalValueCents;
+    }
+
+    /**
+     * Returns the container name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the container version this snapshot reflects.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of copies of a card.
+     *
+     * @param card The card to check.
+     * @return The number of copies (0 if not present).
+     */
+    public int getCardCount(Card card) {
+        return cards.get(card);
+    }
+
+    /**
+     * Returns the total number of copies.
+     *
+     * @return Total card count.
+     */
+    public int getTotalCards() {
+        return totalCards;
+    }
+
+    /**
+     * Returns the number of cards with at least one copy.
+     *
+     * @return Number of unique cards.
+     */
+    public int getUniqueCards() {
+        return uniqueCards;
+    }
+
+    /**
+     * Returns the total value of all copies.
+     *
+     * @return The total value.
+     */
+    public Money getTotalValue() {
+        return Money.ofCents(totalValueCents);
+    }
+
+    /**
+     * Visits every card with at least one copy together with its count, without copying or boxing.
+     *
+     * @param consumer The callback receiving each (card, count) pair.
+     */
+    public void forEachCard(CardCountMap.CountConsumer consumer) {
+        cards.forEach(consumer);
+    }
+
+    /**
+     * Returns the cards with at least one copy as a read-only set view over the snapshot.
+     *
+     * @return Set of cards.
+     */
+    public Set<Card> getCards() {
+        return cards.cardSet();
+    }
+}
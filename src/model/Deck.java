@@ -46,6 +46,18 @@ public class Deck extends CardContainer implements Sellable {
         return getTotalCards() < getCapacity();
     }
 
+    /**
+     * Checks whether the deck has room for several more copies at once.
+     *
+     * @param card   The card to evaluate.
+     * @param copies The number of copies.
+     * @return True if all copies fit.
+     */
+    @Override
+    public boolean canAddCards(Card card, int copies) {
+        return (long) getTotalCards() + copies <= getCapacity();
+    }
+
     /**
      * Returns the type of the deck.
      *
@@ -72,7 +84,7 @@ public class Deck extends CardContainer implements Sellable {
      * @return Total value of the deck.
      */
     @Override
-    protected double getSellingValue() {
+    protected Money getSellingValue() {
         return getTotalValue();
     }
 }
@@ -0,0 +1,167 @@
+/**
+ * InventoryHistory.java
+ *
+ * Multi-level undo and redo for a {@link TradingCardInventorySystem}. The history keeps a bounded
+ * stack of {@link InventorySnapshot}s; since snapshots share structure with each other, each
+ * recorded step costs memory proportional to what changed, not to the size of the inventory.
+ *
+ * The containers keep their contents as persistent maps whether or not a history is attached,
+ * so recording a step only collects the current version of each.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded undo/redo stack over inventory snapshots.
+ */
+public class InventoryHistory {
+
+    /** Default number of steps that can be undone. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /** The system whose state is recorded. */
+    private final TradingCardInventorySystem tcis;
+
+    /** Maximum number of undo steps kept. */
+    private final int limit;
+
+    /** Earlier states, most recent first. */
+    private final Deque<InventorySnapshot> undoStack;
+
+    /** Undone states, most recently undone first. */
+    private final Deque<InventorySnapshot> redoStack;
+
+    /** The state as of the last record, undo or redo. */
+    private InventorySnapshot current;
+
+    /**
+     * Attaches a history with the default limit to a system and records its current state.
+     *
+     * @param tcis The system to track.
+     */
+    public InventoryHistory(TradingCardInventorySystem tcis) {
+        this(tcis, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Attaches a history to a system and records its current state.
+     *
+     * @param tcis  The system to track.
+     * @param limit The maximum number of undo steps kept.
+     * @throws IllegalArgumentException If limit is below 1.
+     */
+    public InventoryHistory(TradingCardInventorySystem tcis, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("History limit must be at least 1: " + limit);
+        }
+        this.tcis = tcis;
+        this.limit = limit;
+        this.undoStack = new ArrayDeque<>();
+        this.redoStack = new ArrayDeque<>();
+        this.current = tcis.snapshotState();
+    }
+
+    /**
+     * Records the system's state as a new undo step if it changed since the last record.
+     * Recording a change discards anything that could be redone.
+     *
+     * @return True if a step was recorded.
+     */
+    public boolean record() {
+        InventorySnapshot now = tcis.snapshotState();
+        if (now.sameState(current)) {
+            return false;
+        }
+        undoStack.push(current);
+        if (undoStack.size() > limit) {
+            undoStack.removeLast();
+        }
+        redoStack.clear();
+        current = now;
+        return true;
+    }
+
+    /**
+     * Checks whether there is a step to undo.
+     *
+     * @return True if undo is possible.
+     */
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    /**
+     * Checks whether there is a step to redo.
+     *
+     * @return True if redo is possible.
+     */
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * Returns the system to the state before the last recorded step.
+     * Changes made since the last record are recorded first, so they are the step undone.
+     *
+     * @return True if a step was undone.
+     */
+    public boolean undo() {
+        record();
+        if (undoStack.isEmpty()) {
+            return false;
+        }
+        redoStack.push(current);
+        current = undoStack.pop();
+        tcis.revert(current);
+        return true;
+    }
+
+    /**
+     * Reapplies the last undone step.
+     *
+     * @return True if a step was redone.
+     */
+    public boolean redo() {
+        if (record() || redoStack.isEmpty()) {
+            return false;
+        }
+        undoStack.push(current);
+        current = redoStack.pop();
+        tcis.revert(current);
+        return true;
+    }
+
+    /**
+     * Returns the state as of the last record, undo or redo.
+     *
+     * @return The current snapshot.
+     */
+    public InventorySnapshot getCurrent() {
+        return current;
+    }
+
+    /**
+     * Returns the number of steps that can be undone.
+     *
+     * @return Undo depth.
+     */
+    public int getUndoDepth() {
+        return undoStack.size();
+    }
+
+    /**
+     * Returns the number of steps that can be redone.
+     *
+     * @return Redo depth.
+     */
+    public int getRedoDepth() {
+        return redoStack.size();
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * InventoryListener.java
+ *
+ * Receives one callback per successful operation on a {@link TradingCardInventorySystem}, such as
+ * selling a card or creating a binder. Failed or rejected operations are not reported.
+ *
+ * Callbacks run while the containers the operation touched are still locked, so they arrive in the
+ * exact order in which the operations took effect. Implementations must therefore be quick (for
+ * example, append to a buffer) and must not call back into the inventory.
+ *
+ * Containers are identified by name; a null name stands for the main collection.
+ * Every method has an empty default, so a listener only overrides what it needs.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import enums.*;
+import java.util.Map;
+
+/**
+ * Observer of inventory operations.
+ */
+public interface InventoryListener {
+
+    /**
+     * Called after copies of a card were added to the collection.
+     *
+     * @param card   The canonical card.
+     * @param copies The number of copies.
+     */
+    default void cardsAdded(Card card, int copies) {
+    }
+
+    /**
+     * Called after copies of a card were removed from the collection without being sold.
+     *
+     * @param card   The card.
+     * @param copies The number of copies.
+     */
+    default void cardsRemoved(Card card, int copies) {
+    }
+
+    /**
+     * Called after one copy of a card was sold from the collection.
+     *
+     * @param card The card.
+     */
+    default void cardSold(Card card) {
+    }
+
+    /**
+     * Called after a binder was created.
+     *
+     * @param name The binder name.
+     * @param type The binder type.
+     */
+    default void binderCreated(String name, BinderType type) {
+    }
+
+    /**
+     * Called after a deck was created.
+     *
+     * @param name The deck name.
+     * @param type The deck type.
+     */
+    default void deckCreated(String name, DeckType type) {
+    }
+
+    /**
+     * Called after a binder or deck was deleted and its cards returned to the collection.
+     *
+     * @param name The container name.
+     */
+    default void containerDeleted(String name) {
+    }
+
+    /**
+     * Called after all cards of a binder or deck were moved into the collection.
+     *
+     * @param name The container name.
+     */
+    default void containerMerged(String name) {
+    }
+
+    /**
+     * Called after a binder or deck was sold.
+     *
+     * @param name The container name.
+     */
+    default void containerSold(String name) {
+    }
+
+    /**
+     * Called after copies of a card were moved between containers.
+     *
+     * @param source      The source container name, or null for the collection.
+     * @param destination The destination container name, or null for the collection.
+     * @param card        The card.
+     * @param copies      The number of copies.
+     */
+    default void cardsMoved(String source, String destination, Card card, int copies) {
+    }
+
+    /**
+     * Called once after a batch of cards was moved between containers in one operation. The default
+     * reports each card to {@link #cardsMoved(String, String, Card, int)} in turn.
+     *
+     * @param source      The source container name, or null for the collection.
+     * @param destination The destination container name, or null for the collection.
+     * @param moved       The cards moved with their copies; read-only.
+     */
+    default void cardsMoved(String source, String destination, Map<Card, Integer> moved) {
+        moved.forEach((card, copies) -> cardsMoved(source, destination, card, copies));
+    }
+
+    /**
+     * Called after every copy of a card was returned from a container to the collection.
+     *
+     * @param container The container name.
+     * @param card      The card.
+     */
+    default void cardReturned(String container, Card card) {
+    }
+
+    /**
+     * Called after a binder card was swapped for a card from the collection.
+     *
+     * @param binder   The binder name.
+     * @param outgoing The card that left the binder.
+     * @param incoming The card that came from the collection.
+     */
+    default void cardTraded(String binder, Card outgoing, Card incoming) {
+    }
+
+    /**
+     * Called after a binder card was swapped for a card from outside the inventory.
+     *
+     * @param binder   The binder name.
+     * @param outgoing The card that left the binder.
+     * @param incoming The canonical card that entered the binder.
+     */
+    default void cardTradedIn(String binder, Card outgoing, Card incoming) {
+    }
+
+    /**
+     * Called after money was added to or taken from the balance directly.
+     *
+     * @param amount The amount, negative if taken.
+     */
+    default void moneyAdded(Money amount) {
+    }
+
+    /**
+     * Called after a binder's selling price was set.
+     *
+     * @param binder The binder name.
+     * @param price  The new price.
+     */
+    default void sellingPriceSet(String binder, Money price) {
+    }
+
+    /**
+     * Called after every copy of a card was replaced by the same card at a new base value.
+     *
+     * @param card     The card as it was.
+     * @param revalued The card at its new value.
+     */
+    default void cardRevalued(Card card, Card revalued) {
+    }
+
+    /**
+     * Called after the whole inventory was replaced by a saved state, such as one opened from a file.
+     *
+     * @param state The state now in effect.
+     */
+    default void stateRestored(InventorySnapshot state) {
+    }
+
+    /**
+     * Called after undo or redo returned the inventory to an earlier state. The default treats it
+     * as a restore; listeners that only need what changed can compare the two states instead.
+     *
+     * @param before The state that was replaced.
+     * @param after  The state now in effect.
+     */
+    default void stateReverted(InventorySnapshot before, InventorySnapshot after) {
+        stateRestored(after);
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * InventorySnapshot.java
+ *
+ * An immutable picture of the whole inventory: the collection, every binder and deck, and the money
+ * balance. Card contents are held as {@link PersistentCardMap}s that share structure with the live
+ * containers, so taking a snapshot after each operation costs O(log n) memory for the cards that
+ * changed plus one small entry per container, never a full copy.
+ *
+ * Snapshots can be kept for undo, compared with {@link #diff(InventorySnapshot, ChangeConsumer)},
+ * and read safely from any thread.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import enums.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, structurally shared state of a {@link TradingCardInventorySystem}.
+ */
+public final class InventorySnapshot {
+
+    /**
+     * The state of one binder or deck. Exactly one of the two types is set.
+     *
+     * @param name         The container name.
+     * @param binderType   The binder type, or null for a deck.
+     * @param deckType     The deck type, or null for a binder.
+     * @param cards        The live cards and counts.
+     * @param sellingPrice The binder's selling price, or null for a deck.
+     * @param admission    The binder's admission table, which may differ from its type's built-in
+     *                     rules, or null for a deck.
+     */
+    public record ContainerState(String name, BinderType binderType, DeckType deckType,
+                                 PersistentCardMap cards, Money sellingPrice, AdmissionTable admission) {
+
+        /**
+         * Constructs the state of a deck, or of a binder that admits what its type admits.
+         *
+         * @param name         The container name.
+         * @param binderType   The binder type, or null for a deck.
+         * @param deckType     The deck type, or null for a binder.
+         * @param cards        The live cards and counts.
+         * @param sellingPrice The binder's selling price, or null for a deck.
+         */
+        public ContainerState(String name, BinderType binderType, DeckType deckType,
+                              PersistentCardMap cards, Money sellingPrice) {
+            this(name, binderType, deckType, cards, sellingPrice,
+                 binderType == null ? null : AdmissionTable.forType(binderType));
+        }
+
+        /**
+         * Captures the state of a binder or deck.
+         *
+         * @param container The container.
+         * @return Its state.
+         */
+        static ContainerState of(CardContainer container) {
+            if (container instanceof Binder binder) {
+                return new ContainerState(binder.getName(), binder.getType(), null,
+                                          binder.persistentCards(), binder.getSellingPrice(),
+                                          binder.getAdmissionTable());
+            }
+            Deck deck = (Deck) container;
+            return new ContainerState(deck.getName(), null, deck.getType(), deck.persistentCards(), null);
+        }
+
+        /**
+         * Checks whether an existing container is of the kind this state describes,
+         * so it can be reused when restoring.
+         *
+         * @param container The container.
+         * @return True if the kind, type and admission table match.
+         */
+        boolean describes(CardContainer container) {
+            if (container instanceof Binder binder) {
+                return binder.getType() == binderType && binder.getAdmissionTable().equals(admission);
+            }
+            return container instanceof Deck deck && deck.getType() == deckType;
+        }
+
+        /**
+         * Creates an empty container of the kind this state describes.
+         *
+         * @return The new binder or deck.
+         */
+        CardContainer create() {
+            return binderType != null ? new Binder(name, binderType, admission) : new Deck(name, deckType);
+        }
+    }
+
+    /**
+     * Receives one card count that differs between two snapshots.
+     */
+    @FunctionalInterface
+    public interface ChangeConsumer {
+
+        /**
+         * Accepts a changed card count.
+         *
+         * @param container The binder or deck name, or null for the collection.
+         * @param card      The card.
+         * @param oldCount  The count in the older snapshot (0 if absent).
+         * @param newCount  The count in the newer snapshot (0 if absent).
+         */
+        void accept(String container, Card card, int oldCount, int newCount);
+    }
+
+    /** The collection's live cards and counts. */
+    private final PersistentCardMap collection;
+
+    /** Binders and decks in registry order. */
+    private final List<ContainerState> containers;
+
+    /** The money balance in cents. */
+    private final long moneyCents;
+
+    /**
+     * Constructs a snapshot.
+     *
+     * @param collection The collection's cards.
+     * @param containers The binder and deck states.
+     * @param moneyCents The money balance in cents.
+     */
+    InventorySnapshot(PersistentCardMap collection, List<ContainerState> containers, long moneyCents) {
+        this.collection = collection;
+        this.containers = List.copyOf(containers);
+        this.moneyCents = moneyCents;
+    }
+
+    /**
+     * Builds a snapshot from saved parts, for example when reading one back from disk.
+     * Cards should be canonical cards of the system the snapshot will be restored into.
+     *
+     * @param collection The collection's cards.
+     * @param containers The binder and deck states.
+     * @param money      The money balance.
+     * @return The snapshot.
+     */
+    public static InventorySnapshot of(PersistentCardMap collection, List<ContainerState> containers, Money money) {
+        return new InventorySnapshot(collection, containers, money.getCents());
+    }
+
+    /**
+     * Returns the collection's cards and counts.
+     *
+     * @return The persistent card map.
+     */
+    public PersistentCardMap getCollection() {
+        return collection;
+    }
+
+    /**
+     * Returns the states of all binders and decks, binders first, each group in creation order.
+     *
+     * @return An unmodifiable list of container states.
+     */
+    public List<ContainerState> getContainers() {
+        return containers;
+    }
+
+    /**
+     * Returns the money balance.
+     *
+     * @return The balance.
+     */
+    public Money getMoney() {
+        return Money.ofCents(moneyCents);
+    }
+
+    /**
+     * Checks whether two snapshots describe the same state. Card maps are compared by identity,
+     * which is exact for snapshots taken from the same system: a container's map only changes
+     * when its contents do.
+     *
+     * @param other The snapshot to compare with, may be null.
+     * @return True if nothing changed between the two.
+     */
+    public boolean sameState(InventorySnapshot other) {
+        return other != null
+            && other.moneyCents == moneyCents
+            && other.collection == collection
+            && other.containers.equals(containers);
+    }
+
+    /**
+     * Reports every card count that differs between this (older) snapshot and a newer one,
+     * matching binders and decks by name. Unchanged containers and unchanged parts of changed ones
+     * are skipped without being visited.
+     *
+     * @param newer    The snapshot to compare against.
+     * @param consumer The callback receiving each difference.
+     */
+    public void diff(InventorySnapshot newer, ChangeConsumer consumer) {
+        collection.diff(newer.collection, (card, oldCount, newCount) ->
+            consumer.accept(null, card, oldCount, newCount));
+
+        Map<String, PersistentCardMap> remaining = new HashMap<>();
+        for (ContainerState state : containers) {
+            remaining.put(state.name(), state.cards());
+        }
+        for (ContainerState state : newer.containers) {
+            PersistentCardMap old = remaining.remove(state.name());
+            (old != null ? old : PersistentCardMap.EMPTY).diff(state.cards(), (card, oldCount, newCount) ->
+                consumer.accept(state.name(), card, oldCount, newCount));
+        }
+        remaining.forEach((name, cards) -> cards.diff(PersistentCardMap.EMPTY, (card, oldCount, newCount) ->
+            consumer.accept(name, card, oldCount, newCount)));
+    }
+}
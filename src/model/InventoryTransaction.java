@@ -0,0 +1,533 @@
+/**
+ * InventoryTransaction.java
+ *
+ * A batch of mutations across the collection, binders, decks and money that is applied
+ * all-or-nothing. Steps are staged first and nothing changes until {@link #commit()}.
+ *
+ * Concurrency is optimistic: the transaction remembers the version of each container the first time
+ * it reads it. On commit it locks only the containers it touches, always in the same order so two
+ * transactions cannot deadlock, and checks that none of the containers it read changed in the
+ * meantime. If one did, the commit fails with an {@link IllegalStateException} and the caller may
+ * retry with a fresh transaction. Containers that are only written to are not version-checked, since
+ * each step validates itself under the lock; so parallel sales that each take a different card from
+ * the collection do not conflict. If a step breaks a rule (too few copies, a container refusing a card, a negative
+ * balance), every step already applied is undone and an {@link IllegalArgumentException} is thrown.
+ *
+ * A transaction can be committed once.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All-or-nothing batch of inventory mutations with optimistic version checks.
+ */
+public class InventoryTransaction {
+
+    /**
+     * One staged mutation that can be applied and undone.
+     */
+    private interface Step {
+
+        /**
+         * Applies the mutation.
+         *
+         * @throws IllegalArgumentException If the mutation breaks a rule.
+         */
+        void apply();
+
+        /**
+         * Reverts the mutation after it was applied.
+         */
+        void undo();
+    }
+
+    /** Taken before the container locks when two containers share an identity hash code. */
+    private static final Object TIE_LOCK = new Object();
+
+    /** The system the transaction applies to. */
+    private final TradingCardInventorySystem tcis;
+
+    /** Marks a container that is written to but was never read, so its version is not checked. */
+    private static final long UNCHECKED = -1;
+
+    /** Every touched container in touch order, with its version when first read or {@link #UNCHECKED}. */
+    private final Map<CardContainer, Long> versions;
+
+    /** Staged steps in the order they will be applied. */
+    private final List<Step> steps;
+
+    /** Containers this transaction adds to the system, which need not be registered yet on commit. */
+    private final Set<CardContainer> registering;
+
+    /** Actions run after a successful commit while the containers are still locked. */
+    private final List<Runnable> commitHooks;
+
+    /** True once commit has been called. */
+    private boolean finished;
+
+    /**
+     * Constructs an empty transaction. Use {@link TradingCardInventorySystem#beginTransaction()}.
+     *
+     * @param tcis The system to apply to.
+     */
+    InventoryTransaction(TradingCardInventorySystem tcis) {
+        this.tcis = tcis;
+        this.versions = new LinkedHashMap<>();
+        this.steps = new ArrayList<>();
+        this.registering = new HashSet<>();
+        this.commitHooks = new ArrayList<>();
+    }
+
+    /**
+     * Reads a card count and makes the commit fail if the container changes before then.
+     *
+     * @param container The container to read.
+     * @param card      The card.
+     * @return The number of copies.
+     */
+    public int read(CardContainer container, Card card) {
+        watch(container, container.getVersion());
+        return container.getCardCount(card);
+    }
+
+    /**
+     * Takes a snapshot of a container and makes the commit fail if the container changes before then.
+     *
+     * @param container The container to read.
+     * @return The container's contents as of the read.
+     */
+    public ContainerSnapshot read(CardContainer container) {
+        ensureOpen();
+        ContainerSnapshot contents = container.snapshot();
+        watch(container, contents.getVersion());
+        return contents;
+    }
+
+    /**
+     * Stages adding copies of a card to a container.
+     *
+     * @param container The container.
+     * @param card      The card.
+     * @param copies    The number of copies, at least 1.
+     * @return This transaction.
+     */
+    public InventoryTransaction add(CardContainer container, Card card, int copies) {
+        requireCopies(copies);
+        touch(container);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                if (!container.canAddCards(card, copies)) {
+                    throw new IllegalArgumentException(container.getName() + " cannot take " + card.getName() + ".");
+                }
+                container.addCards(card, copies);
+            }
+
+            @Override
+            public void undo() {
+                container.removeCards(card, copies);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages removing copies of a card from a container.
+     *
+     * @param container The container.
+     * @param card      The card.
+     * @param copies    The number of copies, at least 1.
+     * @return This transaction.
+     */
+    public InventoryTransaction remove(CardContainer container, Card card, int copies) {
+        requireCopies(copies);
+        touch(container);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                if (container.getCardCount(card) < copies) {
+                    throw new IllegalArgumentException(
+                        container.getName() + " does not have " + copies + " of " + card.getName() + ".");
+                }
+                container.removeCards(card, copies);
+            }
+
+            @Override
+            public void undo() {
+                container.addCards(card, copies);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages replacing a card in a container with another version of itself, keeping its count.
+     *
+     * @param container   The container.
+     * @param card        The card held now.
+     * @param replacement The version to hold instead, with the same name.
+     * @return This transaction.
+     */
+    public InventoryTransaction replace(CardContainer container, Card card, Card replacement) {
+        touch(container);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                if (container.replaceCard(card, replacement) == 0) {
+                    throw new IllegalArgumentException(container.getName() + " does not have " + card.getName() + ".");
+                }
+            }
+
+            @Override
+            public void undo() {
+                container.replaceCard(replacement, card);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages moving copies of a card from one container to another.
+     *
+     * @param source      The container to take the copies from.
+     * @param destination The container to put them into.
+     * @param card        The card.
+     * @param copies      The number of copies, at least 1.
+     * @return This transaction.
+     */
+    public InventoryTransaction move(CardContainer source, CardContainer destination, Card card, int copies) {
+        return remove(source, card, copies).add(destination, card, copies);
+    }
+
+    /**
+     * Stages moving several cards from one container to another in one step, skipping any card the
+     * source holds too few copies of or the destination will not take. Each card is checked when the
+     * step is applied, against the contents as changed by the cards moved before it, so the skips
+     * never make the transaction fail.
+     *
+     * @param source      The container to take the copies from.
+     * @param destination The container to put them into.
+     * @param transfer    The cards to move and how many copies of each; counts below 1 are skipped.
+     * @param moved       Filled in when the step is applied with the cards actually moved.
+     * @return This transaction.
+     */
+    public InventoryTransaction moveAvailable(CardContainer source, CardContainer destination,
+                                              Map<Card, Integer> transfer, Map<Card, Integer> moved) {
+        touch(source);
+        touch(destination);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                moved.clear();
+                for (Map.Entry<Card, Integer> entry : transfer.entrySet()) {
+                    Card card = entry.getKey();
+                    int copies = entry.getValue();
+                    if (copies > 0 && source.getCardCount(card) >= copies
+                            && destination.canAddCards(card, copies)) {
+                        source.removeCards(card, copies);
+                        destination.addCards(card, copies);
+                        moved.merge(card, copies, Integer::sum);
+                    }
+                }
+            }
+
+            @Override
+            public void undo() {
+                moved.forEach((card, copies) -> {
+                    destination.removeCards(card, copies);
+                    source.addCards(card, copies);
+                });
+                moved.clear();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages a change to the money balance. The commit fails if the balance would go below zero.
+     *
+     * @param amount The amount to add, negative to take money away.
+     * @return This transaction.
+     */
+    public InventoryTransaction addMoney(Money amount) {
+        return addMoney(amount, "Transaction");
+    }
+
+    /**
+     * Stages a change to the money balance with a memo for the ledger's journal.
+     * The commit fails if the balance would go below zero.
+     *
+     * @param amount The amount to add, negative to take money away.
+     * @param memo   What the change is for.
+     * @return This transaction.
+     */
+    public InventoryTransaction addMoney(Money amount, String memo) {
+        ensureOpen();
+        long cents = amount.getCents();
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                tcis.applyMoney(cents, memo);
+            }
+
+            @Override
+            public void undo() {
+                tcis.applyMoney(Math.negateExact(cents), "Rollback: " + memo);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages removing a binder or deck from the system, for example after it was sold.
+     *
+     * @param container The container to remove.
+     * @return This transaction.
+     */
+    public InventoryTransaction unregister(CardContainer container) {
+        touchRegistry(container);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                tcis.unregister(container);
+            }
+
+            @Override
+            public void undo() {
+                tcis.register(container);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages adding a new binder or deck to the system.
+     *
+     * @param container The container to add.
+     * @return This transaction.
+     */
+    public InventoryTransaction register(CardContainer container) {
+        touchRegistry(container);
+        registering.add(container);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                tcis.register(container);
+            }
+
+            @Override
+            public void undo() {
+                tcis.unregister(container);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages setting a binder's selling price.
+     *
+     * @param binder The binder.
+     * @param price  The new price.
+     * @return This transaction.
+     */
+    public InventoryTransaction setSellingPrice(Binder binder, Money price) {
+        touch(binder);
+        steps.add(new Step() {
+            @Override
+            public void apply() {
+                binder.setSellingPrice(price);
+            }
+
+            @Override
+            public void undo() {
+                // Selling prices of touched binders are restored after a rollback.
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Registers an action to run once the commit has succeeded, while the touched containers are still
+     * locked, so actions of conflicting transactions run in commit order. The action must be quick and
+     * must not call back into the inventory.
+     *
+     * @param action The action.
+     * @return This transaction.
+     */
+    public InventoryTransaction onCommit(Runnable action) {
+        ensureOpen();
+        commitHooks.add(action);
+        return this;
+    }
+
+    /**
+     * Applies every staged step, or none of them.
+     *
+     * @throws IllegalStateException    If a container changed since the transaction first read it,
+     *                                  a binder or deck is no longer in the system, or the transaction
+     *                                  was already committed.
+     * @throws IllegalArgumentException If a step breaks a rule; nothing is changed.
+     */
+    public void commit() {
+        ensureOpen();
+        finished = true;
+
+        List<CardContainer> order = new ArrayList<>(versions.keySet());
+        order.sort(Comparator.comparingInt(System::identityHashCode));
+        boolean tie = false;
+        for (int i = 1; i < order.size(); i++) {
+            tie |= System.identityHashCode(order.get(i)) == System.identityHashCode(order.get(i - 1));
+        }
+
+        tcis.commitGate().lock();
+        try {
+            if (tie) {
+                synchronized (TIE_LOCK) {
+                    lockAndApply(order, 0);
+                }
+            } else {
+                lockAndApply(order, 0);
+            }
+            tcis.applyCountChanges();
+        } finally {
+            tcis.commitGate().unlock();
+        }
+    }
+
+    /**
+     * Locks the containers from index i onward in order, then validates and applies the steps.
+     *
+     * @param order The touched containers in lock order.
+     * @param i     The next container to lock.
+     */
+    private void lockAndApply(List<CardContainer> order, int i) {
+        if (i < order.size()) {
+            synchronized (order.get(i)) {
+                lockAndApply(order, i + 1);
+            }
+            return;
+        }
+
+        for (Map.Entry<CardContainer, Long> entry : versions.entrySet()) {
+            CardContainer container = entry.getKey();
+            long seen = entry.getValue();
+            if (seen != UNCHECKED && container.getVersion() != seen) {
+                throw new IllegalStateException(container.getName() + " was changed by someone else; try again.");
+            }
+            if (container != tcis.getCollection() && !registering.contains(container)
+                    && !tcis.isRegistered(container)) {
+                throw new IllegalStateException(container.getName() + " is no longer in the inventory.");
+            }
+        }
+        tcis.beginCountChanges();
+        boolean committed = false;
+        try {
+            apply();
+            committed = true;
+        } finally {
+            tcis.endCountChanges(committed);
+        }
+        for (Runnable hook : commitHooks) {
+            hook.run();
+        }
+    }
+
+    /**
+     * Applies the steps in order, undoing the applied ones if any step fails.
+     */
+    private void apply() {
+        Map<Binder, Money> prices = new HashMap<>();
+        for (CardContainer container : versions.keySet()) {
+            if (container instanceof Binder binder) {
+                prices.put(binder, binder.getSellingPrice());
+            }
+        }
+
+        int applied = 0;
+        try {
+            for (Step step : steps) {
+                step.apply();
+                applied++;
+            }
+        } catch (RuntimeException ex) {
+            for (int i = applied - 1; i >= 0; i--) {
+                steps.get(i).undo();
+            }
+            prices.forEach(Binder::setSellingPrice);
+            throw ex;
+        }
+    }
+
+    /**
+     * Adds a container to the set locked on commit.
+     *
+     * @param container The container.
+     */
+    private void touch(CardContainer container) {
+        ensureOpen();
+        versions.putIfAbsent(container, UNCHECKED);
+    }
+
+    /**
+     * Adds a container that is joining or leaving the system to the set locked on commit, together
+     * with the collection. Every registry change thus holds the collection lock, so creating a binder
+     * and deleting another of the same name are seen by listeners in the order they happened.
+     *
+     * @param container The container.
+     */
+    private void touchRegistry(CardContainer container) {
+        touch(container);
+        touch(tcis.getCollection());
+    }
+
+    /**
+     * Remembers a container's version the first time the transaction reads it.
+     * The version must be taken before the read, so a change in between is caught as a conflict.
+     *
+     * @param container The container.
+     * @param version   Its version as of the read.
+     */
+    private void watch(CardContainer container, long version) {
+        ensureOpen();
+        Long seen = versions.get(container);
+        if (seen == null || seen == UNCHECKED) {
+            versions.put(container, version);
+        }
+    }
+
+    /**
+     * Checks that steps can still be staged.
+     *
+     * @throws IllegalStateException If the transaction was already committed.
+     */
+    private void ensureOpen() {
+        if (finished) {
+            throw new IllegalStateException("Transaction already committed.");
+        }
+    }
+
+    /**
+     * Checks that a copy count is positive.
+     *
+     * @param copies The number of copies.
+     * @throws IllegalArgumentException If copies is below 1.
+     */
+    private static void requireCopies(int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("Copies must be at least 1: " + copies);
+        }
+    }
+}
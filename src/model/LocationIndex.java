@@ -0,0 +1,135 @@
+/**
+ * LocationIndex.java
+ *
+ * Where each owned card is: for every canonical card, the containers holding copies of it and how
+ * many each holds, so "where are my copies of X?" or changing a card's price everywhere it is held
+ * goes straight to those containers instead of probing every binder and deck.
+ *
+ * Most cards sit in a single container, so the first holder of each card is kept inline in arrays
+ * indexed by catalog id, costing a reference and an int per card. Only cards held in more than one
+ * container get a map of the other holders.
+ *
+ * The system keeps the index current from the same count changes that feed its {@link ValueIndex}:
+ * every add, remove, move, trade, sale and deletion in any container is recorded as the transaction
+ * applies it and reaches the index in one batch once the transaction has committed and released
+ * its containers. Transactions touching the same container reach it in commit order.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reverse index from card to the containers holding it.
+ */
+public final class LocationIndex {
+
+    /**
+     * One container holding a card.
+     *
+     * @param container The container, which may be the collection.
+     * @param count     The copies it holds.
+     */
+    public record Location(CardContainer container, int count) {
+    }
+
+    /** First holder of each card by catalog id, or null if no container holds it. */
+    private CardContainer[] firstHolders = new CardContainer[64];
+
+    /** Copies held by the first holder of each card. */
+    private int[] firstCounts = new int[64];
+
+    /** Holders after the first, by catalog id, for cards held in more than one container. */
+    private final Map<Integer, Map<CardContainer, Integer>> otherHolders = new HashMap<>();
+
+    /**
+     * Records how many copies of a card a container now holds.
+     *
+     * @param card      The canonical card, which must have a catalog id.
+     * @param container The container.
+     * @param count     The copies it holds now, 0 if none.
+     * @throws IllegalArgumentException If the card has no id.
+     */
+    synchronized void update(Card card, CardContainer container, int count) {
+        int id = card.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException(card.getName() + " is not in the catalog.");
+        }
+        if (id >= firstHolders.length) {
+            int length = Math.max(id + 1, firstHolders.length * 2);
+            firstHolders = Arrays.copyOf(firstHolders, length);
+            firstCounts = Arrays.copyOf(firstCounts, length);
+        }
+
+        Map<CardContainer, Integer> others = otherHolders.get(id);
+        if (firstHolders[id] == container) {
+            if (count > 0) {
+                firstCounts[id] = count;
+            } else if (others == null) {
+                firstHolders[id] = null;
+                firstCounts[id] = 0;
+            } else {
+                // Promote another holder so the inline slot stays filled.
+                Map.Entry<CardContainer, Integer> next = others.entrySet().iterator().next();
+                firstHolders[id] = next.getKey();
+                firstCounts[id] = next.getValue();
+                others.remove(next.getKey());
+                if (others.isEmpty()) otherHolders.remove(id);
+            }
+        } else if (firstHolders[id] == null) {
+            if (count > 0) {
+                firstHolders[id] = container;
+                firstCounts[id] = count;
+            }
+        } else if (count > 0) {
+            otherHolders.computeIfAbsent(id, key -> new IdentityHashMap<>()).put(container, count);
+        } else if (others != null) {
+            others.remove(container);
+            if (others.isEmpty()) otherHolders.remove(id);
+        }
+    }
+
+    /**
+     * Returns every container holding copies of a card.
+     *
+     * @param card The canonical card.
+     * @return The containers with their counts, in no particular order; empty if none hold it.
+     */
+    public synchronized List<Location> locate(Card card) {
+        int id = card.getId();
+        List<Location> locations = new ArrayList<>();
+        if (id < 0 || id >= firstHolders.length || firstHolders[id] == null) {
+            return locations;
+        }
+        locations.add(new Location(firstHolders[id], firstCounts[id]));
+        Map<CardContainer, Integer> others = otherHolders.get(id);
+        if (others != null) {
+            others.forEach((container, count) -> locations.add(new Location(container, count)));
+        }
+        return locations;
+    }
+
+    /**
+     * Counts the containers holding copies of a card.
+     *
+     * @param card The canonical card.
+     * @return The number of containers.
+     */
+    public synchronized int countHolders(Card card) {
+        int id = card.getId();
+        if (id < 0 || id >= firstHolders.length || firstHolders[id] == null) {
+            return 0;
+        }
+        Map<CardContainer, Integer> others = otherHolders.get(id);
+        return 1 + (others == null ? 0 : others.size());
+    }
+}
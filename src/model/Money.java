@@ -0,0 +1,228 @@
+/**
+ * Money.java
+ *
+ * An immutable monetary amount stored as a whole number of cents in a {@code long}.
+ * All arithmetic is exact and overflow-checked: additions and subtractions never drift, and
+ * operations that need rounding (such as applying a variant multiplier or a 10% bonus)
+ * round half-even to the nearest cent exactly once.
+ *
+ * Because cent amounts are integers, sums are associative, so totals are bit-identical
+ * regardless of the order in which they are added or how the work is split across threads.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money value with cent precision.
+ */
+public final class Money implements Comparable<Money> {
+
+    /** The zero amount. */
+    public static final Money ZERO = new Money(0);
+
+    /** The amount in cents. */
+    private final long cents;
+
+    /**
+     * Constructs an amount from cents.
+     *
+     * @param cents The amount in cents.
+     */
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Returns the amount for a number of cents.
+     *
+     * @param cents The amount in cents.
+     * @return The money value.
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Returns the amount closest to a decimal value, rounding half-even to the nearest cent.
+     *
+     * @param amount The amount in currency units.
+     * @return The money value.
+     * @throws ArithmeticException If the amount does not fit in a long of cents.
+     */
+    public static Money of(BigDecimal amount) {
+        return ofCents(amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Parses an amount such as {@code "12.5"} or {@code "0.99"}, rounding half-even to the nearest cent.
+     *
+     * @param text The text to parse.
+     * @return The money value.
+     * @throws NumberFormatException If the text is not a number.
+     * @throws ArithmeticException   If the amount does not fit in a long of cents.
+     */
+    public static Money parse(String text) {
+        return of(new BigDecimal(text.trim()));
+    }
+
+    /**
+     * Returns the amount in cents.
+     *
+     * @return The amount in cents.
+     */
+    public long getCents() {
+        return cents;
+    }
+
+    /**
+     * Returns the amount as a double, for display and charting only.
+     *
+     * @return The approximate amount in currency units.
+     */
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    /**
+     * Returns the sum of this amount and another.
+     *
+     * @param other The amount to add.
+     * @return The sum.
+     * @throws ArithmeticException If the result overflows.
+     */
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    /**
+     * Returns the difference of this amount and another.
+     *
+     * @param other The amount to subtract.
+     * @return The difference.
+     * @throws ArithmeticException If the result overflows.
+     */
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    /**
+     * Returns this amount multiplied by a whole number, such as a copy count.
+     *
+     * @param factor The multiplier.
+     * @return The product.
+     * @throws ArithmeticException If the result overflows.
+     */
+    public Money times(long factor) {
+        return ofCents(Math.multiplyExact(cents, factor));
+    }
+
+    /**
+     * Returns this amount multiplied by {@code numerator / denominator}, rounded half-even to the cent.
+     * For example, {@code scale(110, 100)} adds 10%.
+     *
+     * @param numerator   The numerator of the factor.
+     * @param denominator The positive denominator of the factor.
+     * @return The scaled amount.
+     * @throws ArithmeticException If the result overflows.
+     */
+    public Money scale(long numerator, long denominator) {
+        return ofCents(scaleCents(cents, numerator, denominator));
+    }
+
+    /**
+     * Multiplies a cent amount by {@code numerator / denominator}, rounding half-even.
+     *
+     * @param cents       The amount in cents.
+     * @param numerator   The numerator of the factor.
+     * @param denominator The positive denominator of the factor.
+     * @return The scaled amount in cents.
+     * @throws ArithmeticException If the result overflows.
+     */
+    static long scaleCents(long cents, long numerator, long denominator) {
+        long product = Math.multiplyExact(cents, numerator);
+        long quotient = Math.floorDiv(product, denominator);
+        long remainder = Math.floorMod(product, denominator);
+        long twice = remainder * 2;
+        if (twice > denominator || (twice == denominator && (quotient & 1) != 0)) {
+            quotient = Math.addExact(quotient, 1);
+        }
+        return quotient;
+    }
+
+    /**
+     * Returns the absolute value of this amount.
+     *
+     * @return The absolute amount.
+     */
+    public Money abs() {
+        return cents < 0 ? ofCents(Math.negateExact(cents)) : this;
+    }
+
+    /**
+     * Returns the larger of this amount and another.
+     *
+     * @param other The amount to compare with.
+     * @return The larger amount.
+     */
+    public Money max(Money other) {
+        return cents >= other.cents ? this : other;
+    }
+
+    /**
+     * Checks whether the amount is below zero.
+     *
+     * @return True if negative.
+     */
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    /**
+     * Compares two amounts.
+     *
+     * @param other The amount to compare with.
+     * @return A negative, zero or positive number as this amount is smaller, equal or larger.
+     */
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    /**
+     * Checks whether another object is the same amount.
+     *
+     * @param obj The object to compare.
+     * @return True if it is a Money with the same number of cents.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Money other && other.cents == cents;
+    }
+
+    /**
+     * Generates a hash code from the amount.
+     *
+     * @return Hash code based on cents.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * Returns the amount with exactly two decimals and no currency symbol, e.g. {@code "12.50"}.
+     *
+     * @return The formatted amount.
+     */
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
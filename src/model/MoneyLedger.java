@@ -0,0 +1,292 @@
+/**
+ * MoneyLedger.java
+ *
+ * The money balance of the inventory, built so that many threads can post sales at once without
+ * queuing on one lock. The balance is a {@link LongAdder} over cents, so posting a credit and reading
+ * the balance never contend. Each posting is also written to one of several journal stripes, picked
+ * by thread; a stripe keeps an exact running total plus a bounded ring of its most recent entries.
+ *
+ * {@link #reconcile()} adds up the stripe totals under all stripe locks and checks them against
+ * the adder, which gives an exact balance on demand. Debits are rare, so they take one lock to make
+ * sure the balance cannot go below zero; credits never do.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Striped, journaled money balance with exact reconciliation.
+ */
+public class MoneyLedger {
+
+    /**
+     * One posting to the ledger.
+     *
+     * @param cents     The amount in cents, negative for a debit.
+     * @param memo      What the posting was for.
+     * @param timestamp {@link System#nanoTime()} when it was posted, for ordering.
+     */
+    public record Entry(long cents, String memo, long timestamp) {
+
+        /**
+         * Returns the amount.
+         *
+         * @return The amount, negative for a debit.
+         */
+        public Money amount() {
+            return Money.ofCents(cents);
+        }
+    }
+
+    /** Default number of journal entries kept across all stripes. */
+    public static final int DEFAULT_JOURNAL_CAPACITY = 1024;
+
+    /** The balance in cents, as the sum of all postings. */
+    private final LongAdder balance;
+
+    /** Journal stripes; a thread always posts to the same one. */
+    private final Stripe[] stripes;
+
+    /** Serializes debits so the balance check and the posting are atomic. */
+    private final Object debitLock;
+
+    /**
+     * Constructs an empty ledger with the default journal capacity.
+     */
+    public MoneyLedger() {
+        this(DEFAULT_JOURNAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty ledger.
+     *
+     * @param journalCapacity The number of recent entries to keep, shared across stripes.
+     * @throws IllegalArgumentException If the capacity is below 1.
+     */
+    public MoneyLedger(int journalCapacity) {
+        if (journalCapacity < 1) {
+            throw new IllegalArgumentException("Journal capacity must be at least 1: " + journalCapacity);
+        }
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.balance = new LongAdder();
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(Math.max(1, journalCapacity / count));
+        }
+        this.debitLock = new Object();
+    }
+
+    /**
+     * Returns the current balance. This never blocks; while postings are in flight on other threads
+     * it may not include them yet. Use {@link #reconcile()} for an exact figure.
+     *
+     * @return The balance.
+     */
+    public Money getBalance() {
+        return Money.ofCents(balance.sum());
+    }
+
+    /**
+     * Adds money to the balance.
+     *
+     * @param amount The amount, not negative.
+     * @param memo   What the credit is for.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public void credit(Money amount, String memo) {
+        if (amount.isNegative()) {
+            throw new IllegalArgumentException("Credit must not be negative: " + amount);
+        }
+        post(amount.getCents(), memo);
+    }
+
+    /**
+     * Takes money from the balance.
+     *
+     * @param amount The amount, not negative.
+     * @param memo   What the debit is for.
+     * @throws IllegalArgumentException If the amount is negative or larger than the balance.
+     */
+    public void debit(Money amount, String memo) {
+        if (amount.isNegative()) {
+            throw new IllegalArgumentException("Debit must not be negative: " + amount);
+        }
+        synchronized (debitLock) {
+            // Other debits are locked out and credits only raise the balance, so the check holds.
+            if (balance.sum() < amount.getCents()) {
+                throw new IllegalArgumentException("Not enough money.");
+            }
+            post(Math.negateExact(amount.getCents()), memo);
+        }
+    }
+
+    /**
+     * Posts a signed amount: a credit if positive, a debit if negative.
+     *
+     * @param cents The amount in cents.
+     * @param memo  What the posting is for.
+     * @throws IllegalArgumentException If a debit is larger than the balance.
+     */
+    public void apply(long cents, String memo) {
+        if (cents >= 0) {
+            credit(Money.ofCents(cents), memo);
+        } else {
+            debit(Money.ofCents(Math.negateExact(cents)), memo);
+        }
+    }
+
+    /**
+     * Adds up the exact total of every posting ever made and checks it against the running balance.
+     * Holds every stripe lock while counting, so the result is exact at one point in time.
+     *
+     * @return The exact balance.
+     * @throws IllegalStateException If the running balance has drifted from the postings.
+     */
+    public Money reconcile() {
+        return Money.ofCents(lockStripes(0, () -> {
+            long total = 0;
+            for (Stripe stripe : stripes) {
+                total = Math.addExact(total, stripe.total);
+            }
+            long running = balance.sum();
+            if (running != total) {
+                throw new IllegalStateException("Ledger drifted: balance " + Money.ofCents(running)
+                    + ", postings " + Money.ofCents(total));
+            }
+            return total;
+        }));
+    }
+
+    /**
+     * Replaces the balance with an opening amount, clearing the journal.
+     * Used when the inventory is restored or loaded.
+     *
+     * @param opening The new balance, not negative.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public void reset(Money opening) {
+        if (opening.isNegative()) {
+            throw new IllegalArgumentException("Balance must not be negative: " + opening);
+        }
+        synchronized (debitLock) {
+            lockStripes(0, () -> {
+                for (Stripe stripe : stripes) {
+                    stripe.clear();
+                }
+                balance.reset();
+                stripes[0].record(opening.getCents(), "Opening balance");
+                balance.add(opening.getCents());
+                return 0L;
+            });
+        }
+    }
+
+    /**
+     * Returns the most recent entries still in the journal, oldest first.
+     *
+     * @return A new list of entries.
+     */
+    public List<Entry> getJournal() {
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.copyTo(entries);
+        }
+        entries.sort(Comparator.comparingLong(Entry::timestamp));
+        return entries;
+    }
+
+    /**
+     * Records a posting on the calling thread's stripe and adds it to the balance.
+     *
+     * @param cents The signed amount in cents.
+     * @param memo  What the posting is for.
+     */
+    private void post(long cents, String memo) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        synchronized (stripe) {
+            stripe.record(cents, memo);
+            balance.add(cents);
+        }
+    }
+
+    /**
+     * Locks the stripes from index i onward in order, then runs the action.
+     *
+     * @param i      The next stripe to lock.
+     * @param action The action to run with all stripes locked.
+     * @return The action's result.
+     */
+    private long lockStripes(int i, LongSupplier action) {
+        if (i == stripes.length) {
+            return action.getAsLong();
+        }
+        synchronized (stripes[i]) {
+            return lockStripes(i + 1, action);
+        }
+    }
+
+    /**
+     * One journal stripe: an exact total and a ring of recent entries, guarded by the stripe itself.
+     */
+    private static final class Stripe {
+
+        /** Exact sum of every posting made on this stripe. */
+        long total;
+
+        /** Most recent entries, overwritten oldest first. */
+        final Entry[] ring;
+
+        /** Number of entries ever recorded since the last clear. */
+        long recorded;
+
+        /**
+         * Constructs an empty stripe.
+         *
+         * @param capacity The number of entries kept.
+         */
+        Stripe(int capacity) {
+            this.ring = new Entry[capacity];
+        }
+
+        /**
+         * Records a posting. The caller holds the stripe lock.
+         *
+         * @param cents The signed amount in cents.
+         * @param memo  What the posting is for.
+         */
+        void record(long cents, String memo) {
+            total = Math.addExact(total, cents);
+            ring[(int) (recorded++ % ring.length)] = new Entry(cents, memo, System.nanoTime());
+        }
+
+        /**
+         * Forgets every posting. The caller holds the stripe lock.
+         */
+        void clear() {
+            total = 0;
+            recorded = 0;
+            Arrays.fill(ring, null);
+        }
+
+        /**
+         * Copies the entries still in the ring.
+         *
+         * @param out The list to append to.
+         */
+        synchronized void copyTo(List<Entry> out) {
+            for (Entry entry : ring) {
+                if (entry != null) out.add(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,910 @@
+/**
+ * PersistentCardMap.java
+ *
+ * An immutable map from cards to copy counts, stored as a hash array mapped trie (HAMT).
+ * Every update returns a new map that shares all untouched branches with the old one, so a change
+ * costs O(log n) time and memory and old versions stay valid forever. This makes it cheap to keep
+ * many versions of a container around for undo, to read them from other threads, and to diff two
+ * versions by skipping the branches they share.
+ *
+ * Cards with a count of zero are not stored. The trie is kept in canonical form (a branch holding a
+ * single card is folded into its parent), so the shape depends only on the contents.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, structurally shared card-to-count map.
+ */
+public final class PersistentCardMap {
+
+    /**
+     * Receives one difference between two maps.
+     */
+    @FunctionalInterface
+    public interface DiffConsumer {
+
+        /**
+         * Accepts a card whose count differs between the two maps.
+         *
+         * @param card     The card.
+         * @param oldCount The count in the older map (0 if absent).
+         * @param newCount The count in the newer map (0 if absent).
+         */
+        void accept(Card card, int oldCount, int newCount);
+    }
+
+    /**
+     * Collects cards and counts and builds a map from all of them at once. Each trie node is laid
+     * out exactly once, instead of copying a whole path per card as repeated {@link #with} calls do,
+     * so loading a large saved container is linear in its size. The result has the same canonical
+     * shape as a map built card by card.
+     */
+    public static final class Builder {
+
+        /** Cards added so far. */
+        private Card[] cards;
+
+        /** Their counts. */
+        private int[] counts;
+
+        /** Number of entries added. */
+        private int size;
+
+        /**
+         * Constructs a builder.
+         *
+         * @param expectedSize The number of cards expected, used to size the buffers.
+         */
+        public Builder(int expectedSize) {
+            this.cards = new Card[Math.max(expectedSize, 4)];
+            this.counts = new int[cards.length];
+        }
+
+        /**
+         * Adds a card. A count of zero is ignored; if a card is added twice, the later count wins.
+         *
+         * @param card  The card.
+         * @param count Its count.
+         * @return This builder.
+         * @throws IllegalArgumentException If count is negative.
+         */
+        public Builder put(Card card, int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Count must not be negative: " + count);
+            }
+            if (count == 0) {
+                return this;
+            }
+            if (size == cards.length) {
+                cards = Arrays.copyOf(cards, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            cards[size] = card;
+            counts[size] = count;
+            size++;
+            return this;
+        }
+
+        /**
+         * Builds the map. The builder should not be used afterwards.
+         *
+         * @return The map.
+         */
+        public PersistentCardMap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int[] hashes = new int[size];
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = hash(cards[i]);
+                order[i] = i;
+            }
+            int[] stored = { 0 };
+            Node root = build(hashes, order, new int[size], 0, size, 0, stored);
+            return new PersistentCardMap(root, stored[0]);
+        }
+
+        /**
+         * Builds the node for a range of entries that share the hash bits above {@code shift},
+         * sorting them by position with a stable counting sort.
+         *
+         * @param hashes  Spread hashes by entry.
+         * @param order   Entry numbers, of which the range is rearranged.
+         * @param scratch Space for the counting sort, as long as {@code order}.
+         * @param from    Start of the range, inclusive.
+         * @param to      End of the range, exclusive.
+         * @param shift   The depth in bits.
+         * @param stored  Single-element counter of distinct cards placed.
+         * @return The node.
+         */
+        private Node build(int[] hashes, int[] order, int[] scratch, int from, int to, int shift, int[] stored) {
+            if (shift >= HASH_BITS) {
+                return collision(order, from, to, stored);
+            }
+
+            int[] starts = new int[(1 << BITS) + 1];
+            for (int i = from; i < to; i++) {
+                starts[position(hashes[order[i]], shift) + 1]++;
+            }
+            for (int p = 0; p < 1 << BITS; p++) {
+                starts[p + 1] += starts[p];
+            }
+            int[] next = Arrays.copyOf(starts, 1 << BITS);
+            for (int i = from; i < to; i++) {
+                scratch[from + next[position(hashes[order[i]], shift)]++] = order[i];
+            }
+            System.arraycopy(scratch, from, order, from, to - from);
+
+            int dataMap = 0;
+            int nodeMap = 0;
+            Card[] keys = new Card[1 << BITS];
+            int[] values = new int[1 << BITS];
+            Node[] branches = new Node[1 << BITS];
+            int dataCount = 0;
+            int nodeCount = 0;
+            for (int p = 0; p < 1 << BITS; p++) {
+                int lo = from + starts[p];
+                int hi = from + starts[p + 1];
+                if (lo == hi) continue;
+                if (hi - lo == 1) {
+                    dataMap |= 1 << p;
+                    keys[dataCount] = cards[order[lo]];
+                    values[dataCount++] = counts[order[lo]];
+                    stored[0]++;
+                    continue;
+                }
+                Node branch = build(hashes, order, scratch, lo, hi, shift + BITS, stored);
+                if (branch.nodeMap == 0 && branch.keys.length == 1) {
+                    // Duplicates of one card collapsed to a single entry; keep the trie canonical.
+                    dataMap |= 1 << p;
+                    keys[dataCount] = branch.keys[0];
+                    values[dataCount++] = branch.counts[0];
+                } else {
+                    nodeMap |= 1 << p;
+                    branches[nodeCount++] = branch;
+                }
+            }
+            return new Node(dataMap, nodeMap, Arrays.copyOf(keys, dataCount), Arrays.copyOf(values, dataCount),
+                            nodeCount == 0 ? Node.EMPTY.nodes : Arrays.copyOf(branches, nodeCount));
+        }
+
+        /**
+         * Builds a collision node for entries whose hashes are all equal, keeping the later count
+         * of a card added twice.
+         *
+         * @param order  Entry numbers in the order they were added.
+         * @param from   Start of the range, inclusive.
+         * @param to     End of the range, exclusive.
+         * @param stored Single-element counter of distinct cards placed.
+         * @return The node.
+         */
+        private Node collision(int[] order, int from, int to, int[] stored) {
+            Card[] keys = new Card[to - from];
+            int[] values = new int[to - from];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                Card card = cards[order[i]];
+                int j = 0;
+                while (j < n && !keys[j].equals(card)) j++;
+                if (j == n) {
+                    keys[n++] = card;
+                    stored[0]++;
+                }
+                values[j] = counts[order[i]];
+            }
+            return new Node(0, 0, Arrays.copyOf(keys, n), Arrays.copyOf(values, n), Node.EMPTY.nodes);
+        }
+    }
+
+    /** Bits of the hash consumed per trie level. */
+    private static final int BITS = 5;
+
+    /** Width of the hash; below this depth, cards with equal hashes share a collision node. */
+    private static final int HASH_BITS = 32;
+
+    /** The empty map. */
+    public static final PersistentCardMap EMPTY = new PersistentCardMap(Node.EMPTY, 0);
+
+    /** Root of the trie. */
+    private final Node root;
+
+    /** Number of cards stored. */
+    private final int size;
+
+    /**
+     * Constructs a map over a trie.
+     *
+     * @param root The root node.
+     * @param size The number of cards stored.
+     */
+    private PersistentCardMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of cards with at least one copy.
+     *
+     * @return Number of cards.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map holds no cards.
+     *
+     * @return True if empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of copies of a card.
+     *
+     * @param card The card to look up.
+     * @return The count, or 0 if absent.
+     */
+    public int get(Card card) {
+        return root.get(card, hash(card), 0);
+    }
+
+    /**
+     * Returns a map in which the card has the given count. A count of zero removes the card.
+     *
+     * @param card  The card.
+     * @param count The new count.
+     * @return The updated map, or this map if nothing changed.
+     * @throws IllegalArgumentException If count is negative.
+     */
+    public PersistentCardMap with(Card card, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        int hash = hash(card);
+        int old = root.get(card, hash, 0);
+        if (old == count) {
+            return this;
+        }
+        if (count == 0) {
+            return new PersistentCardMap(root.remove(card, hash, 0), size - 1);
+        }
+        return new PersistentCardMap(root.put(card, hash, count, 0), old == 0 ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the card.
+     *
+     * @param card The card to remove.
+     * @return The updated map, or this map if the card was absent.
+     */
+    public PersistentCardMap without(Card card) {
+        return with(card, 0);
+    }
+
+    /**
+     * Visits every card with its count.
+     *
+     * @param consumer The callback receiving each (card, count) pair.
+     */
+    public void forEach(CardCountMap.CountConsumer consumer) {
+        root.forEach(consumer);
+    }
+
+    /**
+     * Reports every card whose count differs between this (older) map and a newer one. A card that
+     * was replaced by another version of itself, such as one with a new price, is reported as the
+     * old version going to 0 followed by the new one coming from 0.
+     * Branches the two maps share are skipped without being visited, so diffing two nearby
+     * versions costs time proportional to the changes, not to the size of the maps.
+     *
+     * @param newer    The map to compare against.
+     * @param consumer The callback receiving each difference.
+     */
+    public void diff(PersistentCardMap newer, DiffConsumer consumer) {
+        diff(root, newer.root, 0, consumer);
+    }
+
+    /**
+     * Returns the cards as a read-only set view. Since the map never changes, the view costs
+     * nothing to hand out and needs no lock to read; lookups go through the trie.
+     *
+     * @return Set of cards.
+     */
+    public Set<Card> cardSet() {
+        return new AbstractSet<Card>() {
+            @Override
+            public Iterator<Card> iterator() {
+                return new Iterator<Card>() {
+                    private final Cursor cursor = new Cursor(root);
+
+                    @Override
+                    public boolean hasNext() {
+                        return cursor.hasNext();
+                    }
+
+                    @Override
+                    public Card next() {
+                        if (!cursor.hasNext()) throw new NoSuchElementException();
+                        Card card = cursor.card();
+                        cursor.advance();
+                        return card;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Card card && get(card) > 0;
+            }
+        };
+    }
+
+    /**
+     * Returns the cards and counts as a read-only map view. Like {@link #cardSet()}, it costs nothing
+     * to hand out and needs no lock to read.
+     *
+     * @return Map of cards to counts.
+     */
+    public Map<Card, Integer> asMap() {
+        return new AbstractMap<Card, Integer>() {
+            @Override
+            public Set<Map.Entry<Card, Integer>> entrySet() {
+                return new AbstractSet<Map.Entry<Card, Integer>>() {
+                    @Override
+                    public Iterator<Map.Entry<Card, Integer>> iterator() {
+                        return new Iterator<Map.Entry<Card, Integer>>() {
+                            private final Cursor cursor = new Cursor(root);
+
+                            @Override
+                            public boolean hasNext() {
+                                return cursor.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<Card, Integer> next() {
+                                if (!cursor.hasNext()) throw new NoSuchElementException();
+                                Map.Entry<Card, Integer> entry = Map.entry(cursor.card(), cursor.count());
+                                cursor.advance();
+                                return entry;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof Card card && PersistentCardMap.this.get(card) > 0;
+            }
+
+            @Override
+            public Integer get(Object key) {
+                int count = key instanceof Card card ? PersistentCardMap.this.get(card) : 0;
+                return count > 0 ? count : null;
+            }
+
+            @Override
+            public Set<Card> keySet() {
+                return cardSet();
+            }
+        };
+    }
+
+    /**
+     * Walks a trie depth first, one card at a time, keeping the path from the root on a small stack
+     * instead of copying the cards out.
+     */
+    private static final class Cursor {
+
+        /** Deepest path: one node per level while hash bits remain, plus a collision node. */
+        private static final int MAX_DEPTH = (HASH_BITS + BITS - 1) / BITS + 1;
+
+        /** Nodes on the path from the root to the current one. */
+        private final Node[] path = new Node[MAX_DEPTH];
+
+        /** For each node on the path, the next branch to descend into. */
+        private final int[] branches = new int[MAX_DEPTH];
+
+        /** Index of the current node on the path, or -1 once the walk is done. */
+        private int depth;
+
+        /** Index of the current card in the current node. */
+        private int key;
+
+        /**
+         * Starts a walk at the first card of a trie.
+         *
+         * @param root The root node.
+         */
+        Cursor(Node root) {
+            path[0] = root;
+            settle();
+        }
+
+        /**
+         * Checks whether the cursor is on a card.
+         *
+         * @return True if a card remains.
+         */
+        boolean hasNext() {
+            return depth >= 0;
+        }
+
+        /**
+         * Returns the current card.
+         *
+         * @return The card.
+         */
+        Card card() {
+            return path[depth].keys[key];
+        }
+
+        /**
+         * Returns the count of the current card.
+         *
+         * @return The count.
+         */
+        int count() {
+            return path[depth].counts[key];
+        }
+
+        /**
+         * Moves to the next card.
+         */
+        void advance() {
+            key++;
+            settle();
+        }
+
+        /**
+         * Moves forward until the cursor is on a card or past the last one. A node's own cards
+         * come before its branches, so a node is only left once its cards are used up.
+         */
+        private void settle() {
+            while (depth >= 0 && key >= path[depth].keys.length) {
+                Node node = path[depth];
+                if (branches[depth] < node.nodes.length) {
+                    Node branch = node.nodes[branches[depth]++];
+                    path[++depth] = branch;
+                    branches[depth] = 0;
+                    key = 0;
+                } else {
+                    path[depth--] = null;
+                    key = Integer.MAX_VALUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Spreads a card's hash code so that similar names land in different branches.
+     *
+     * @param card The card.
+     * @return The spread hash.
+     */
+    private static int hash(Card card) {
+        int h = card.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the position of a hash at the given depth.
+     *
+     * @param hash  The spread hash.
+     * @param shift The depth in bits.
+     * @return The branch position, from 0 to 31.
+     */
+    private static int position(int hash, int shift) {
+        return (hash >>> shift) & ((1 << BITS) - 1);
+    }
+
+    /**
+     * Returns the number of set bits in a bitmap below the given bit.
+     *
+     * @param map The bitmap.
+     * @param bit The single-bit mask.
+     * @return The array index for that bit.
+     */
+    private static int index(int map, int bit) {
+        return Integer.bitCount(map & (bit - 1));
+    }
+
+    /**
+     * Diffs two subtries at the same depth.
+     *
+     * @param a        The older node.
+     * @param b        The newer node.
+     * @param shift    The depth in bits.
+     * @param consumer The callback receiving each difference.
+     */
+    private static void diff(Node a, Node b, int shift, DiffConsumer consumer) {
+        if (a == b) return;
+        if (shift >= HASH_BITS) {
+            diffByLookup(a, b, consumer);
+            return;
+        }
+
+        int positions = a.dataMap | a.nodeMap | b.dataMap | b.nodeMap;
+        while (positions != 0) {
+            int bit = Integer.lowestOneBit(positions);
+            positions &= positions - 1;
+
+            if ((a.nodeMap & bit) != 0 && (b.nodeMap & bit) != 0) {
+                diff(a.nodes[index(a.nodeMap, bit)], b.nodes[index(b.nodeMap, bit)], shift + BITS, consumer);
+            } else if ((a.dataMap & bit) != 0 && (b.dataMap & bit) != 0) {
+                int i = index(a.dataMap, bit);
+                int j = index(b.dataMap, bit);
+                if (a.keys[i].sameAs(b.keys[j])) {
+                    if (a.counts[i] != b.counts[j]) {
+                        consumer.accept(b.keys[j], a.counts[i], b.counts[j]);
+                    }
+                } else {
+                    consumer.accept(a.keys[i], a.counts[i], 0);
+                    consumer.accept(b.keys[j], 0, b.counts[j]);
+                }
+            } else {
+                diffByLookup(a.branch(bit), b.branch(bit), consumer);
+            }
+        }
+    }
+
+    /**
+     * Diffs two small subtries by looking up each card of one in the other.
+     * Used where the two shapes differ, such as a single card on one side and a branch on the other.
+     *
+     * @param a        The older node.
+     * @param b        The newer node.
+     * @param consumer The callback receiving each difference.
+     */
+    private static void diffByLookup(Node a, Node b, DiffConsumer consumer) {
+        Map<Card, Card> olderKeys = new HashMap<>();
+        Map<Card, Integer> older = new HashMap<>();
+        a.forEach((card, count) -> {
+            olderKeys.put(card, card);
+            older.put(card, count);
+        });
+        b.forEach((card, count) -> {
+            Card oldKey = olderKeys.remove(card);
+            Integer old = older.remove(card);
+            int oldCount = old == null ? 0 : old;
+            if (oldKey != null && !oldKey.sameAs(card)) {
+                consumer.accept(oldKey, oldCount, 0);
+                oldCount = 0;
+            }
+            if (oldCount != count) {
+                consumer.accept(card, oldCount, count);
+            }
+        });
+        older.forEach((card, count) -> consumer.accept(card, count, 0));
+    }
+
+    /**
+     * A trie node. Cards stored directly in the node are indexed by {@code dataMap}, child branches
+     * by {@code nodeMap}. Below the hash width a node is a collision node: both bitmaps are zero and
+     * the keys all share one hash.
+     */
+    private static final class Node {
+
+        /** The empty node. */
+        static final Node EMPTY = new Node(0, 0, new Card[0], new int[0], new Node[0]);
+
+        /** Positions holding a card directly. */
+        final int dataMap;
+
+        /** Positions holding a child branch. */
+        final int nodeMap;
+
+        /** Cards stored directly, in position order. */
+        final Card[] keys;
+
+        /** Counts of the cards stored directly. */
+        final int[] counts;
+
+        /** Child branches, in position order. */
+        final Node[] nodes;
+
+        /**
+         * Constructs a node.
+         *
+         * @param dataMap Positions holding a card.
+         * @param nodeMap Positions holding a branch.
+         * @param keys    Cards stored directly.
+         * @param counts  Counts of those cards.
+         * @param nodes   Child branches.
+         */
+        Node(int dataMap, int nodeMap, Card[] keys, int[] counts, Node[] nodes) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.counts = counts;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Looks up a card's count.
+         *
+         * @param card  The card.
+         * @param hash  Its spread hash.
+         * @param shift The depth in bits.
+         * @return The count, or 0 if absent.
+         */
+        int get(Card card, int hash, int shift) {
+            if (shift >= HASH_BITS) {
+                int i = find(card);
+                return i < 0 ? 0 : counts[i];
+            }
+            int bit = 1 << position(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit);
+                return keys[i].equals(card) ? counts[i] : 0;
+            }
+            if ((nodeMap & bit) != 0) {
+                return nodes[index(nodeMap, bit)].get(card, hash, shift + BITS);
+            }
+            return 0;
+        }
+
+        /**
+         * Returns a copy of this node with the card set to a positive count.
+         *
+         * @param card  The card.
+         * @param hash  Its spread hash.
+         * @param count The count to store.
+         * @param shift The depth in bits.
+         * @return The new node.
+         */
+        Node put(Card card, int hash, int count, int shift) {
+            if (shift >= HASH_BITS) {
+                int i = find(card);
+                return i >= 0 ? withCount(i, card, count) : withData(0, keys.length, card, count);
+            }
+
+            int bit = 1 << position(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit);
+                if (keys[i].equals(card)) {
+                    return withCount(i, card, count);
+                }
+                Node branch = pair(keys[i], hash(keys[i]), counts[i], card, hash, count, shift + BITS);
+                return dataToBranch(bit, i, branch);
+            }
+            if ((nodeMap & bit) != 0) {
+                int j = index(nodeMap, bit);
+                return withBranch(j, nodes[j].put(card, hash, count, shift + BITS));
+            }
+            return withData(bit, index(dataMap, bit), card, count);
+        }
+
+        /**
+         * Returns a copy of this node without the card.
+         *
+         * @param card  The card, which must be present.
+         * @param hash  Its spread hash.
+         * @param shift The depth in bits.
+         * @return The new node.
+         */
+        Node remove(Card card, int hash, int shift) {
+            if (shift >= HASH_BITS) {
+                return withoutData(0, find(card));
+            }
+
+            int bit = 1 << position(hash, shift);
+            if ((dataMap & bit) != 0) {
+                return withoutData(bit, index(dataMap, bit));
+            }
+            int j = index(nodeMap, bit);
+            Node branch = nodes[j].remove(card, hash, shift + BITS);
+            if (branch.nodeMap == 0 && branch.keys.length == 1) {
+                return branchToData(bit, j, branch.keys[0], branch.counts[0]);
+            }
+            return withBranch(j, branch);
+        }
+
+        /**
+         * Visits every card in the subtrie.
+         *
+         * @param consumer The callback receiving each (card, count) pair.
+         */
+        void forEach(CardCountMap.CountConsumer consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                consumer.accept(keys[i], counts[i]);
+            }
+            for (Node node : nodes) {
+                node.forEach(consumer);
+            }
+        }
+
+        /**
+         * Returns whatever is stored at a position as a node: the branch itself, a single-card node,
+         * or the empty node.
+         *
+         * @param bit The single-bit mask of the position.
+         * @return The content as a node.
+         */
+        Node branch(int bit) {
+            if ((nodeMap & bit) != 0) {
+                return nodes[index(nodeMap, bit)];
+            }
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit);
+                return new Node(0, 0, new Card[] {keys[i]}, new int[] {counts[i]}, EMPTY.nodes);
+            }
+            return EMPTY;
+        }
+
+        /**
+         * Finds a card in a collision node.
+         *
+         * @param card The card.
+         * @return Its index, or -1 if absent.
+         */
+        private int find(Card card) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(card)) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Returns a copy with the card at index i replaced.
+         *
+         * @param i     The data index.
+         * @param card  The card.
+         * @param count The count.
+         * @return The new node.
+         */
+        private Node withCount(int i, Card card, int count) {
+            Card[] newKeys = keys.clone();
+            int[] newCounts = counts.clone();
+            newKeys[i] = card;
+            newCounts[i] = count;
+            return new Node(dataMap, nodeMap, newKeys, newCounts, nodes);
+        }
+
+        /**
+         * Returns a copy with a card inserted at index i.
+         *
+         * @param bit   The position's bit, or 0 in a collision node.
+         * @param i     The data index.
+         * @param card  The card.
+         * @param count The count.
+         * @return The new node.
+         */
+        private Node withData(int bit, int i, Card card, int count) {
+            Card[] newKeys = new Card[keys.length + 1];
+            int[] newCounts = new int[counts.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(counts, 0, newCounts, 0, i);
+            newKeys[i] = card;
+            newCounts[i] = count;
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(counts, i, newCounts, i + 1, counts.length - i);
+            return new Node(dataMap | bit, nodeMap, newKeys, newCounts, nodes);
+        }
+
+        /**
+         * Returns a copy without the card at index i.
+         *
+         * @param bit The position's bit, or 0 in a collision node.
+         * @param i   The data index.
+         * @return The new node.
+         */
+        private Node withoutData(int bit, int i) {
+            Card[] newKeys = new Card[keys.length - 1];
+            int[] newCounts = new int[counts.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(counts, 0, newCounts, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(counts, i + 1, newCounts, i, counts.length - i - 1);
+            return new Node(dataMap & ~bit, nodeMap, newKeys, newCounts, nodes);
+        }
+
+        /**
+         * Returns a copy with the branch at index j replaced.
+         *
+         * @param j      The branch index.
+         * @param branch The new branch.
+         * @return The new node.
+         */
+        private Node withBranch(int j, Node branch) {
+            Node[] newNodes = nodes.clone();
+            newNodes[j] = branch;
+            return new Node(dataMap, nodeMap, keys, counts, newNodes);
+        }
+
+        /**
+         * Returns a copy in which the card at a position is replaced by a branch.
+         *
+         * @param bit    The position's bit.
+         * @param i      The data index of the card.
+         * @param branch The branch taking its place.
+         * @return The new node.
+         */
+        private Node dataToBranch(int bit, int i, Node branch) {
+            Node withoutCard = withoutData(bit, i);
+            int j = index(nodeMap, bit);
+            Node[] newNodes = new Node[nodes.length + 1];
+            System.arraycopy(nodes, 0, newNodes, 0, j);
+            newNodes[j] = branch;
+            System.arraycopy(nodes, j, newNodes, j + 1, nodes.length - j);
+            return new Node(withoutCard.dataMap, nodeMap | bit, withoutCard.keys, withoutCard.counts, newNodes);
+        }
+
+        /**
+         * Returns a copy in which a branch holding a single card is folded back into this node.
+         *
+         * @param bit   The position's bit.
+         * @param j     The branch index.
+         * @param card  The branch's only card.
+         * @param count Its count.
+         * @return The new node.
+         */
+        private Node branchToData(int bit, int j, Card card, int count) {
+            Node[] newNodes = new Node[nodes.length - 1];
+            System.arraycopy(nodes, 0, newNodes, 0, j);
+            System.arraycopy(nodes, j + 1, newNodes, j, nodes.length - j - 1);
+            Node withoutBranch = new Node(dataMap, nodeMap & ~bit, keys, counts, newNodes);
+            return withoutBranch.withData(bit, index(dataMap, bit), card, count);
+        }
+
+        /**
+         * Builds the smallest subtrie holding two cards that collided at the level above.
+         *
+         * @param k1    The first card.
+         * @param h1    Its spread hash.
+         * @param c1    Its count.
+         * @param k2    The second card.
+         * @param h2    Its spread hash.
+         * @param c2    Its count.
+         * @param shift The depth in bits of the new node.
+         * @return The new node.
+         */
+        private static Node pair(Card k1, int h1, int c1, Card k2, int h2, int c2, int shift) {
+            if (shift >= HASH_BITS) {
+                return new Node(0, 0, new Card[] {k1, k2}, new int[] {c1, c2}, EMPTY.nodes);
+            }
+            int p1 = position(h1, shift);
+            int p2 = position(h2, shift);
+            if (p1 == p2) {
+                Node branch = pair(k1, h1, c1, k2, h2, c2, shift + BITS);
+                return new Node(0, 1 << p1, EMPTY.keys, EMPTY.counts, new Node[] {branch});
+            }
+            int dataMap = (1 << p1) | (1 << p2);
+            return p1 < p2
+                ? new Node(dataMap, 0, new Card[] {k1, k2}, new int[] {c1, c2}, EMPTY.nodes)
+                : new Node(dataMap, 0, new Card[] {k2, k1}, new int[] {c2, c1}, EMPTY.nodes);
+        }
+    }
+}
@@ -26,5 +26,5 @@ public interface Sellable {
      *
      * @return Total monetary value.
      */
-    double getTotalValue();
+    Money getTotalValue();
 }
@@ -6,6 +6,26 @@
  * Provides functionality to sell cards, trade cards, move cards between containers,
  * and compute overall stats like total cards and balance.
  *
+ * The system is safe to use from several threads. Each container guards itself with its own lock,
+ * every operation that touches more than one container or the balance runs as an
+ * {@link InventoryTransaction}, and the balance and card totals can be read without blocking.
+ *
+ * One lock per container is enough; finer locking, such as lock striping or a concurrent map with
+ * an atomic counter per card, would not let more operations run at once:
+ * - Every change to a container also updates state that spans all of it: the running totals, the
+ *   version that transactions check, and the root of its persistent map. The rules look at the
+ *   whole container too, such as a binder's or deck's capacity in unique cards. Per-card counters
+ *   would still have to update all of that in step, so they would only move the point where
+ *   threads wait, and snapshots would stop being consistent.
+ * - The lock is held for a hash probe and an O(log n) path copy, so critical sections are short.
+ * - Containers never share a lock, so only operations on the same container wait for each other.
+ *   A transaction over several containers takes one lock each, in a fixed order.
+ * What every thread does share is the read side of the commit gate, taken exclusively only by
+ * snapshots and restores, and the value and location indexes. The indexes are updated after the
+ * container locks are released, by whichever thread gets there first, and that thread applies the
+ * changes of every commit queued meanwhile in one pass. {@code stress.InventoryThroughput}
+ * measures the result at 1 to 32 threads.
+ *
  * @version 2.0
  * author Theodore Garcia
  * author Ronin Zerna
@@ -14,27 +34,102 @@
 package model;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import enums.*;
 
 public class TradingCardInventorySystem {
 
+    /**
+     * One change in a card's count in a container, waiting to be applied to the indexes.
+     *
+     * @param container The container.
+     * @param card      The canonical card.
+     * @param oldCount  The count before.
+     * @param newCount  The count after.
+     */
+    private record CountChange(CardContainer container, Card card, int oldCount, int newCount) {
+    }
+
+    /** Canonical cards known to the system, addressable by id. */
+    private final CardCatalog catalog;
+
     /** The user's main card collection (unrestricted). */
-    private Collection collection;
+    private final Collection collection;
+
+    /** All decks and binders owned by the user, indexed by type and name. Replaced by {@link #restore}. */
+    private volatile ContainerRegistry containers;
 
-    /** All decks and binders owned by the user. */
-    private List<CardContainer> containers;
+    /** Number of times {@link #runTransaction(Function)} tries a transaction before giving up. */
+    private static final int MAX_ATTEMPTS = 16;
 
-    /** User's total money balance. */
-    private double money;
+    /** User's money balance and journal of sales. Its locks are never held while taking a container lock. */
+    private final MoneyLedger ledger;
+
+    /** Observers told about every successful operation, such as an event log. */
+    private final List<InventoryListener> listeners;
+
+    /** Held shared by every commit and exclusively by restores and {@link #whileQuiescent}. */
+    private final ReentrantReadWriteLock gate;
+
+    /** Every owned card by total value, across the collection and all containers. */
+    private final ValueIndex values;
+
+    /** The containers holding each owned card. */
+    private final LocationIndex locations;
+
+    /** Passes count changes in the collection and every registered container on to the indexes. */
+    private final CardContainer.CountListener counts;
+
+    /** Count changes of the transaction this thread is applying, or null outside a commit. */
+    private final ThreadLocal<List<CountChange>> committing;
+
+    /**
+     * Count changes of committed transactions, queued in commit order while their containers were
+     * still locked, so conflicting transactions reach the indexes in the order they took effect.
+     */
+    private final Queue<List<CountChange>> pendingCounts;
 
     /**
      * Constructs the trading card inventory system.
      * Initializes an empty collection, empty container list, and zero money.
      */
     public TradingCardInventorySystem() {
-        this.collection = new Collection();
-        this.containers = new ArrayList<>();
-        this.money = 0.0;
+        this.catalog = new CardCatalog();
+        this.collection = new Collection(catalog);
+        this.containers = new ContainerRegistry();
+        this.ledger = new MoneyLedger();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.gate = new ReentrantReadWriteLock();
+        this.values = new ValueIndex();
+        this.locations = new LocationIndex();
+        this.counts = this::countChanged;
+        this.committing = new ThreadLocal<>();
+        this.pendingCounts = new ConcurrentLinkedQueue<>();
+        collection.attach(counts);
+    }
+
+    /**
+     * Adds a listener that is told about every successful operation from now on.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(InventoryListener)}.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -46,19 +141,41 @@ public class TradingCardInventorySystem {
         return collection;
     }
 
+    /**
+     * Gets the catalog of canonical cards. Dialogs and imports should create cards through it.
+     *
+     * @return The card catalog.
+     */
+    public CardCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Gets the canonical card with the given catalog id.
+     *
+     * @param cardId The catalog id.
+     * @return The card with that id.
+     */
+    public Card getCard(int cardId) {
+        return catalog.get(cardId);
+    }
+
     /**
      * Gets a list of all decks in the system.
      *
      * @return A list of Deck objects.
      */
     public List<Deck> getDecks() {
-        List<Deck> decks = new ArrayList<>();
-        for (CardContainer c : containers) {
-            if (c instanceof Deck) {
-                decks.add((Deck) c);
-            }
-        }
-        return decks;
+        return containers.getDecks();
+    }
+
+    /**
+     * Gets the number of decks in the system.
+     *
+     * @return Deck count.
+     */
+    public int getDeckCount() {
+        return containers.getDeckCount();
     }
 
     /**
@@ -67,13 +184,65 @@ public class TradingCardInventorySystem {
      * @return A list of Binder objects.
      */
     public List<Binder> getBinders() {
-        List<Binder> binders = new ArrayList<>();
-        for (CardContainer c : containers) {
-            if (c instanceof Binder) {
-                binders.add((Binder) c);
-            }
-        }
-        return binders;
+        return containers.getBinders();
+    }
+
+    /**
+     * Gets a list of the binders of one type.
+     *
+     * @param type The binder type.
+     * @return A list of Binder objects of that type.
+     */
+    public List<Binder> getBinders(BinderType type) {
+        return containers.getBinders(type);
+    }
+
+    /**
+     * Gets the number of binders in the system.
+     *
+     * @return Binder count.
+     */
+    public int getBinderCount() {
+        return containers.getBinderCount();
+    }
+
+    /**
+     * Finds a binder or deck by name, ignoring case.
+     *
+     * @param name The container name.
+     * @return The container, or null if none has that name.
+     */
+    public CardContainer findContainer(String name) {
+        return containers.find(name);
+    }
+
+    /**
+     * Returns the index of every owned card by total value, for top-K, range and rank queries.
+     *
+     * @return The value index.
+     */
+    public ValueIndex getValueIndex() {
+        return values;
+    }
+
+    /**
+     * Returns the index of the containers holding each owned card.
+     *
+     * @return The location index.
+     */
+    public LocationIndex getLocationIndex() {
+        return locations;
+    }
+
+    /**
+     * Returns every container holding copies of a card, the collection included, without looking
+     * through the binders and decks.
+     *
+     * @param card The card.
+     * @return The containers with their counts.
+     */
+    public List<LocationIndex.Location> locate(Card card) {
+        return locations.locate(catalog.intern(card));
     }
 
     /**
@@ -81,8 +250,17 @@ public class TradingCardInventorySystem {
      *
      * @return Total money.
      */
-    public double getMoney() {
-        return money;
+    public Money getMoney() {
+        return ledger.getBalance();
+    }
+
+    /**
+     * Gets the ledger behind the money balance, for its journal and exact reconciliation.
+     *
+     * @return The money ledger.
+     */
+    public MoneyLedger getLedger() {
+        return ledger;
     }
 
     /**
@@ -92,12 +270,24 @@ public class TradingCardInventorySystem {
      * @return True if sold, false otherwise.
      */
     public boolean sellCard(Card card) {
-        if (collection.getCardCount(card) > 0) {
-            collection.removeCard(card);
-            money += card.getTotalValue();
+        try {
+            runTransaction(tx -> tx.remove(collection, card, 1)
+                .addMoney(card.getTotalValue(), "Sold " + card.getName())
+                .onCommit(() -> fire(l -> l.cardSold(card))));
             return true;
+        } catch (IllegalArgumentException notOwned) {
+            return false;
         }
-        return false;
+    }
+
+    /**
+     * Sells a card from the collection by catalog id.
+     *
+     * @param cardId The catalog id of the card to sell.
+     * @return True if sold, false otherwise.
+     */
+    public boolean sellCard(int cardId) {
+        return sellCard(catalog.get(cardId));
     }
 
     /**
@@ -105,9 +295,11 @@ public class TradingCardInventorySystem {
      *
      * @param name The binder name.
      * @param type The binder type.
+     * @throws IllegalArgumentException If the name is empty or already used by another binder or deck.
      */
     public void createBinder(String name, BinderType type) {
-        containers.add(new Binder(name, type));
+        Binder binder = new Binder(name, type);
+        runTransaction(tx -> tx.register(binder).onCommit(() -> fire(l -> l.binderCreated(name, type))));
     }
 
     /**
@@ -115,9 +307,11 @@ public class TradingCardInventorySystem {
      *
      * @param name The deck name.
      * @param type The deck type.
+     * @throws IllegalArgumentException If the name is empty or already used by another binder or deck.
      */
     public void createDeck(String name, DeckType type) {
-        containers.add(new Deck(name, type));
+        Deck deck = new Deck(name, type);
+        runTransaction(tx -> tx.register(deck).onCommit(() -> fire(l -> l.deckCreated(name, type))));
     }
 
     /**
@@ -126,31 +320,119 @@ public class TradingCardInventorySystem {
      * @param container The container to delete.
      */
     public void deleteContainer(CardContainer container) {
-        for (Map.Entry<Card, Integer> entry : container.getCardsWithCounts().entrySet()) {
-            Card template = entry.getKey();
-            int count = entry.getValue();
-            Card realKey = collection.findMatchingCard(template);
-            if (realKey == null) realKey = template;
-            for (int i = 0; i < count; i++) {
-                collection.addCard(realKey);
+        runTransaction(tx -> {
+            stageMerge(tx, container);
+            tx.unregister(container).onCommit(() -> fire(l -> l.containerDeleted(container.getName())));
+            return null;
+        });
+    }
+
+    /**
+     * Moves every card of a container back into the main collection, leaving the container empty.
+     * Each distinct card is transferred with one bulk update, whatever its number of copies.
+     *
+     * @param container The container to empty.
+     * @return The number of copies moved.
+     */
+    public int mergeIntoCollection(CardContainer container) {
+        return runTransaction(tx -> {
+            tx.onCommit(() -> fire(l -> l.containerMerged(container.getName())));
+            return stageMerge(tx, container);
+        });
+    }
+
+    /**
+     * Stages moving every card of a container into the collection. Cards go to the collection's
+     * matching card when it already owns one, so returned cards stack with the existing copies.
+     *
+     * @param tx        The transaction to stage into.
+     * @param container The container to empty.
+     * @return The number of copies staged.
+     */
+    private int stageMerge(InventoryTransaction tx, CardContainer container) {
+        ContainerSnapshot contents = tx.read(container);
+        contents.forEachCard((card, count) -> {
+            Card realKey = collection.findMatchingCard(card);
+            tx.remove(container, card, count).add(collection, realKey != null ? realKey : card, count);
+        });
+        return contents.getTotalCards();
+    }
+
+    /**
+     * Moves all copies of one card from a container back into the main collection.
+     *
+     * @param container The container to take the card from.
+     * @param card      The card to return.
+     * @return The number of copies moved.
+     */
+    public int returnToCollection(CardContainer container, Card card) {
+        return runTransaction(tx -> {
+            int count = tx.read(container, card);
+            if (count > 0) {
+                tx.move(container, collection, card, count)
+                  .onCommit(() -> fire(l -> l.cardReturned(container.getName(), card)));
             }
+            return count;
+        });
+    }
+
+    /**
+     * Moves several cards with their counts from one container to another, such as from the collection
+     * into a deck, in one transaction with one bulk update per card on each side and one change
+     * notification for the whole batch. A card is skipped if the source holds fewer copies than
+     * requested or the destination cannot take all of them.
+     *
+     * @param source      The container to take the cards from.
+     * @param destination The container to put the cards into.
+     * @param transfer    The cards to move and how many copies of each.
+     * @return The number of copies moved.
+     */
+    public int moveCards(CardContainer source, CardContainer destination, Map<Card, Integer> transfer) {
+        Map<Card, Integer> moved = new LinkedHashMap<>();
+        runTransaction(tx -> tx.moveAvailable(source, destination, transfer, moved).onCommit(() -> {
+            if (!moved.isEmpty()) {
+                Map<Card, Integer> batch = Collections.unmodifiableMap(moved);
+                fire(l -> l.cardsMoved(nameOf(source), nameOf(destination), batch));
+            }
+        }));
+        int total = 0;
+        for (int copies : moved.values()) {
+            total += copies;
         }
-        containers.remove(container);
+        return total;
     }
 
     /**
      * Moves a card from the collection into a destination container if allowed.
+     * Checks made beforehand can be overtaken by another thread, so callers should rely on the
+     * result rather than on their own checks.
      *
      * @param card       The card to move.
      * @param destination The destination container (deck or binder).
+     * @return True if the card was moved; false if the collection no longer held it or the
+     *         destination refused it, in which case nothing changed.
      */
-    public void moveCard(Card card, CardContainer destination) {
-        if (collection.getCardCount(card) > 0 && destination.canAddCard(card)) {
-            collection.removeCard(card);
-            destination.addCard(card);
+    public boolean moveCard(Card card, CardContainer destination) {
+        try {
+            runTransaction(tx -> tx.move(collection, destination, card, 1)
+                .onCommit(() -> fire(l -> l.cardsMoved(null, destination.getName(), card, 1))));
+            return true;
+        } catch (IllegalArgumentException rejected) {
+            return false;
         }
     }
 
+    /**
+     * Moves a card, given by catalog id, from the collection into a destination container if allowed.
+     *
+     * @param cardId      The catalog id of the card to move.
+     * @param destination The destination container (deck or binder).
+     * @return True if the card was moved.
+     */
+    public boolean moveCard(int cardId, CardContainer destination) {
+        return moveCard(catalog.get(cardId), destination);
+    }
+
     /**
      * Sells a container and removes it from the system.
      * Only works if the container is marked as sellable.
@@ -159,8 +441,13 @@ public class TradingCardInventorySystem {
      */
     public void sellContainer(CardContainer container) {
         if (container.isSellable()) {
-            money += container.getSellingValue();
-            containers.remove(container);
+            runTransaction(tx -> {
+                tx.read(container);
+                tx.addMoney(container.getSellingValue(), "Sold " + container.getName())
+                  .unregister(container)
+                  .onCommit(() -> fire(l -> l.containerSold(container.getName())));
+                return null;
+            });
         }
     }
 
@@ -173,14 +460,51 @@ public class TradingCardInventorySystem {
      * @param newCard      The card to add to the binder from the collection.
      */
     public void tradeCard(Binder binder, Card cardToTrade, Card newCard) {
-        if (binder.isTradeable() &&
-            binder.getCardCount(cardToTrade) > 0 &&
-            collection.getCardCount(newCard) > 0) {
+        if (!binder.isTradeable()) return;
 
-            binder.removeCard(cardToTrade);
-            binder.addCard(newCard);
-            collection.removeCard(newCard);
+        runTransaction(tx -> {
+            if (tx.read(binder, cardToTrade) > 0 && tx.read(collection, newCard) > 0) {
+                tx.remove(binder, cardToTrade, 1)
+                  .move(collection, binder, newCard, 1)
+                  .onCommit(() -> fire(l -> l.cardTraded(binder.getName(), cardToTrade, newCard)));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Trades a card inside a binder for a card from outside the inventory, all-or-nothing.
+     * The outgoing card leaves first, so a full binder can still take the incoming one.
+     *
+     * @param binder   The binder involved in the trade.
+     * @param outgoing The card leaving the binder.
+     * @param incoming The card entering the binder.
+     * @throws IllegalArgumentException If the binder cannot trade, lacks the outgoing card,
+     *                                  or does not accept the incoming one; nothing is changed.
+     * @throws IllegalStateException    If the binder changed while the trade was being applied.
+     */
+    public void tradeIn(Binder binder, Card outgoing, Card incoming) {
+        if (!binder.isTradeable()) {
+            throw new IllegalArgumentException(binder.getName() + " is not tradeable.");
         }
+        Card canonical = catalog.intern(incoming);
+        runTransaction(tx -> {
+            tx.remove(binder, outgoing, 1)
+              .add(binder, canonical, 1)
+              .onCommit(() -> fire(l -> l.cardTradedIn(binder.getName(), outgoing, canonical)));
+            return null;
+        });
+    }
+
+    /**
+     * Trades a card inside a binder with a card from the collection, both given by catalog id.
+     *
+     * @param binder         The binder involved in the trade.
+     * @param cardToTradeId  The catalog id of the card to remove from the binder.
+     * @param newCardId      The catalog id of the card to add to the binder from the collection.
+     */
+    public void tradeCard(Binder binder, int cardToTradeId, int newCardId) {
+        tradeCard(binder, catalog.get(cardToTradeId), catalog.get(newCardId));
     }
 
     /**
@@ -188,8 +512,386 @@ public class TradingCardInventorySystem {
      *
      * @param amount The amount to add.
      */
-    public void addMoney(double amount) {
-        money += amount;
+    public void addMoney(Money amount) {
+        runTransaction(tx -> tx.addMoney(amount, "Deposit").onCommit(() -> fire(l -> l.moneyAdded(amount))));
+    }
+
+    /**
+     * Adds copies of a card to the main collection. The card is interned first, so copies of equal
+     * cards stack on one canonical instance.
+     *
+     * @param card   The card to add.
+     * @param copies The number of copies, at least 1.
+     * @throws IllegalArgumentException If copies is below 1 or the collection is full.
+     */
+    public void addCards(Card card, int copies) {
+        Card canonical = catalog.intern(card);
+        runTransaction(tx -> tx.add(collection, canonical, copies)
+            .onCommit(() -> fire(l -> l.cardsAdded(canonical, copies))));
+    }
+
+    /**
+     * Adds a batch of cards to the main collection in one transaction, so a bulk load takes the
+     * collection lock once per batch rather than once per card. The cards should already be
+     * canonical; any that are not are interned first.
+     *
+     * @param batch The number of copies to add of each card; counts of 0 are skipped.
+     * @return The total number of copies added.
+     * @throws IllegalArgumentException If a count is negative or the batch does not fit in the
+     *                                  collection; nothing is added.
+     */
+    public long addCards(Map<Card, Integer> batch) {
+        Map<Card, Integer> canonical = new LinkedHashMap<>(batch.size() * 2);
+        long total = 0;
+        for (Map.Entry<Card, Integer> entry : batch.entrySet()) {
+            int copies = entry.getValue();
+            if (copies < 0) {
+                throw new IllegalArgumentException("Copies must not be negative: " + copies);
+            }
+            if (copies > 0) {
+                canonical.merge(catalog.intern(entry.getKey()), copies, Math::addExact);
+                total += copies;
+            }
+        }
+        if (canonical.isEmpty()) return 0;
+
+        runTransaction(tx -> {
+            canonical.forEach((card, copies) -> tx.add(collection, card, copies));
+            return tx.onCommit(() -> canonical.forEach((card, copies) -> fire(l -> l.cardsAdded(card, copies))));
+        });
+        return total;
+    }
+
+    /**
+     * Removes copies of a card from the main collection without selling them.
+     *
+     * @param card   The card to remove.
+     * @param copies The number of copies, at least 1.
+     * @throws IllegalArgumentException If copies is below 1 or the collection has fewer copies.
+     */
+    public void removeCards(Card card, int copies) {
+        runTransaction(tx -> tx.remove(collection, card, copies)
+            .onCommit(() -> fire(l -> l.cardsRemoved(card, copies))));
+    }
+
+    /**
+     * Sets a binder's selling price.
+     *
+     * @param binder The binder.
+     * @param price  The new price.
+     */
+    public void setSellingPrice(Binder binder, Money price) {
+        runTransaction(tx -> tx.setSellingPrice(binder, price)
+            .onCommit(() -> fire(l -> l.sellingPriceSet(binder.getName(), price))));
+    }
+
+    /**
+     * Changes the base value of a card everywhere it is held. A card's value never changes, so
+     * every copy in the collection and in each binder and deck is replaced by the same card at the
+     * new value, all in one transaction. Only the containers the location index lists as holding
+     * the card are read and locked; copies that reach another container while the revaluation runs
+     * keep the old value. Containers holding another version of the card are left alone.
+     *
+     * @param card      The card as it is now.
+     * @param baseValue The new base value.
+     * @return The canonical card at the new value.
+     */
+    public Card revalue(Card card, Money baseValue) {
+        Card current = catalog.intern(card);
+        Card revalued = catalog.intern(current.getName(), current.getRarity(), current.getVariant(), baseValue);
+        if (revalued == current) return current;
+
+        runTransaction(tx -> {
+            for (LocationIndex.Location location : locations.locate(current)) {
+                CardContainer container = location.container();
+                if (tx.read(container, current) > 0) {
+                    Card stored = container.getStoredCard(current);
+                    if (stored != null && stored.sameAs(current)) {
+                        tx.replace(container, stored, revalued);
+                    }
+                }
+            }
+            return tx.onCommit(() -> fire(l -> l.cardRevalued(current, revalued)));
+        });
+        return revalued;
+    }
+
+    /**
+     * Starts a transaction that applies a batch of mutations to this system all-or-nothing.
+     *
+     * @return A new, empty transaction.
+     */
+    public InventoryTransaction beginTransaction() {
+        return new InventoryTransaction(this);
+    }
+
+    /**
+     * Builds and commits a transaction, building it again from fresh reads whenever the commit
+     * fails because another thread changed a container it touched.
+     *
+     * @param body Stages the transaction's steps and returns the result to hand back.
+     * @param <T>  The result type.
+     * @return The result of the body for the attempt that committed.
+     * @throws IllegalStateException    If the transaction still conflicts after {@value #MAX_ATTEMPTS} attempts.
+     * @throws IllegalArgumentException If a step breaks a rule; nothing is changed.
+     */
+    public <T> T runTransaction(Function<InventoryTransaction, T> body) {
+        for (int attempt = 1; ; attempt++) {
+            InventoryTransaction tx = beginTransaction();
+            T result = body.apply(tx);
+            try {
+                tx.commit();
+                return result;
+            } catch (IllegalStateException conflict) {
+                if (attempt == MAX_ATTEMPTS) throw conflict;
+            }
+        }
+    }
+
+    /**
+     * Runs an action while no operation is in progress: every transaction that started committing
+     * has finished, including its listener callbacks, and new ones wait until the action returns.
+     * A checkpoint uses this to capture a state that matches its event log exactly.
+     * The action must not start operations of its own.
+     *
+     * @param action The action.
+     * @param <T>    The result type.
+     * @return The action's result.
+     */
+    public <T> T whileQuiescent(Supplier<T> action) {
+        gate.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the lock a transaction holds while it commits, shared with other commits.
+     *
+     * @return The shared side of the commit gate.
+     */
+    Lock commitGate() {
+        return gate.readLock();
+    }
+
+    /**
+     * Tells every listener about an operation that just took effect.
+     *
+     * @param event The callback to make on each listener.
+     */
+    private void fire(Consumer<InventoryListener> event) {
+        for (InventoryListener listener : listeners) {
+            event.accept(listener);
+        }
+    }
+
+    /**
+     * Returns the name a listener sees for a container.
+     *
+     * @param container The container.
+     * @return Its name, or null for the collection.
+     */
+    private String nameOf(CardContainer container) {
+        return container == collection ? null : container.getName();
+    }
+
+    /**
+     * Changes the balance by a number of cents.
+     *
+     * @param deltaCents The change in cents.
+     * @param memo       What the change is for.
+     * @throws IllegalArgumentException If the balance would go below zero.
+     */
+    void applyMoney(long deltaCents, String memo) {
+        ledger.apply(deltaCents, memo);
+    }
+
+    /**
+     * Checks whether a binder or deck is part of the system.
+     *
+     * @param container The container.
+     * @return True if registered.
+     */
+    boolean isRegistered(CardContainer container) {
+        return containers.contains(container);
+    }
+
+    /**
+     * Adds an existing binder or deck back to the system.
+     *
+     * @param container The container.
+     */
+    void register(CardContainer container) {
+        containers.register(container);
+        container.attach(counts);
+    }
+
+    /**
+     * Removes a binder or deck from the system without returning its cards.
+     *
+     * @param container The container.
+     */
+    void unregister(CardContainer container) {
+        containers.unregister(container);
+        container.detach();
+    }
+
+    /**
+     * Starts collecting the count changes of a transaction this thread is about to apply, instead of
+     * passing each one to the indexes while its container is locked.
+     */
+    void beginCountChanges() {
+        committing.set(new ArrayList<>());
+    }
+
+    /**
+     * Stops collecting count changes. Those of a committed transaction are queued for the indexes;
+     * those of a rolled back one cancel out and are dropped. Called while the transaction's
+     * containers are still locked, which fixes its place in the queue.
+     *
+     * @param committed True if the transaction took effect.
+     */
+    void endCountChanges(boolean committed) {
+        List<CountChange> changes = committing.get();
+        committing.remove();
+        if (committed && !changes.isEmpty()) {
+            pendingCounts.add(changes);
+        }
+    }
+
+    /**
+     * Applies every queued count change to the indexes, in queue order. Called once a commit has
+     * released its container locks. Both indexes are held for the whole drain, so a query sees each
+     * transaction wholly or not at all; a commit that finds another thread draining waits for it, and
+     * so returns only once its own changes are in the indexes.
+     */
+    void applyCountChanges() {
+        synchronized (values) {
+            synchronized (locations) {
+                Map<Card, Long> deltas = new IdentityHashMap<>();
+                for (List<CountChange> changes; (changes = pendingCounts.poll()) != null; ) {
+                    for (CountChange change : changes) {
+                        deltas.merge(change.card(), (long) change.newCount() - change.oldCount(), Long::sum);
+                        locations.update(change.card(), change.container(), change.newCount());
+                    }
+                    // Net per card, so a card moved between two containers leaves the value index alone.
+                    deltas.forEach(values::adjust);
+                    deltas.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes a change in a card's count in the collection or a registered container on to the
+     * indexes. Runs under the container's lock, so during a commit the change is only collected;
+     * anything else, such as a restore, is applied at once.
+     *
+     * @param container The container.
+     * @param card      The stored card, which is canonical.
+     * @param oldCount  The count before.
+     * @param newCount  The count after.
+     */
+    private void countChanged(CardContainer container, Card card, int oldCount, int newCount) {
+        Card canonical = card.getId() >= 0 ? card : catalog.intern(card);
+        CountChange change = new CountChange(container, canonical, oldCount, newCount);
+        List<CountChange> changes = committing.get();
+        if (changes != null) {
+            changes.add(change);
+        } else {
+            pendingCounts.add(List.of(change));
+            applyCountChanges();
+        }
+    }
+
+    /**
+     * Captures the whole inventory as an immutable snapshot. Each container already keeps its
+     * contents as a persistent map, so a snapshot costs one small entry per container.
+     * The containers and the balance are read while no operation is in progress (see
+     * {@link #whileQuiescent}), so a move or sale is either wholly in the snapshot or not at all.
+     * Must not be called from a listener or commit hook, which run while a commit is in progress.
+     *
+     * @return The snapshot of the current state.
+     */
+    public InventorySnapshot snapshotState() {
+        return whileQuiescent(this::captureState);
+    }
+
+    /**
+     * Captures the whole inventory; the caller holds the commit gate exclusively.
+     *
+     * @return The snapshot of the current state.
+     */
+    private InventorySnapshot captureState() {
+        List<InventorySnapshot.ContainerState> states = new ArrayList<>();
+        for (CardContainer container : containers.getAll()) {
+            states.add(InventorySnapshot.ContainerState.of(container));
+        }
+        return new InventorySnapshot(collection.persistentCards(), states, ledger.getBalance().getCents());
+    }
+
+    /**
+     * Puts the inventory back into a state captured by {@link #snapshotState()}.
+     * Binders and decks that still exist with the same name and type are reused and only the
+     * cards that differ are changed; others are recreated or dropped. Restoring waits for operations
+     * in progress to finish and holds off new ones until it is done.
+     *
+     * @param state The snapshot to restore.
+     */
+    public void restore(InventorySnapshot state) {
+        whileQuiescent(() -> {
+            restoreQuiescent(state);
+            fire(l -> l.stateRestored(state));
+            return null;
+        });
+    }
+
+    /**
+     * Steps the inventory back or forward to a state captured by {@link #snapshotState()}, as undo
+     * and redo do. The inventory changes exactly as with {@link #restore}, but listeners are also
+     * told the state that was replaced, so they can record only what differs between the two.
+     *
+     * @param state The snapshot to return to.
+     */
+    public void revert(InventorySnapshot state) {
+        whileQuiescent(() -> {
+            InventorySnapshot before = captureState();
+            restoreQuiescent(state);
+            fire(l -> l.stateReverted(before, state));
+            return null;
+        });
+    }
+
+    /**
+     * Restores a snapshot; the caller holds the commit gate exclusively.
+     *
+     * @param state The snapshot to restore.
+     */
+    private void restoreQuiescent(InventorySnapshot state) {
+        collection.restoreContents(state.getCollection());
+
+        ContainerRegistry restored = new ContainerRegistry();
+        for (InventorySnapshot.ContainerState saved : state.getContainers()) {
+            CardContainer container = containers.find(saved.name());
+            if (container == null || !saved.describes(container)) {
+                container = saved.create();
+            }
+            container.restoreContents(saved.cards());
+            if (container instanceof Binder binder) {
+                binder.setSellingPrice(saved.sellingPrice());
+            }
+            restored.register(container);
+        }
+        for (CardContainer container : containers.getAll()) {
+            if (!restored.contains(container)) container.detach();
+        }
+        for (CardContainer container : restored.getAll()) {
+            if (!containers.contains(container)) container.attach(counts);
+        }
+        containers = restored;
+        ledger.reset(state.getMoney());
     }
 
     /**
@@ -199,7 +901,7 @@ public class TradingCardInventorySystem {
      */
     public int getTotalCardCount() {
         int total = collection.getTotalCards();
-        for (CardContainer container : containers) {
+        for (CardContainer container : containers.getAll()) {
             total += container.getTotalCards();
         }
         return total;
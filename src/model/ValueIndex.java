@@ -0,0 +1,501 @@
+/**
+ * ValueIndex.java
+ *
+ * Every card the inventory owns, across the collection and all binders and decks, ordered by its
+ * total value, for questions such as "my fifty most valuable cards" or "everything worth between
+ * $20 and $100" without scanning and sorting the whole inventory.
+ *
+ * The index is a treap: a binary search tree on (total value, catalog id) whose shape is kept
+ * balanced by random node priorities. Each node also carries the size and copy count of its subtree,
+ * so counting the cards in a value range or finding the card at a given rank walks a single path.
+ * Each canonical card has one node holding its copies summed over every container, so a card that
+ * sits in the collection and two decks is listed once.
+ *
+ * The system keeps the index current: the count changes a transaction makes are collected while it
+ * holds its containers and applied together, netted per card, right after it releases them, so
+ * index updates never hold up other containers and a query sees each transaction wholly or not at
+ * all. A card leaves the index once its last copy is gone. A card's value never changes, so a new
+ * price arrives as a different card replacing the old one.
+ *
+ * Lookups and updates take O(log n) expected time for n distinct cards owned, plus O(k) to list k
+ * results.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Order-statistics index of owned cards by total value.
+ */
+public final class ValueIndex {
+
+    /**
+     * One card in the index.
+     *
+     * @param card   The canonical card.
+     * @param copies The copies owned across all containers.
+     */
+    public record Entry(Card card, long copies) {
+    }
+
+    /**
+     * A tree node for one card.
+     */
+    private static final class Node {
+
+        /** The canonical card. */
+        final Card card;
+
+        /** The card's total value in cents, the first part of the key. */
+        final long value;
+
+        /** The card's catalog id, the second part of the key. */
+        final int id;
+
+        /** Heap priority; parents never have a lower one than their children. */
+        final int priority;
+
+        /** Copies of this card owned. */
+        long copies;
+
+        /** Nodes in this subtree. */
+        int size;
+
+        /** Copies of all cards in this subtree. */
+        long copySum;
+
+        /** Subtrees of lower and higher keys. */
+        Node left, right;
+
+        /**
+         * Constructs a leaf.
+         *
+         * @param card     The canonical card.
+         * @param copies   The copies owned.
+         * @param priority The heap priority.
+         */
+        Node(Card card, long copies, int priority) {
+            this.card = card;
+            this.value = card.getTotalValue().getCents();
+            this.id = card.getId();
+            this.priority = priority;
+            this.copies = copies;
+            this.size = 1;
+            this.copySum = copies;
+        }
+    }
+
+    /** The root, or null while nothing is owned. */
+    private Node root;
+
+    /** Source of node priorities. */
+    private final SplittableRandom random = new SplittableRandom();
+
+    /**
+     * Changes the copies owned of a card, adding it to the index when it gains its first copy and
+     * dropping it when it loses its last.
+     *
+     * @param card  The canonical card, which must have a catalog id.
+     * @param delta The change in copies.
+     * @throws IllegalArgumentException If the card has no id.
+     * @throws IllegalStateException    If the copies would go below zero.
+     */
+    synchronized void adjust(Card card, long delta) {
+        if (card.getId() < 0) {
+            throw new IllegalArgumentException(card.getName() + " is not in the catalog.");
+        }
+        if (delta == 0) return;
+        long value = card.getTotalValue().getCents();
+        int id = card.getId();
+
+        Node node = find(value, id);
+        long copies = (node == null ? 0 : node.copies) + delta;
+        if (copies < 0) {
+            throw new IllegalStateException("More copies of " + card.getName() + " removed than owned.");
+        }
+        if (node == null) {
+            insert(new Node(card, copies, random.nextInt()));
+        } else if (copies == 0) {
+            delete(node);
+        } else {
+            // The key stays put, so only the copy sums along its path change.
+            for (Node at = root; at != node; at = compare(value, id, at) < 0 ? at.left : at.right) {
+                at.copySum += delta;
+            }
+            node.copies = copies;
+            node.copySum += delta;
+        }
+    }
+
+    /**
+     * Returns the number of distinct cards owned.
+     *
+     * @return The number of cards in the index.
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the number of copies owned of all cards.
+     *
+     * @return The total copies.
+     */
+    public synchronized long totalCopies() {
+        return copySum(root);
+    }
+
+    /**
+     * Returns the copies owned of a card across all containers.
+     *
+     * @param card The canonical card.
+     * @return The copies, or 0 if none are owned.
+     */
+    public synchronized long getCopies(Card card) {
+        Node node = find(card.getTotalValue().getCents(), card.getId());
+        return node == null ? 0 : node.copies;
+    }
+
+    /**
+     * Returns the most valuable cards, most valuable first. Cards of equal value are listed in
+     * descending catalog id order.
+     *
+     * @param k The most cards to return.
+     * @return Up to k cards.
+     * @throws IllegalArgumentException If k is negative.
+     */
+    public synchronized List<Entry> top(int k) {
+        requireLimit(k);
+        List<Entry> result = new ArrayList<>(Math.min(k, size(root)));
+        Deque<Node> path = new ArrayDeque<>();
+        Node at = root;
+        while (result.size() < k && (at != null || !path.isEmpty())) {
+            if (at != null) {
+                path.push(at);
+                at = at.right;
+            } else {
+                Node node = path.pop();
+                result.add(new Entry(node.card, node.copies));
+                at = node.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cards whose total value lies in a range, least valuable first.
+     *
+     * @param min   The lowest value, inclusive.
+     * @param max   The highest value, inclusive.
+     * @param limit The most cards to return.
+     * @return Up to limit cards.
+     * @throws IllegalArgumentException If limit is negative.
+     */
+    public synchronized List<Entry> range(Money min, Money max, int limit) {
+        requireLimit(limit);
+        List<Entry> result = new ArrayList<>();
+        long low = min.getCents();
+        long high = max.getCents();
+        Deque<Node> path = new ArrayDeque<>();
+        Node at = root;
+        while (at != null) {
+            if (at.value >= low) {
+                path.push(at);
+                at = at.left;
+            } else {
+                at = at.right;
+            }
+        }
+        while (result.size() < limit && !path.isEmpty()) {
+            Node node = path.pop();
+            if (node.value > high) break;
+            result.add(new Entry(node.card, node.copies));
+            for (at = node.right; at != null; at = at.left) {
+                path.push(at);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the distinct cards whose total value lies in a range.
+     *
+     * @param min The lowest value, inclusive.
+     * @param max The highest value, inclusive.
+     * @return The number of cards.
+     */
+    public synchronized int countInRange(Money min, Money max) {
+        if (min.compareTo(max) > 0) return 0;
+        return countBelow(max.getCents() + 1) - countBelow(min.getCents());
+    }
+
+    /**
+     * Counts the copies of all cards whose total value lies in a range.
+     *
+     * @param min The lowest value, inclusive.
+     * @param max The highest value, inclusive.
+     * @return The number of copies.
+     */
+    public synchronized long copiesInRange(Money min, Money max) {
+        if (min.compareTo(max) > 0) return 0;
+        return copiesBelow(max.getCents() + 1) - copiesBelow(min.getCents());
+    }
+
+    /**
+     * Counts the distinct cards worth more than a value. This is the rank of a card of that value
+     * in the {@link #top(int)} order, counting from 0.
+     *
+     * @param value The value.
+     * @return The number of cards worth more.
+     */
+    public synchronized int countAbove(Money value) {
+        return size(root) - countBelow(value.getCents() + 1);
+    }
+
+    /**
+     * Returns the card at a position in the {@link #top(int)} order.
+     *
+     * @param rank The position, 0 for the most valuable card.
+     * @return The card at that position.
+     * @throws IndexOutOfBoundsException If rank is not below {@link #size()}.
+     */
+    public synchronized Entry get(int rank) {
+        if (rank < 0 || rank >= size(root)) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + size(root) + " cards.");
+        }
+        Node at = root;
+        while (true) {
+            int above = size(at.right);
+            if (rank < above) {
+                at = at.right;
+            } else if (rank == above) {
+                return new Entry(at.card, at.copies);
+            } else {
+                rank -= above + 1;
+                at = at.left;
+            }
+        }
+    }
+
+    /**
+     * Finds the node with a key.
+     *
+     * @param value The value in cents.
+     * @param id    The catalog id.
+     * @return The node, or null if there is none.
+     */
+    private Node find(long value, int id) {
+        Node at = root;
+        while (at != null) {
+            int order = compare(value, id, at);
+            if (order == 0) return at;
+            at = order < 0 ? at.left : at.right;
+        }
+        return null;
+    }
+
+    /**
+     * Inserts a node whose key is not in the tree. The path is walked down to where the node's
+     * priority puts it, and only the subtree found there is split, which is O(1) nodes on average.
+     *
+     * @param node The new leaf.
+     */
+    private void insert(Node node) {
+        Node parent = null;
+        boolean left = false;
+        Node at = root;
+        while (at != null && at.priority >= node.priority) {
+            at.size++;
+            at.copySum += node.copies;
+            parent = at;
+            left = compare(node.value, node.id, at) < 0;
+            at = left ? at.left : at.right;
+        }
+        Node[] parts = split(at, node.value, node.id);
+        node.left = parts[0];
+        node.right = parts[1];
+        update(node);
+        link(parent, left, node);
+    }
+
+    /**
+     * Deletes a node in the tree, joining its two subtrees in its place.
+     *
+     * @param node The node.
+     */
+    private void delete(Node node) {
+        Node parent = null;
+        boolean left = false;
+        Node at = root;
+        while (at != node) {
+            at.size--;
+            at.copySum -= node.copies;
+            parent = at;
+            left = compare(node.value, node.id, at) < 0;
+            at = left ? at.left : at.right;
+        }
+        link(parent, left, merge(node.left, node.right));
+    }
+
+    /**
+     * Hangs a subtree under a parent, or makes it the root.
+     *
+     * @param parent  The parent, or null for the root.
+     * @param left    Whether it goes on the parent's left.
+     * @param subtree The subtree.
+     */
+    private void link(Node parent, boolean left, Node subtree) {
+        if (parent == null) {
+            root = subtree;
+        } else if (left) {
+            parent.left = subtree;
+        } else {
+            parent.right = subtree;
+        }
+    }
+
+    /**
+     * Counts the nodes worth less than a value.
+     *
+     * @param value The value in cents.
+     * @return The number of nodes.
+     */
+    private int countBelow(long value) {
+        int count = 0;
+        for (Node at = root; at != null; ) {
+            if (at.value < value) {
+                count += size(at.left) + 1;
+                at = at.right;
+            } else {
+                at = at.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sums the copies of the nodes worth less than a value.
+     *
+     * @param value The value in cents.
+     * @return The number of copies.
+     */
+    private long copiesBelow(long value) {
+        long copies = 0;
+        for (Node at = root; at != null; ) {
+            if (at.value < value) {
+                copies += copySum(at.left) + at.copies;
+                at = at.right;
+            } else {
+                at = at.left;
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Splits a tree into the nodes with keys below (value, id) and the rest.
+     *
+     * @param node  The tree.
+     * @param value The value in cents.
+     * @param id    The catalog id.
+     * @return The lower and upper trees.
+     */
+    private static Node[] split(Node node, long value, int id) {
+        if (node == null) return new Node[2];
+        if (node.value < value || (node.value == value && node.id < id)) {
+            Node[] parts = split(node.right, value, id);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        Node[] parts = split(node.left, value, id);
+        node.left = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+
+    /**
+     * Joins two trees where every key of the first is below every key of the second.
+     *
+     * @param lower The lower tree.
+     * @param upper The upper tree.
+     * @return The joined tree.
+     */
+    private static Node merge(Node lower, Node upper) {
+        if (lower == null) return upper;
+        if (upper == null) return lower;
+        if (lower.priority >= upper.priority) {
+            lower.right = merge(lower.right, upper);
+            update(lower);
+            return lower;
+        }
+        upper.left = merge(lower, upper.left);
+        update(upper);
+        return upper;
+    }
+
+    /**
+     * Recomputes a node's subtree size and copy sum from its children.
+     *
+     * @param node The node.
+     */
+    private static void update(Node node) {
+        node.size = size(node.left) + 1 + size(node.right);
+        node.copySum = copySum(node.left) + node.copies + copySum(node.right);
+    }
+
+    /**
+     * Orders a key against a node's key.
+     *
+     * @param value The value in cents.
+     * @param id    The catalog id.
+     * @param node  The node.
+     * @return Negative, zero or positive as the key is below, equal to or above the node's.
+     */
+    private static int compare(long value, int id, Node node) {
+        return value != node.value ? Long.compare(value, node.value) : Integer.compare(id, node.id);
+    }
+
+    /**
+     * Returns the size of a subtree.
+     *
+     * @param node The subtree, or null.
+     * @return Its number of nodes.
+     */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Returns the copies in a subtree.
+     *
+     * @param node The subtree, or null.
+     * @return Its copy sum.
+     */
+    private static long copySum(Node node) {
+        return node == null ? 0 : node.copySum;
+    }
+
+    /**
+     * Checks a result limit.
+     *
+     * @param limit The limit.
+     * @throws IllegalArgumentException If it is negative.
+     */
+    private static void requireLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+    }
+}
@@ -0,0 +1,816 @@
+/**
+ * CardImporter.java
+ *
+ * Bulk loads cards into the main collection from a CSV or JSON-lines price list. Files of millions of
+ * rows are streamed rather than read whole: the file is cut into large chunks on line boundaries,
+ * each chunk is parsed and validated on a pool of threads, and the parsed chunks are applied to the
+ * collection in file order, one transaction per chunk. Only a few chunks are ever in memory at once,
+ * so memory use does not grow with the size of the file.
+ *
+ * A CSV row holds name, rarity, variant, value and an optional copy count, in that order unless the
+ * first line is a header naming the columns. Fields may be quoted, with {@code ""} for a quote inside
+ * a quoted field. A JSON-lines row is a flat object with the same keys. Every row follows the rules
+ * of the add-card dialog: the name must not be empty, the value must not be negative, there must be
+ * at least one copy, and cards that are not rare or legendary are always stored as
+ * {@link Variant#NORMAL}. Rows are resolved to canonical cards through the catalog, so a card that
+ * is already known, or appears many times in the file, is stored once with its copies added up.
+ * Rows that break a rule are counted and skipped; the rest of the file is still imported.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import enums.*;
+import model.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming, parallel importer of card price lists.
+ */
+public final class CardImporter {
+
+    /**
+     * The supported file formats.
+     */
+    public enum Format {
+        /** Comma-separated values, one card per line. */
+        CSV,
+        /** One flat JSON object per line. */
+        JSON_LINES;
+
+        /**
+         * Picks the format from a file name: {@code .jsonl}, {@code .ndjson} and {@code .json} files
+         * are JSON lines, anything else is CSV.
+         *
+         * @param file The file.
+         * @return The format.
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+                return JSON_LINES;
+            }
+            return CSV;
+        }
+    }
+
+    /**
+     * A row that was not imported.
+     *
+     * @param line   The line number in the file, counting from 1.
+     * @param reason Why the row was refused.
+     */
+    public record Rejection(long line, String reason) {
+    }
+
+    /**
+     * The outcome of an import.
+     *
+     * @param rows       The number of data rows read, not counting blank lines or the header.
+     * @param rejected   The number of rows refused.
+     * @param copies     The number of card copies added to the collection.
+     * @param rejections The first {@value #MAX_REJECTIONS} refused rows, in file order.
+     * @param bytes      The size of the file.
+     * @param nanos      The time the import took.
+     */
+    public record Report(long rows, long rejected, long copies, List<Rejection> rejections, long bytes, long nanos) {
+
+        /**
+         * Returns the import speed.
+         *
+         * @return Rows read per second.
+         */
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    /** Default chunk size; each chunk is parsed by one thread and applied as one transaction. */
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    /** Most refused rows kept in a report. */
+    public static final int MAX_REJECTIONS = 100;
+
+    /** Field names, in the default CSV column order. */
+    private static final String[] FIELDS = {"name", "rarity", "variant", "value", "copies"};
+
+    /** Field positions. */
+    private static final int NAME = 0, RARITY = 1, VARIANT = 2, VALUE = 3, COPIES = 4;
+
+    /** The format being read. */
+    private final Format format;
+
+    /** For CSV, the column holding each field, or -1 if the file has no such column. */
+    private final int[] columns;
+
+    /** The catalog rows are resolved against. */
+    private final CardCatalog catalog;
+
+    /**
+     * Constructs an importer for one file.
+     *
+     * @param format  The format being read.
+     * @param columns The CSV column of each field.
+     * @param catalog The catalog rows are resolved against.
+     */
+    private CardImporter(Format format, int[] columns, CardCatalog catalog) {
+        this.format = format;
+        this.columns = columns;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Imports a file into the collection, picking the format from its name and parsing on every
+     * available processor.
+     *
+     * @param file The file.
+     * @param tcis The system to import into.
+     * @return What was imported.
+     * @throws IOException If the file cannot be read or has an unusable CSV header.
+     */
+    public static Report importFile(Path file, TradingCardInventorySystem tcis) throws IOException {
+        return importFile(file, Format.of(file), tcis, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Imports a file into the collection.
+     *
+     * @param file       The file.
+     * @param format     The file format.
+     * @param tcis       The system to import into.
+     * @param threads    The number of parsing threads, at least 1.
+     * @param chunkBytes The chunk size in bytes, at least 1; lines longer than this still fit.
+     * @return What was imported.
+     * @throws IOException If the file cannot be read or has an unusable CSV header.
+     * @throws IllegalArgumentException If threads or chunkBytes is below 1.
+     */
+    public static Report importFile(Path file, Format format, TradingCardInventorySystem tcis,
+                                    int threads, int chunkBytes) throws IOException {
+        if (threads < 1 || chunkBytes < 1) {
+            throw new IllegalArgumentException("Threads and chunk size must be at least 1.");
+        }
+        long start = System.nanoTime();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "card-importer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChunkReader reader = new ChunkReader(channel, chunkBytes);
+            Tally tally = new Tally();
+            byte[] first = reader.next();
+            if (first == null) {
+                return tally.report(channel.size(), System.nanoTime() - start);
+            }
+
+            int from = 0;
+            int[] columns = {NAME, RARITY, VARIANT, VALUE, COPIES};
+            if (format == Format.CSV) {
+                int end = lineEnd(first, 0, first.length);
+                int[] header = header(first, 0, end > 0 && first[end - 1] == '\r' ? end - 1 : end);
+                if (header != null) {
+                    columns = header;
+                    from = Math.min(end + 1, first.length);
+                    tally.lines = 1;
+                }
+            }
+            CardImporter importer = new CardImporter(format, columns, tcis.getCatalog());
+
+            // Keep a couple of chunks per thread queued; apply the oldest once the queue is full.
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            int limit = threads * 2;
+            byte[] data = first;
+            int offset = from;
+            while (data != null) {
+                byte[] chunk = data;
+                int begin = offset;
+                inFlight.add(parsers.submit(() -> importer.parse(chunk, begin, chunk.length)));
+                if (inFlight.size() >= limit) {
+                    tally.apply(await(inFlight.poll()), tcis);
+                }
+                data = reader.next();
+                offset = 0;
+            }
+            while (!inFlight.isEmpty()) {
+                tally.apply(await(inFlight.poll()), tcis);
+            }
+            return tally.report(channel.size(), System.nanoTime() - start);
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a chunk to be parsed.
+     *
+     * @param future The parse task.
+     * @return The parsed chunk.
+     * @throws IOException If the wait is interrupted.
+     */
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException failure) throw failure;
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Reads a CSV header line, if the line is one: every field must be a known column name.
+     *
+     * @param data The bytes.
+     * @param from Where the line starts.
+     * @param to   Where the line ends, before the newline.
+     * @return The column of each field, or null if the line is an ordinary row.
+     * @throws IOException If the line is a header but lacks a name, rarity or value column.
+     */
+    private static int[] header(byte[] data, int from, int to) throws IOException {
+        List<String> names;
+        try {
+            names = splitCsv(decode(data, from, to));
+        } catch (IllegalArgumentException notHeader) {
+            return null;
+        }
+        int[] columns = new int[FIELDS.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < names.size(); i++) {
+            int field = Arrays.asList(FIELDS).indexOf(names.get(i).toLowerCase(Locale.ROOT));
+            if (field < 0) return null;
+            columns[field] = i;
+        }
+        if (columns[NAME] < 0 || columns[RARITY] < 0 || columns[VALUE] < 0) {
+            throw new IOException("CSV header must have name, rarity and value columns.");
+        }
+        return columns;
+    }
+
+    /**
+     * Parses and validates every line of a chunk, and resolves the valid rows to canonical cards
+     * with their copies added up.
+     *
+     * @param data The bytes.
+     * @param from Where the first line starts.
+     * @param to   Where the chunk ends.
+     * @return The parsed chunk.
+     */
+    private Chunk parse(byte[] data, int from, int to) {
+        Chunk chunk = new Chunk();
+        Map<CardKey, int[]> counts = new HashMap<>();
+        int position = from;
+        while (position < to) {
+            int end = lineEnd(data, position, to);
+            chunk.lines++;
+            int last = end > position && data[end - 1] == '\r' ? end - 1 : end;
+            if (!isBlank(data, position, last)) {
+                chunk.rows++;
+                try {
+                    String line = decode(data, position, last);
+                    String[] fields = format == Format.CSV ? csvFields(line) : JsonLine.fields(line);
+                    CardKey key = validate(fields);
+                    int copies = fields[COPIES] == null || fields[COPIES].isBlank()
+                        ? 1 : Integer.parseInt(fields[COPIES].trim());
+                    if (copies < 1) {
+                        throw new IllegalArgumentException("Copies must be at least 1.");
+                    }
+                    int[] count = counts.computeIfAbsent(key, k -> new int[1]);
+                    count[0] = Math.addExact(count[0], copies);
+                    chunk.copies += copies;
+                } catch (IllegalArgumentException | ArithmeticException ex) {
+                    chunk.reject(chunk.lines, ex.getMessage());
+                }
+            }
+            position = end + 1;
+        }
+
+        for (Map.Entry<CardKey, int[]> entry : counts.entrySet()) {
+            CardKey key = entry.getKey();
+            Card card = catalog.intern(key.name(), key.rarity(), key.variant(), Money.ofCents(key.cents()));
+            chunk.batch.merge(card, entry.getValue()[0], Math::addExact);
+        }
+        return chunk;
+    }
+
+    /**
+     * Picks a CSV row's fields out by column.
+     *
+     * @param line The line.
+     * @return The fields, null where the file has no such column.
+     * @throws IllegalArgumentException If the line is not valid CSV or is missing a column.
+     */
+    private String[] csvFields(String line) {
+        List<String> values = splitCsv(line);
+        String[] fields = new String[FIELDS.length];
+        for (int field = 0; field < FIELDS.length; field++) {
+            int column = columns[field];
+            if (column >= values.size()) {
+                if (field == COPIES || field == VARIANT) continue;
+                throw new IllegalArgumentException("Expected at least " + (column + 1) + " columns.");
+            }
+            if (column >= 0) fields[field] = values.get(column);
+        }
+        return fields;
+    }
+
+    /**
+     * Checks a row against the add-card rules and turns it into a catalog key.
+     *
+     * @param fields The row's fields.
+     * @return The key of the card the row describes.
+     * @throws IllegalArgumentException If the row breaks a rule.
+     * @throws ArithmeticException      If the value does not fit in a long of cents.
+     */
+    private static CardKey validate(String[] fields) {
+        String name = fields[NAME] == null ? "" : fields[NAME].trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Card name cannot be empty.");
+        }
+        if (fields[RARITY] == null) {
+            throw new IllegalArgumentException("Missing rarity.");
+        }
+        Rarity rarity = constant(Rarity.class, fields[RARITY], "rarity");
+
+        // Same rule as the add-card dialog: only rare and legendary cards keep their variant.
+        Variant variant = Variant.NORMAL;
+        if (rarity.hasVariants() && fields[VARIANT] != null && !fields[VARIANT].isBlank()) {
+            variant = constant(Variant.class, fields[VARIANT], "variant");
+        }
+
+        if (fields[VALUE] == null) {
+            throw new IllegalArgumentException("Missing value.");
+        }
+        Money value = Money.parse(fields[VALUE]);
+        if (value.isNegative()) {
+            throw new IllegalArgumentException("Value must not be negative.");
+        }
+        return new CardKey(name, rarity, variant, value.getCents());
+    }
+
+    /**
+     * Looks up an enum constant by name, ignoring case and treating spaces and dashes as underscores.
+     *
+     * @param type The enum type.
+     * @param text The text.
+     * @param what What the value is, for the error message.
+     * @param <E>  The enum type.
+     * @return The constant.
+     * @throws IllegalArgumentException If no constant has that name.
+     */
+    private static <E extends Enum<E>> E constant(Class<E> type, String text, String what) {
+        String name = text.trim().toUpperCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown " + what + " \"" + text.trim() + "\".");
+        }
+    }
+
+    /**
+     * Splits a CSV line into its fields. Unquoted fields are trimmed; quoted fields are kept as is,
+     * with {@code ""} read as one quote.
+     *
+     * @param line The line.
+     * @return The fields.
+     * @throws IllegalArgumentException If a quoted field is not closed or is followed by other text.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(FIELDS.length);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            while (i < length && line.charAt(i) == ' ') i++;
+            if (i < length && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Unclosed quote.");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                while (i < length && line.charAt(i) == ' ') i++;
+                if (i < length && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Text after a closing quote.");
+                }
+                fields.add(field.toString());
+            } else {
+                int comma = line.indexOf(',', i);
+                int end = comma < 0 ? length : comma;
+                fields.add(line.substring(i, end).trim());
+                i = end;
+            }
+            field.setLength(0);
+            if (i >= length) return fields;
+            i++; // Skip the comma.
+        }
+    }
+
+    /**
+     * Returns the position of the next newline, or the end of the range if there is none.
+     *
+     * @param data The bytes.
+     * @param from Where to start looking.
+     * @param to   The end of the range.
+     * @return The newline's position.
+     */
+    private static int lineEnd(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == '\n') return i;
+        }
+        return to;
+    }
+
+    /**
+     * Tells whether a range holds only whitespace.
+     *
+     * @param data The bytes.
+     * @param from Where the range starts.
+     * @param to   Where the range ends.
+     * @return True if every byte is a space or tab.
+     */
+    private static boolean isBlank(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] != ' ' && data[i] != '\t') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a line, dropping a byte order mark at the start of the file.
+     *
+     * @param data The bytes.
+     * @param from Where the line starts.
+     * @param to   Where the line ends.
+     * @return The line.
+     */
+    private static String decode(byte[] data, int from, int to) {
+        String line = new String(data, from, to - from, StandardCharsets.UTF_8);
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    /**
+     * The attributes that make a card distinct in the catalog.
+     *
+     * @param name    The name.
+     * @param rarity  The rarity.
+     * @param variant The variant.
+     * @param cents   The base value in cents.
+     */
+    private record CardKey(String name, Rarity rarity, Variant variant, long cents) {
+    }
+
+    /**
+     * One parsed chunk, ready to apply.
+     */
+    private static final class Chunk {
+
+        /** Copies of each canonical card. */
+        final Map<Card, Integer> batch = new LinkedHashMap<>();
+
+        /** Lines in the chunk, including blank ones. */
+        long lines;
+
+        /** Data rows in the chunk. */
+        long rows;
+
+        /** Refused rows in the chunk. */
+        long rejected;
+
+        /** Copies in the valid rows. */
+        long copies;
+
+        /** The first refused rows, numbered by line within the chunk. */
+        final List<Rejection> rejections = new ArrayList<>();
+
+        /**
+         * Counts a refused row.
+         *
+         * @param line   The line within the chunk, counting from 1.
+         * @param reason Why it was refused.
+         */
+        void reject(long line, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_REJECTIONS) {
+                rejections.add(new Rejection(line, reason));
+            }
+        }
+    }
+
+    /**
+     * Running totals, kept by the thread that applies the chunks.
+     */
+    private static final class Tally {
+
+        /** Lines before the next chunk. */
+        long lines;
+
+        /** Data rows read. */
+        long rows;
+
+        /** Rows refused. */
+        long rejected;
+
+        /** Copies added. */
+        long copies;
+
+        /** The first refused rows, numbered by line within the file. */
+        final List<Rejection> rejections = new ArrayList<>();
+
+        /**
+         * Applies a chunk to the collection as one transaction and adds it to the totals. If the
+         * collection refuses the chunk, all of its rows count as refused.
+         *
+         * @param chunk The chunk.
+         * @param tcis  The system to import into.
+         */
+        void apply(Chunk chunk, TradingCardInventorySystem tcis) {
+            rows += chunk.rows;
+            rejected += chunk.rejected;
+            for (Rejection rejection : chunk.rejections) {
+                note(lines + rejection.line(), rejection.reason());
+            }
+            try {
+                tcis.addCards(chunk.batch);
+                copies += chunk.copies;
+            } catch (IllegalArgumentException | IllegalStateException refused) {
+                rejected += chunk.rows - chunk.rejected;
+                note(lines + 1, "Lines " + (lines + 1) + "-" + (lines + chunk.lines)
+                     + " not imported: " + refused.getMessage());
+            }
+            lines += chunk.lines;
+        }
+
+        /**
+         * Keeps a refused row for the report, up to the limit.
+         *
+         * @param line   The line number.
+         * @param reason Why it was refused.
+         */
+        private void note(long line, String reason) {
+            if (rejections.size() < MAX_REJECTIONS) {
+                rejections.add(new Rejection(line, reason));
+            }
+        }
+
+        /**
+         * Builds the report.
+         *
+         * @param bytes The file size.
+         * @param nanos The time taken.
+         * @return The report.
+         */
+        Report report(long bytes, long nanos) {
+            return new Report(rows, rejected, copies, Collections.unmodifiableList(rejections), bytes, nanos);
+        }
+    }
+
+    /**
+     * Reads a file in chunks that end on a line boundary. A line longer than the chunk size makes
+     * its chunk grow to fit it.
+     */
+    private static final class ChunkReader {
+
+        /** The file. */
+        private final FileChannel channel;
+
+        /** The target chunk size. */
+        private final int chunkBytes;
+
+        /** The start of a line cut off at the end of the previous chunk. */
+        private byte[] carry = new byte[0];
+
+        /** True once the end of the file has been read. */
+        private boolean done;
+
+        /**
+         * Constructs a reader.
+         *
+         * @param channel    The file.
+         * @param chunkBytes The target chunk size.
+         */
+        ChunkReader(FileChannel channel, int chunkBytes) {
+            this.channel = channel;
+            this.chunkBytes = chunkBytes;
+        }
+
+        /**
+         * Reads the next chunk.
+         *
+         * @return The chunk, ending just after a newline or at the end of the file, or null if
+         *         the whole file has been read.
+         * @throws IOException If the file cannot be read.
+         */
+        byte[] next() throws IOException {
+            if (done && carry.length == 0) return null;
+
+            byte[] data = Arrays.copyOf(carry, Math.max(chunkBytes, carry.length * 2));
+            int filled = carry.length;
+            int searched = 0;
+            while (true) {
+                while (!done && filled < data.length) {
+                    int read = channel.read(ByteBuffer.wrap(data, filled, data.length - filled));
+                    if (read < 0) done = true;
+                    else filled += read;
+                }
+                for (int i = filled - 1; i >= searched; i--) {
+                    if (data[i] == '\n') {
+                        carry = Arrays.copyOfRange(data, i + 1, filled);
+                        return Arrays.copyOf(data, i + 1);
+                    }
+                }
+                if (done) {
+                    carry = new byte[0];
+                    return filled == 0 ? null : Arrays.copyOf(data, filled);
+                }
+                searched = filled;
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+        }
+    }
+
+    /**
+     * A parser for one line of JSON holding a flat object.
+     */
+    private static final class JsonLine {
+
+        /** The line. */
+        private final String text;
+
+        /** The next character to read. */
+        private int position;
+
+        /**
+         * Constructs a parser.
+         *
+         * @param text The line.
+         */
+        private JsonLine(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parses a line and picks out the card fields. Other keys are ignored.
+         *
+         * @param line The line.
+         * @return The fields, null where the object has no such key or its value is null.
+         * @throws IllegalArgumentException If the line is not a flat JSON object.
+         */
+        static String[] fields(String line) {
+            JsonLine parser = new JsonLine(line);
+            String[] fields = new String[FIELDS.length];
+            parser.expect('{');
+            if (!parser.skip('}')) {
+                do {
+                    String key = parser.string();
+                    parser.expect(':');
+                    String value = parser.value();
+                    int field = Arrays.asList(FIELDS).indexOf(key.toLowerCase(Locale.ROOT));
+                    if (field >= 0) fields[field] = value;
+                } while (parser.skip(','));
+                parser.expect('}');
+            }
+            parser.whitespace();
+            if (parser.position < line.length()) {
+                throw new IllegalArgumentException("Text after the JSON object.");
+            }
+            return fields;
+        }
+
+        /**
+         * Reads a value: a string, a number, true, false or null.
+         *
+         * @return The value as text, or null for a JSON null.
+         */
+        private String value() {
+            whitespace();
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("Missing JSON value.");
+            }
+            char c = text.charAt(position);
+            if (c == '"') return string();
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("Nested JSON values are not supported.");
+            }
+            int start = position;
+            while (position < text.length() && ",}] \t".indexOf(text.charAt(position)) < 0) position++;
+            String literal = text.substring(start, position);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Missing JSON value.");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        /**
+         * Reads a quoted string.
+         *
+         * @return The string, with escapes resolved.
+         */
+        private String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw new IllegalArgumentException("Unclosed JSON string.");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') return out.toString();
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    throw new IllegalArgumentException("Unclosed JSON string.");
+                }
+                char escape = text.charAt(position++);
+                switch (escape) {
+                    case '"', '\\', '/' -> out.append(escape);
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Bad JSON escape.");
+                        }
+                        out.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Bad JSON escape \\" + escape + ".");
+                }
+            }
+        }
+
+        /**
+         * Skips whitespace and then a character, if it is next.
+         *
+         * @param c The character.
+         * @return True if it was skipped.
+         */
+        private boolean skip(char c) {
+            whitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips whitespace and then a character that must be next.
+         *
+         * @param c The character.
+         * @throws IllegalArgumentException If something else is next.
+         */
+        private void expect(char c) {
+            if (!skip(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at column " + (position + 1) + ".");
+            }
+        }
+
+        /**
+         * Skips spaces and tabs.
+         */
+        private void whitespace() {
+            while (position < text.length() && (text.charAt(position) == ' ' || text.charAt(position) == '\t')) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * ChannelOutput.java
+ *
+ * A write buffer in front of a channel. Callers reserve room for the next few values, put them
+ * straight into the buffer, and the buffer is written to the channel in large sequential chunks
+ * whenever it fills up. A CRC32C of every byte written is kept along the way, so a file can end
+ * with a checksum of its contents without a second pass.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * Buffered, checksummed writer over a byte channel.
+ */
+final class ChannelOutput {
+
+    /** Default buffer size. */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /** The channel written to. */
+    private final WritableByteChannel channel;
+
+    /** Bytes not yet written to the channel. */
+    private final ByteBuffer buffer;
+
+    /** Checksum of every byte handed to the channel so far. */
+    private final CRC32C crc;
+
+    /** Number of bytes handed to the channel so far. */
+    private long written;
+
+    /**
+     * Constructs a writer with the default buffer size.
+     *
+     * @param channel The channel to write to.
+     */
+    ChannelOutput(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a writer.
+     *
+     * @param channel    The channel to write to.
+     * @param bufferSize The buffer size in bytes, at least {@link Varints#MAX_LONG_BYTES}.
+     */
+    ChannelOutput(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, Varints.MAX_LONG_BYTES));
+        this.crc = new CRC32C();
+    }
+
+    /**
+     * Makes sure the buffer has room for the next values and returns it for putting them.
+     *
+     * @param bytes The number of bytes about to be put, at most the buffer size.
+     * @return The buffer.
+     * @throws IOException If the buffer had to be written and the write failed.
+     */
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param value The value.
+     * @throws IOException If the write fails.
+     */
+    void putInt(int value) throws IOException {
+        Varints.putInt(reserve(Varints.MAX_INT_BYTES), value);
+    }
+
+    /**
+     * Writes a zigzag-encoded signed varint.
+     *
+     * @param value The value.
+     * @throws IOException If the write fails.
+     */
+    void putSignedLong(long value) throws IOException {
+        Varints.putSignedLong(reserve(Varints.MAX_LONG_BYTES), value);
+    }
+
+    /**
+     * Writes raw bytes, in pieces if they do not fit in the buffer.
+     *
+     * @param bytes The bytes.
+     * @throws IOException If the write fails.
+     */
+    void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Returns the number of bytes put so far, written or still buffered.
+     *
+     * @return The position in the output.
+     */
+    long position() {
+        return written + buffer.position();
+    }
+
+    /**
+     * Writes everything buffered and returns the checksum of all bytes put so far.
+     *
+     * @return The CRC32C value.
+     * @throws IOException If the write fails.
+     */
+    int finish() throws IOException {
+        drain();
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes the buffer to the channel and empties it.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        written += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
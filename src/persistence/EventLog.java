@@ -0,0 +1,947 @@
+/**
+ * EventLog.java
+ *
+ * Append-only binary log of every operation on a {@link TradingCardInventorySystem}. The log is an
+ * {@link InventoryListener}: each operation becomes one compact record (a type byte followed by
+ * varints), appended to an in-memory buffer while the operation still holds its container locks.
+ * Appending therefore costs a few bytes of copying and never waits for the disk.
+ *
+ * Records reach the file by group commit. Whoever flushes first takes everything buffered so far,
+ * writes it as one batch with a single sequential write and forces it to disk once; threads calling
+ * {@link #flush()} for records in that batch return without flushing again. Operations themselves
+ * never wait: when one returns, its record is only buffered. A background thread flushes every flush
+ * interval (50 ms by default) and as soon as the buffer grows large, so a crash loses at most the
+ * operations of the last interval. Code that needs an operation on disk before going on calls
+ * {@link #flush()}. Each batch is framed by its length and a CRC32C checksum, so a batch torn by a
+ * crash is detected and dropped when the log is reopened.
+ *
+ * If a write fails, the log stops: the error is thrown by every later flush, rotation and close,
+ * records appended after it are discarded, and the {@link #setFailureListener failure listener} is
+ * told once, so the application can warn that changes are no longer being saved.
+ *
+ * Cards are written by a small id. The first time a card appears, a definition record with its
+ * attributes is written ahead of the record that uses it.
+ *
+ * A log can be rotated to a new file, which then starts with its own card definitions, so each
+ * file replays on its own. {@link InventoryStore} uses this to cut the log at a checkpoint.
+ *
+ * File layout: the magic number and a version byte, then batches of
+ * {@code [int length][int crc32c][records]}.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import enums.*;
+import model.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Buffered, group-committed event log of inventory operations.
+ */
+public class EventLog implements InventoryListener, Closeable {
+
+    /** Identifies an event log file ("TCIL"). */
+    static final int MAGIC = 0x5443494C;
+
+    /** Format version written after the magic number. */
+    static final byte VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    static final int HEADER_SIZE = 5;
+
+    /** Size of the length and checksum in front of each batch. */
+    static final int BATCH_HEADER_SIZE = 8;
+
+    /** Record types. */
+    static final byte DEFINE_CARD = 1;
+    static final byte CARDS_ADDED = 2;
+    static final byte CARDS_REMOVED = 3;
+    static final byte CARD_SOLD = 4;
+    static final byte BINDER_CREATED = 5;
+    static final byte DECK_CREATED = 6;
+    static final byte CONTAINER_DELETED = 7;
+    static final byte CONTAINER_MERGED = 8;
+    static final byte CONTAINER_SOLD = 9;
+    static final byte CARDS_MOVED = 10;
+    static final byte CARD_RETURNED = 11;
+    static final byte CARD_TRADED = 12;
+    static final byte CARD_TRADED_IN = 13;
+    static final byte MONEY_ADDED = 14;
+    static final byte SELLING_PRICE_SET = 15;
+    static final byte STATE_RESTORED = 16;
+    static final byte CARD_REVALUED = 17;
+    static final byte STATE_REVERTED = 18;
+
+    /** Container kind in a {@link #STATE_REVERTED} record for a binder or deck whose header did not change. */
+    static final byte UNCHANGED_CONTAINER = 3;
+
+    /** Default time between background flushes. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50;
+
+    /** Default number of buffered bytes after which a flush is started right away. */
+    public static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+
+    /** The system being logged. */
+    private final TradingCardInventorySystem tcis;
+
+    /** The current log file, positioned at its end; guarded by {@link #flushLock}. */
+    private FileChannel channel;
+
+    /** Bytes in the current file, not counting what is still buffered. */
+    private volatile long fileBytes;
+
+    /** Buffered bytes after which a flush is started right away. */
+    private final int batchBytes;
+
+    /** Held while a batch is written, so only one flush runs at a time. */
+    private final Object flushLock;
+
+    /** Records not yet written, guarded by this. */
+    private ByteBuffer pending;
+
+    /** Empty buffer swapped in for {@link #pending} on flush, guarded by {@link #flushLock}. */
+    private ByteBuffer spare;
+
+    /** Log card id plus one for each catalog id, 0 if not yet defined; guarded by this. */
+    private int[] logIds;
+
+    /** Number of cards defined in the log so far, guarded by this. */
+    private int cardCount;
+
+    /** Number of records appended, guarded by this. */
+    private long appended;
+
+    /** Number of records written and forced to disk. */
+    private volatile long durable;
+
+    /** True while a threshold flush is queued, guarded by this. */
+    private boolean flushQueued;
+
+    /** True once closed, guarded by this. */
+    private boolean closed;
+
+    /** The first write error, reported by every later flush. */
+    private volatile IOException failure;
+
+    /** Told once about the first write error; guarded by {@link #flushLock}. */
+    private Consumer<IOException> failureListener;
+
+    /** Runs the periodic and threshold flushes. */
+    private final ScheduledExecutorService flusher;
+
+    /** What was replayed when the log was opened. */
+    private final EventReplayer.Result replay;
+
+    /**
+     * Constructs a log that appends to an open channel.
+     *
+     * @param tcis                The system being logged.
+     * @param channel             The log file, positioned at its end.
+     * @param replay              What was replayed from the file, including its card definitions.
+     * @param flushIntervalMillis Time between background flushes.
+     * @param batchBytes          Buffered bytes that start a flush right away.
+     * @throws IOException If the file size cannot be read.
+     */
+    private EventLog(TradingCardInventorySystem tcis, FileChannel channel, EventReplayer.Result replay,
+                     long flushIntervalMillis, int batchBytes) throws IOException {
+        this.tcis = tcis;
+        this.channel = channel;
+        this.fileBytes = channel.size();
+        this.replay = replay;
+        this.batchBytes = batchBytes;
+        this.flushLock = new Object();
+        this.pending = ByteBuffer.allocate(batchBytes);
+        this.spare = ByteBuffer.allocate(batchBytes);
+        this.logIds = new int[Math.max(16, tcis.getCatalog().size())];
+
+        List<Card> cards = replay.cards();
+        for (Card card : cards) {
+            ensureIdCapacity(card.getId());
+            logIds[card.getId()] = ++cardCount;
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                                       TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a log file with the default flush settings. See {@link #open(Path, TradingCardInventorySystem, long, int)}.
+     *
+     * @param path The log file.
+     * @param tcis A freshly constructed system to rebuild and then log.
+     * @return The open log, attached to the system.
+     * @throws IOException If the file cannot be read or written, or is not an event log.
+     */
+    public static EventLog open(Path path, TradingCardInventorySystem tcis) throws IOException {
+        return open(path, tcis, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_BATCH_BYTES);
+    }
+
+    /**
+     * Opens a log file, creating it if needed. Any records already in it are replayed into the
+     * system first, a torn batch at the end is cut off, and the log is then attached to the system
+     * so every later operation is appended.
+     *
+     * @param path                The log file.
+     * @param tcis                A freshly constructed system to rebuild and then log.
+     * @param flushIntervalMillis Time between background flushes, at least 1. This bounds how much
+     *                            work a crash can lose.
+     * @param batchBytes          Buffered bytes that start a flush before the interval is up, at least 1.
+     * @return The open log, attached to the system.
+     * @throws IOException If the file cannot be read or written, or is not an event log.
+     */
+    public static EventLog open(Path path, TradingCardInventorySystem tcis, long flushIntervalMillis,
+                                int batchBytes) throws IOException {
+        if (flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least 1 ms: " + flushIntervalMillis);
+        }
+        if (batchBytes < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1 byte: " + batchBytes);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            EventReplayer.Result replay = EventReplayer.replay(channel, tcis);
+            if (replay.validBytes() < HEADER_SIZE) {
+                channel.truncate(0);
+                writeHeader(channel);
+            } else if (replay.validBytes() < channel.size()) {
+                channel.truncate(replay.validBytes());
+                channel.force(true);
+            }
+            channel.position(channel.size());
+
+            EventLog log = new EventLog(tcis, channel, replay, flushIntervalMillis, batchBytes);
+            tcis.addListener(log);
+            return log;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the file header at the start of an empty log file and forces it to disk.
+     *
+     * @param channel The empty file.
+     * @throws IOException If the write fails.
+     */
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, HEADER_SIZE - header.remaining());
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Returns the size of the log in its current file, including records not yet flushed.
+     *
+     * @return The size in bytes.
+     */
+    public synchronized long size() {
+        return fileBytes + pending.position();
+    }
+
+    /**
+     * Writes everything buffered to the current file and continues the log in a new one.
+     * The new file starts over with its own card definitions, so it can be replayed on its own, and
+     * its directory entry is forced to disk before any record goes into it.
+     * Call this while no operation is in progress (see
+     * {@link TradingCardInventorySystem#whileQuiescent}) to cut the log at an exact state.
+     *
+     * @param next The new log file, which must not exist yet.
+     * @throws IOException If either file cannot be written; the log then stays in the current file.
+     */
+    public void rotate(Path next) throws IOException {
+        synchronized (flushLock) {
+            if (failure != null) {
+                throw failure;
+            }
+            FileChannel fresh = FileChannel.open(next, StandardOpenOption.CREATE_NEW,
+                                                 StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                writeHeader(fresh);
+                fresh.position(HEADER_SIZE);
+                SnapshotFile.forceDirectory(next.toAbsolutePath().getParent());
+                writePending();
+            } catch (IOException ex) {
+                fresh.close();
+                throw ex;
+            }
+            channel.close();
+            channel = fresh;
+            synchronized (this) {
+                fileBytes = HEADER_SIZE;
+                Arrays.fill(logIds, 0);
+                cardCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Sets the action told about the first write error, after which nothing more is saved. It runs
+     * on the thread that hit the error, often the background flusher, so it must be quick; a GUI
+     * should hand it to its own thread. If the log has already failed, the action is told at once.
+     *
+     * @param listener The action, or null for none.
+     */
+    public void setFailureListener(Consumer<IOException> listener) {
+        synchronized (flushLock) {
+            failureListener = listener;
+            if (listener != null && failure != null) {
+                listener.accept(failure);
+            }
+        }
+    }
+
+    /**
+     * Returns the write error that stopped the log, if any.
+     *
+     * @return The error, or null while the log is still saving.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns what was replayed from the file when the log was opened.
+     *
+     * @return The replay result.
+     */
+    public EventReplayer.Result getReplay() {
+        return replay;
+    }
+
+    /**
+     * Writes every record appended so far and forces it to disk. If another thread is already
+     * flushing, waits for it; when its batch covers everything needed, no second write is made.
+     *
+     * @throws IOException If the log could not be written, now or in an earlier flush.
+     */
+    public void flush() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        awaitDurable(target);
+    }
+
+    /**
+     * Waits until the first {@code target} records are on disk, flushing as the group leader
+     * if nobody else already has.
+     *
+     * @param target The number of records that must be durable.
+     * @throws IOException If the log could not be written.
+     */
+    private void awaitDurable(long target) throws IOException {
+        if (durable >= target && failure == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (durable >= target) {
+                return;
+            }
+            writePending();
+        }
+    }
+
+    /**
+     * Takes everything buffered and writes it to the current file as one batch.
+     * The caller holds {@link #flushLock}.
+     *
+     * @throws IOException If the write fails; the log is then unusable.
+     */
+    private void writePending() throws IOException {
+        ByteBuffer batch;
+        long end;
+        synchronized (this) {
+            batch = pending;
+            pending = spare;
+            end = appended;
+            flushQueued = false;
+        }
+        batch.flip();
+        try {
+            if (batch.hasRemaining()) {
+                long bytes = BATCH_HEADER_SIZE + batch.remaining();
+                writeBatch(batch);
+                fileBytes += bytes;
+            }
+        } catch (IOException ex) {
+            failure = ex;
+            if (failureListener != null) {
+                failureListener.accept(ex);
+            }
+            throw ex;
+        } finally {
+            spare = batch.clear();
+        }
+        durable = end;
+    }
+
+    /**
+     * Writes one framed batch at the end of the file and forces it to disk.
+     *
+     * @param batch The records, flipped for reading.
+     * @throws IOException If the write fails.
+     */
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(batch.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE)
+            .putInt(batch.remaining())
+            .putInt((int) crc.getValue())
+            .flip();
+        ByteBuffer[] frame = { header, batch };
+        while (batch.hasRemaining()) {
+            channel.write(frame);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Flushes from the background thread; errors are kept in {@link #failure} for the next caller
+     * and reported to the failure listener.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException ignored) {
+            // Reported to the failure listener and by the next flush or close.
+        }
+    }
+
+    /**
+     * Detaches the log from the system, writes everything still buffered and closes the file.
+     *
+     * @throws IOException If the last records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        tcis.removeListener(this);
+        flusher.shutdown();
+        try {
+            flush();
+        } finally {
+            synchronized (flushLock) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Appends a record of copies added to the collection.
+     *
+     * @param card   The card.
+     * @param copies The number of copies.
+     */
+    @Override
+    public synchronized void cardsAdded(Card card, int copies) {
+        int id = cardId(card);
+        begin(CARDS_ADDED);
+        putInt(id);
+        putInt(copies);
+        end();
+    }
+
+    /**
+     * Appends a record of copies removed from the collection.
+     *
+     * @param card   The card.
+     * @param copies The number of copies.
+     */
+    @Override
+    public synchronized void cardsRemoved(Card card, int copies) {
+        int id = cardId(card);
+        begin(CARDS_REMOVED);
+        putInt(id);
+        putInt(copies);
+        end();
+    }
+
+    /**
+     * Appends a record of a card sold from the collection.
+     *
+     * @param card The card.
+     */
+    @Override
+    public synchronized void cardSold(Card card) {
+        int id = cardId(card);
+        begin(CARD_SOLD);
+        putInt(id);
+        end();
+    }
+
+    /**
+     * Appends a record of a new binder.
+     *
+     * @param name The binder name.
+     * @param type The binder type.
+     */
+    @Override
+    public synchronized void binderCreated(String name, BinderType type) {
+        begin(BINDER_CREATED);
+        putString(name);
+        putInt(type.ordinal());
+        end();
+    }
+
+    /**
+     * Appends a record of a new deck.
+     *
+     * @param name The deck name.
+     * @param type The deck type.
+     */
+    @Override
+    public synchronized void deckCreated(String name, DeckType type) {
+        begin(DECK_CREATED);
+        putString(name);
+        putInt(type.ordinal());
+        end();
+    }
+
+    /**
+     * Appends a record of a deleted binder or deck.
+     *
+     * @param name The container name.
+     */
+    @Override
+    public synchronized void containerDeleted(String name) {
+        begin(CONTAINER_DELETED);
+        putString(name);
+        end();
+    }
+
+    /**
+     * Appends a record of a binder or deck emptied into the collection.
+     *
+     * @param name The container name.
+     */
+    @Override
+    public synchronized void containerMerged(String name) {
+        begin(CONTAINER_MERGED);
+        putString(name);
+        end();
+    }
+
+    /**
+     * Appends a record of a sold binder or deck.
+     *
+     * @param name The container name.
+     */
+    @Override
+    public synchronized void containerSold(String name) {
+        begin(CONTAINER_SOLD);
+        putString(name);
+        end();
+    }
+
+    /**
+     * Appends a record of copies moved between containers.
+     *
+     * @param source      The source container name, or null for the collection.
+     * @param destination The destination container name, or null for the collection.
+     * @param card        The card.
+     * @param copies      The number of copies.
+     */
+    @Override
+    public synchronized void cardsMoved(String source, String destination, Card card, int copies) {
+        int id = cardId(card);
+        begin(CARDS_MOVED);
+        putString(source);
+        putString(destination);
+        putInt(id);
+        putInt(copies);
+        end();
+    }
+
+    /**
+     * Appends a record of a card returned to the collection.
+     *
+     * @param container The container name.
+     * @param card      The card.
+     */
+    @Override
+    public synchronized void cardReturned(String container, Card card) {
+        int id = cardId(card);
+        begin(CARD_RETURNED);
+        putString(container);
+        putInt(id);
+        end();
+    }
+
+    /**
+     * Appends a record of a trade with the collection.
+     *
+     * @param binder   The binder name.
+     * @param outgoing The card that left the binder.
+     * @param incoming The card that came from the collection.
+     */
+    @Override
+    public synchronized void cardTraded(String binder, Card outgoing, Card incoming) {
+        int out = cardId(outgoing);
+        int in = cardId(incoming);
+        begin(CARD_TRADED);
+        putString(binder);
+        putInt(out);
+        putInt(in);
+        end();
+    }
+
+    /**
+     * Appends a record of a trade with someone outside the inventory.
+     *
+     * @param binder   The binder name.
+     * @param outgoing The card that left the binder.
+     * @param incoming The card that entered the binder.
+     */
+    @Override
+    public synchronized void cardTradedIn(String binder, Card outgoing, Card incoming) {
+        int out = cardId(outgoing);
+        int in = cardId(incoming);
+        begin(CARD_TRADED_IN);
+        putString(binder);
+        putInt(out);
+        putInt(in);
+        end();
+    }
+
+    /**
+     * Appends a record of a direct change to the balance.
+     *
+     * @param amount The amount, negative if taken.
+     */
+    @Override
+    public synchronized void moneyAdded(Money amount) {
+        begin(MONEY_ADDED);
+        putMoney(amount);
+        end();
+    }
+
+    /**
+     * Appends a record of a binder price change.
+     *
+     * @param binder The binder name.
+     * @param price  The new price.
+     */
+    @Override
+    public synchronized void sellingPriceSet(String binder, Money price) {
+        begin(SELLING_PRICE_SET);
+        putString(binder);
+        putMoney(price);
+        end();
+    }
+
+    /**
+     * Appends a record of a card revalued everywhere it is held.
+     *
+     * @param card     The card as it was.
+     * @param revalued The card at its new value.
+     */
+    @Override
+    public synchronized void cardRevalued(Card card, Card revalued) {
+        int id = cardId(card);
+        begin(CARD_REVALUED);
+        putInt(id);
+        putMoney(revalued.getBaseValue());
+        end();
+    }
+
+    /**
+     * Writes the whole restored state, since a state opened from a file may differ from the
+     * previous one anywhere.
+     *
+     * @param state The state now in effect.
+     */
+    @Override
+    public synchronized void stateRestored(InventorySnapshot state) {
+        state.getCollection().forEach((card, count) -> cardId(card));
+        for (InventorySnapshot.ContainerState container : state.getContainers()) {
+            container.cards().forEach((card, count) -> cardId(card));
+        }
+
+        begin(STATE_RESTORED);
+        putMoney(state.getMoney());
+        putCards(state.getCollection());
+        putInt(state.getContainers().size());
+        for (InventorySnapshot.ContainerState container : state.getContainers()) {
+            putString(container.name());
+            putHeader(container);
+            putCards(container.cards());
+        }
+        end();
+    }
+
+    /**
+     * Writes only what an undo or redo changed, so the record grows with the step and not with the
+     * inventory. Card changes are written as (card id, new count) pairs in diff order, for the
+     * collection and then for every binder and deck of the new state, against the container of the
+     * same name in the replaced state. A binder or deck whose kind, rules and price are unchanged is
+     * written with kind 3 instead of its header.
+     *
+     * @param before The state that was replaced.
+     * @param after  The state now in effect.
+     */
+    @Override
+    public synchronized void stateReverted(InventorySnapshot before, InventorySnapshot after) {
+        Map<String, InventorySnapshot.ContainerState> replaced = new HashMap<>();
+        for (InventorySnapshot.ContainerState container : before.getContainers()) {
+            replaced.put(container.name(), container);
+        }
+        int[] collectionChanges = changes(before.getCollection(), after.getCollection());
+        List<int[]> containerChanges = new ArrayList<>(after.getContainers().size());
+        for (InventorySnapshot.ContainerState container : after.getContainers()) {
+            InventorySnapshot.ContainerState old = replaced.get(container.name());
+            containerChanges.add(changes(old == null ? PersistentCardMap.EMPTY : old.cards(), container.cards()));
+        }
+
+        begin(STATE_REVERTED);
+        putMoney(after.getMoney());
+        putChanges(collectionChanges);
+        putInt(after.getContainers().size());
+        for (int i = 0; i < after.getContainers().size(); i++) {
+            InventorySnapshot.ContainerState container = after.getContainers().get(i);
+            InventorySnapshot.ContainerState old = replaced.get(container.name());
+            putString(container.name());
+            if (old != null && sameHeader(old, container)) {
+                putByte(UNCHANGED_CONTAINER);
+            } else {
+                putHeader(container);
+            }
+            putChanges(containerChanges.get(i));
+        }
+        end();
+    }
+
+    /**
+     * Collects the cards whose counts differ between two maps as (log id, new count) pairs, in the
+     * order the diff reports them. Writes definitions for cards new to the log, so it must be called
+     * before {@link #begin(byte)}.
+     *
+     * @param older The map before.
+     * @param newer The map after.
+     * @return The pairs, flattened.
+     */
+    private int[] changes(PersistentCardMap older, PersistentCardMap newer) {
+        List<Card> cards = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        older.diff(newer, (card, oldCount, newCount) -> {
+            cards.add(card);
+            counts.add(newCount);
+        });
+        int[] pairs = new int[cards.size() * 2];
+        for (int i = 0; i < cards.size(); i++) {
+            pairs[2 * i] = cardId(cards.get(i));
+            pairs[2 * i + 1] = counts.get(i);
+        }
+        return pairs;
+    }
+
+    /**
+     * Checks whether two states of a binder or deck agree on everything but their cards.
+     *
+     * @param a One state.
+     * @param b The other.
+     * @return True if kind, type, admission rules and selling price are equal.
+     */
+    private static boolean sameHeader(InventorySnapshot.ContainerState a, InventorySnapshot.ContainerState b) {
+        return a.binderType() == b.binderType() && a.deckType() == b.deckType()
+            && Objects.equals(a.admission(), b.admission())
+            && Objects.equals(a.sellingPrice(), b.sellingPrice());
+    }
+
+    /**
+     * Returns a card's log id, writing its definition first if it has not appeared in the log yet.
+     * Must be called before {@link #begin(byte)}, so the definition lands ahead of the record.
+     *
+     * @param card The card.
+     * @return Its log id.
+     */
+    private int cardId(Card card) {
+        Card canonical = tcis.getCatalog().intern(card);
+        int catalogId = canonical.getId();
+        ensureIdCapacity(catalogId);
+        if (logIds[catalogId] == 0) {
+            begin(DEFINE_CARD);
+            putString(canonical.getName());
+            putInt(canonical.getRarity().ordinal());
+            putInt(canonical.getVariant() == null ? 0 : canonical.getVariant().ordinal() + 1);
+            putMoney(canonical.getBaseValue());
+            end();
+            logIds[catalogId] = ++cardCount;
+        }
+        return logIds[catalogId] - 1;
+    }
+
+    /**
+     * Grows the id table so it covers a catalog id.
+     *
+     * @param catalogId The catalog id.
+     */
+    private void ensureIdCapacity(int catalogId) {
+        if (catalogId >= logIds.length) {
+            logIds = Arrays.copyOf(logIds, Math.max(catalogId + 1, logIds.length * 2));
+        }
+    }
+
+    /**
+     * Starts a record.
+     *
+     * @param type The record type.
+     */
+    private void begin(byte type) {
+        putByte(type);
+    }
+
+    /**
+     * Finishes a record and starts a flush early if enough has been buffered.
+     */
+    private void end() {
+        appended++;
+        if (failure != null) {
+            // The file can no longer be written and the failure listener has been told; keep memory bounded.
+            pending.clear();
+            return;
+        }
+        if (pending.position() >= batchBytes && !flushQueued && !closed) {
+            flushQueued = true;
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Appends one byte.
+     *
+     * @param value The byte.
+     */
+    private void putByte(byte value) {
+        reserve(1);
+        pending.put(value);
+    }
+
+    /**
+     * Appends a varint.
+     *
+     * @param value The value.
+     */
+    private void putInt(int value) {
+        reserve(Varints.MAX_INT_BYTES);
+        Varints.putInt(pending, value);
+    }
+
+    /**
+     * Appends a money amount as signed cents.
+     *
+     * @param amount The amount.
+     */
+    private void putMoney(Money amount) {
+        reserve(Varints.MAX_LONG_BYTES);
+        Varints.putSignedLong(pending, amount.getCents());
+    }
+
+    /**
+     * Appends a string that may be null.
+     *
+     * @param value The string.
+     */
+    private void putString(String value) {
+        byte[] utf8 = Varints.utf8(value);
+        reserve(Varints.sizeOf(utf8));
+        Varints.putString(pending, utf8);
+    }
+
+    /**
+     * Appends a card map as its size followed by (card id, count) pairs.
+     * Every card must already be defined.
+     *
+     * @param cards The cards.
+     */
+    private void putCards(PersistentCardMap cards) {
+        putInt(cards.size());
+        cards.forEach((card, count) -> {
+            putInt(logIds[tcis.getCatalog().intern(card).getId()] - 1);
+            putInt(count);
+        });
+    }
+
+    /**
+     * Appends card changes collected by {@link #changes} as their number followed by the pairs.
+     *
+     * @param pairs The flattened (card id, new count) pairs.
+     */
+    private void putChanges(int[] pairs) {
+        putInt(pairs.length / 2);
+        for (int value : pairs) {
+            putInt(value);
+        }
+    }
+
+    /**
+     * Appends what describes a binder or deck apart from its cards: kind 0 and the binder type and
+     * price, kind 2 with the admission mask as well for a binder whose rules differ from its type's,
+     * or kind 1 and the deck type.
+     *
+     * @param container The binder or deck state.
+     */
+    private void putHeader(InventorySnapshot.ContainerState container) {
+        if (container.binderType() != null) {
+            AdmissionTable admission = container.admission();
+            boolean custom = !admission.equals(AdmissionTable.forType(container.binderType()));
+            putByte((byte) (custom ? 2 : 0));
+            putInt(container.binderType().ordinal());
+            if (custom) {
+                putInt(admission.getMask());
+            }
+            putMoney(container.sellingPrice());
+        } else {
+            putByte((byte) 1);
+            putInt(container.deckType().ordinal());
+        }
+    }
+
+    /**
+     * Makes room in the pending buffer, doubling it when full.
+     *
+     * @param bytes The number of bytes about to be written.
+     */
+    private void reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+}
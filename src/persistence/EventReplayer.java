@@ -0,0 +1,521 @@
+/**
+ * EventReplayer.java
+ *
+ * Rebuilds an inventory from an {@link EventLog} file by running every recorded operation again, in
+ * log order, against a fresh {@link TradingCardInventorySystem}. The whole file is read with one
+ * sequential pass into memory and decoded straight from the buffer, so replay speed is bound by the
+ * operations themselves rather than by I/O.
+ *
+ * Each batch is checked against its checksum before any of its records are applied. Replay stops at
+ * the first batch that is incomplete or damaged, which is what a crash in the middle of a write
+ * leaves behind; everything before it is kept. An operation that the inventory rejects on replay
+ * (for instance, a binder name that no longer resolves) is counted and skipped.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import enums.*;
+import model.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Replays an event log into an inventory.
+ */
+public final class EventReplayer {
+
+    /**
+     * The outcome of a replay.
+     *
+     * @param events      The number of operations replayed, not counting card definitions.
+     * @param rejected    The number of operations the inventory refused and that were skipped.
+     * @param validBytes  The length of the intact part of the file; anything after it is torn.
+     * @param cards       The canonical cards by log id, in definition order.
+     * @param nanos       The time the replay took.
+     */
+    public record Result(long events, long rejected, long validBytes, List<Card> cards, long nanos) {
+
+        /**
+         * Returns the replay speed.
+         *
+         * @return Operations replayed per second.
+         */
+        public double eventsPerSecond() {
+            return nanos == 0 ? 0 : events * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    /**
+     * Card counts changed by an undo or redo, in the order they were logged.
+     *
+     * @param cards  The cards.
+     * @param counts Their new counts, 0 for cards that are gone.
+     */
+    private record Changes(Card[] cards, int[] counts) {
+
+        /**
+         * Applies the changes to a card map.
+         *
+         * @param base The cards before.
+         * @return The cards after.
+         */
+        PersistentCardMap applyTo(PersistentCardMap base) {
+            PersistentCardMap result = base;
+            for (int i = 0; i < cards.length; i++) {
+                result = result.with(cards[i], counts[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A binder or deck of the state an undo or redo returned to.
+     *
+     * @param name    The container name.
+     * @param header  Its state without cards, or null if it kept that of the container it replaced.
+     * @param changes Its cards' changes against the container of the same name it replaced.
+     */
+    private record RevertedContainer(String name, InventorySnapshot.ContainerState header, Changes changes) {
+    }
+
+    /**
+     * The state an undo or redo returned to, as changes against the state it replaced.
+     *
+     * @param money      The balance after.
+     * @param collection The collection's changes.
+     * @param containers The binders and decks after, in order.
+     */
+    private record Reversion(Money money, Changes collection, List<RevertedContainer> containers) {
+
+        /**
+         * Builds the state the changes lead to from the state they were logged against.
+         *
+         * @param before The state before the undo or redo.
+         * @return The state after it.
+         * @throws IllegalStateException If a container logged as unchanged does not exist.
+         */
+        InventorySnapshot applyTo(InventorySnapshot before) {
+            Map<String, InventorySnapshot.ContainerState> replaced = new HashMap<>();
+            for (InventorySnapshot.ContainerState container : before.getContainers()) {
+                replaced.put(container.name(), container);
+            }
+            List<InventorySnapshot.ContainerState> after = new ArrayList<>(containers.size());
+            for (RevertedContainer container : containers) {
+                InventorySnapshot.ContainerState old = replaced.get(container.name());
+                InventorySnapshot.ContainerState header = container.header() != null ? container.header() : old;
+                if (header == null) {
+                    throw new IllegalStateException("No container named " + container.name() + " to revert.");
+                }
+                PersistentCardMap cards = container.changes().applyTo(old == null ? PersistentCardMap.EMPTY : old.cards());
+                after.add(withCards(header, cards));
+            }
+            return InventorySnapshot.of(collection.applyTo(before.getCollection()), after, money);
+        }
+    }
+
+    /** The system being rebuilt. */
+    private final TradingCardInventorySystem tcis;
+
+    /** Canonical cards by log id. */
+    private final List<Card> cards;
+
+    /** Operations replayed so far. */
+    private long events;
+
+    /** Operations refused so far. */
+    private long rejected;
+
+    /**
+     * Constructs a replayer.
+     *
+     * @param tcis The system to rebuild.
+     */
+    private EventReplayer(TradingCardInventorySystem tcis) {
+        this.tcis = tcis;
+        this.cards = new ArrayList<>();
+    }
+
+    /**
+     * Replays a log file from its start. The system should be freshly constructed and must not
+     * have an event log attached, or the replayed operations would be logged a second time.
+     *
+     * @param channel The log file.
+     * @param tcis    The system to rebuild.
+     * @return What was replayed; {@code validBytes} is 0 if the file is empty or has a torn header.
+     * @throws IOException If the file cannot be read, is not an event log, or holds an unreadable record.
+     */
+    public static EventReplayer.Result replay(FileChannel channel, TradingCardInventorySystem tcis) throws IOException {
+        long start = System.nanoTime();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Event log is too large to replay: " + size + " bytes.");
+        }
+
+        ByteBuffer file = ByteBuffer.allocate((int) size);
+        while (file.hasRemaining()) {
+            if (channel.read(file, file.position()) < 0) break;
+        }
+        file.flip();
+
+        EventReplayer replayer = new EventReplayer(tcis);
+        long valid = 0;
+        if (file.remaining() >= EventLog.HEADER_SIZE) {
+            if (file.getInt() != EventLog.MAGIC) {
+                throw new IOException("Not an inventory event log.");
+            }
+            byte version = file.get();
+            if (version != EventLog.VERSION) {
+                throw new IOException("Unsupported event log version " + version + ".");
+            }
+            valid = replayer.replayBatches(file);
+        }
+        return new Result(replayer.events, replayer.rejected, valid, List.copyOf(replayer.cards),
+                          System.nanoTime() - start);
+    }
+
+    /**
+     * Replays batches until the end of the file or the first torn batch.
+     *
+     * @param file The file contents, positioned after the header.
+     * @return The offset just past the last intact batch.
+     * @throws IOException If an intact batch holds an unreadable record.
+     */
+    private long replayBatches(ByteBuffer file) throws IOException {
+        CRC32C crc = new CRC32C();
+        long valid = file.position();
+        while (file.remaining() >= EventLog.BATCH_HEADER_SIZE) {
+            int length = file.getInt();
+            int checksum = file.getInt();
+            if (length <= 0 || length > file.remaining()) break;
+
+            ByteBuffer batch = file.slice(file.position(), length);
+            crc.reset();
+            crc.update(batch.duplicate());
+            if ((int) crc.getValue() != checksum) break;
+
+            try {
+                while (batch.hasRemaining()) {
+                    replayRecord(batch);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+                throw new IOException("Corrupt event log record at offset "
+                    + (file.position() + batch.position()) + ".", ex);
+            }
+            file.position(file.position() + length);
+            valid = file.position();
+        }
+        return valid;
+    }
+
+    /**
+     * Decodes one record and applies it.
+     *
+     * @param in The batch, positioned at the record's type byte.
+     * @throws IOException If the record type is unknown.
+     */
+    private void replayRecord(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        if (type == EventLog.DEFINE_CARD) {
+            String name = Varints.getString(in);
+            Rarity rarity = Rarity.values()[Varints.getInt(in)];
+            int variant = Varints.getInt(in);
+            Money baseValue = money(in);
+            cards.add(tcis.getCatalog().intern(name, rarity,
+                                               variant == 0 ? null : Variant.values()[variant - 1], baseValue));
+            return;
+        }
+
+        Runnable operation = decode(type, in);
+        events++;
+        try {
+            operation.run();
+        } catch (IllegalArgumentException | IllegalStateException refused) {
+            rejected++;
+        }
+    }
+
+    /**
+     * Decodes the fields of an operation record into the call that repeats it.
+     * All fields are read before anything runs, so a refused operation still leaves the buffer
+     * at the next record.
+     *
+     * @param type The record type.
+     * @param in   The batch, positioned after the type byte.
+     * @return The operation to run.
+     * @throws IOException If the record type is unknown.
+     */
+    private Runnable decode(byte type, ByteBuffer in) throws IOException {
+        return switch (type) {
+            case EventLog.CARDS_ADDED -> {
+                Card card = card(in);
+                int copies = Varints.getInt(in);
+                yield () -> tcis.addCards(card, copies);
+            }
+            case EventLog.CARDS_REMOVED -> {
+                Card card = card(in);
+                int copies = Varints.getInt(in);
+                yield () -> tcis.removeCards(card, copies);
+            }
+            case EventLog.CARD_SOLD -> {
+                Card card = card(in);
+                yield () -> require(tcis.sellCard(card));
+            }
+            case EventLog.BINDER_CREATED -> {
+                String name = Varints.getString(in);
+                BinderType binderType = BinderType.values()[Varints.getInt(in)];
+                yield () -> tcis.createBinder(name, binderType);
+            }
+            case EventLog.DECK_CREATED -> {
+                String name = Varints.getString(in);
+                DeckType deckType = DeckType.values()[Varints.getInt(in)];
+                yield () -> tcis.createDeck(name, deckType);
+            }
+            case EventLog.CONTAINER_DELETED -> {
+                String name = Varints.getString(in);
+                yield () -> tcis.deleteContainer(container(name));
+            }
+            case EventLog.CONTAINER_MERGED -> {
+                String name = Varints.getString(in);
+                yield () -> tcis.mergeIntoCollection(container(name));
+            }
+            case EventLog.CONTAINER_SOLD -> {
+                String name = Varints.getString(in);
+                yield () -> tcis.sellContainer(container(name));
+            }
+            case EventLog.CARDS_MOVED -> {
+                String source = Varints.getString(in);
+                String destination = Varints.getString(in);
+                Card card = card(in);
+                int copies = Varints.getInt(in);
+                yield () -> require(tcis.moveCards(container(source), container(destination),
+                                                    Map.of(card, copies)) == copies);
+            }
+            case EventLog.CARD_RETURNED -> {
+                String name = Varints.getString(in);
+                Card card = card(in);
+                yield () -> tcis.returnToCollection(container(name), card);
+            }
+            case EventLog.CARD_TRADED -> {
+                String name = Varints.getString(in);
+                Card outgoing = card(in);
+                Card incoming = card(in);
+                yield () -> tcis.tradeCard(binder(name), outgoing, incoming);
+            }
+            case EventLog.CARD_TRADED_IN -> {
+                String name = Varints.getString(in);
+                Card outgoing = card(in);
+                Card incoming = card(in);
+                yield () -> tcis.tradeIn(binder(name), outgoing, incoming);
+            }
+            case EventLog.MONEY_ADDED -> {
+                Money amount = money(in);
+                yield () -> tcis.addMoney(amount);
+            }
+            case EventLog.SELLING_PRICE_SET -> {
+                String name = Varints.getString(in);
+                Money price = money(in);
+                yield () -> tcis.setSellingPrice(binder(name), price);
+            }
+            case EventLog.CARD_REVALUED -> {
+                Card card = card(in);
+                Money baseValue = money(in);
+                yield () -> tcis.revalue(card, baseValue);
+            }
+            case EventLog.STATE_RESTORED -> {
+                InventorySnapshot state = decodeState(in);
+                yield () -> tcis.restore(state);
+            }
+            case EventLog.STATE_REVERTED -> {
+                Reversion reversion = decodeReversion(in);
+                yield () -> tcis.revert(reversion.applyTo(tcis.snapshotState()));
+            }
+            default -> throw new IOException("Unknown event log record type " + type + ".");
+        };
+    }
+
+    /**
+     * Decodes a full inventory state written by {@link EventLog#stateRestored(InventorySnapshot)}.
+     *
+     * @param in The batch, positioned after the type byte.
+     * @return The state.
+     */
+    private InventorySnapshot decodeState(ByteBuffer in) {
+        Money money = money(in);
+        PersistentCardMap collection = cardMap(in);
+        int count = Varints.getInt(in);
+        List<InventorySnapshot.ContainerState> containers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = Varints.getString(in);
+            InventorySnapshot.ContainerState header = header(in, name, in.get());
+            containers.add(withCards(header, cardMap(in)));
+        }
+        return InventorySnapshot.of(collection, containers, money);
+    }
+
+    /**
+     * Decodes the changes written by {@link EventLog#stateReverted(InventorySnapshot, InventorySnapshot)}.
+     * They can only be turned into a state once the state they were taken against is known, which
+     * is when the record is applied.
+     *
+     * @param in The batch, positioned after the type byte.
+     * @return The decoded changes.
+     */
+    private Reversion decodeReversion(ByteBuffer in) {
+        Money money = money(in);
+        Changes collection = changes(in);
+        int count = Varints.getInt(in);
+        List<RevertedContainer> containers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = Varints.getString(in);
+            byte kind = in.get();
+            InventorySnapshot.ContainerState header = kind == EventLog.UNCHANGED_CONTAINER ? null : header(in, name, kind);
+            containers.add(new RevertedContainer(name, header, changes(in)));
+        }
+        return new Reversion(money, collection, containers);
+    }
+
+    /**
+     * Decodes what describes a binder (kind 0, or 2 with an admission mask) or deck (kind 1) apart
+     * from its cards.
+     *
+     * @param in   The batch, positioned after the kind byte.
+     * @param name The container name.
+     * @param kind The kind byte.
+     * @return The state, with no cards.
+     */
+    private InventorySnapshot.ContainerState header(ByteBuffer in, String name, byte kind) {
+        if (kind == 0 || kind == 2) {
+            BinderType binderType = BinderType.values()[Varints.getInt(in)];
+            AdmissionTable admission = kind == 2
+                ? AdmissionTable.fromMask(Varints.getInt(in))
+                : AdmissionTable.forType(binderType);
+            Money price = money(in);
+            return new InventorySnapshot.ContainerState(
+                name, binderType, null, PersistentCardMap.EMPTY, price, admission);
+        }
+        DeckType deckType = DeckType.values()[Varints.getInt(in)];
+        return new InventorySnapshot.ContainerState(name, null, deckType, PersistentCardMap.EMPTY, null);
+    }
+
+    /**
+     * Returns a container state with other cards.
+     *
+     * @param state The state.
+     * @param cards The cards.
+     * @return The state holding those cards.
+     */
+    private static InventorySnapshot.ContainerState withCards(InventorySnapshot.ContainerState state,
+                                                              PersistentCardMap cards) {
+        return new InventorySnapshot.ContainerState(state.name(), state.binderType(), state.deckType(),
+                                                    cards, state.sellingPrice(), state.admission());
+    }
+
+    /**
+     * Decodes card changes written as their number followed by (card id, new count) pairs.
+     *
+     * @param in The batch.
+     * @return The changes.
+     */
+    private Changes changes(ByteBuffer in) {
+        int size = Varints.getInt(in);
+        Card[] changed = new Card[size];
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            changed[i] = card(in);
+            counts[i] = Varints.getInt(in);
+        }
+        return new Changes(changed, counts);
+    }
+
+    /**
+     * Decodes a card map written as its size followed by (card id, count) pairs.
+     *
+     * @param in The batch.
+     * @return The card map.
+     */
+    private PersistentCardMap cardMap(ByteBuffer in) {
+        int size = Varints.getInt(in);
+        PersistentCardMap cards = PersistentCardMap.EMPTY;
+        for (int i = 0; i < size; i++) {
+            Card card = card(in);
+            cards = cards.with(card, Varints.getInt(in));
+        }
+        return cards;
+    }
+
+    /**
+     * Decodes a card reference.
+     *
+     * @param in The batch.
+     * @return The canonical card.
+     * @throws IndexOutOfBoundsException If the card was never defined.
+     */
+    private Card card(ByteBuffer in) {
+        return cards.get(Varints.getInt(in));
+    }
+
+    /**
+     * Decodes a money amount written as signed cents.
+     *
+     * @param in The batch.
+     * @return The amount.
+     */
+    private static Money money(ByteBuffer in) {
+        return Money.ofCents(Varints.getSignedLong(in));
+    }
+
+    /**
+     * Resolves a container name from the log.
+     *
+     * @param name The container name, or null for the collection.
+     * @return The container.
+     * @throws IllegalArgumentException If no binder or deck has that name.
+     */
+    private CardContainer container(String name) {
+        if (name == null) {
+            return tcis.getCollection();
+        }
+        CardContainer container = tcis.findContainer(name);
+        if (container == null) {
+            throw new IllegalArgumentException("No binder or deck named " + name + ".");
+        }
+        return container;
+    }
+
+    /**
+     * Resolves a binder name from the log.
+     *
+     * @param name The binder name.
+     * @return The binder.
+     * @throws IllegalArgumentException If no binder has that name.
+     */
+    private Binder binder(String name) {
+        if (container(name) instanceof Binder binder) {
+            return binder;
+        }
+        throw new IllegalArgumentException(name + " is not a binder.");
+    }
+
+    /**
+     * Turns a false result from the inventory into a rejection.
+     *
+     * @param done The result of the operation.
+     * @throws IllegalArgumentException If the operation did nothing.
+     */
+    private static void require(boolean done) {
+        if (!done) {
+            throw new IllegalArgumentException("Operation was refused.");
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/**
+ * InventoryExporter.java
+ *
+ * Writes a whole inventory - the money balance, the collection, and every binder and deck with its
+ * cards - as CSV or JSON for use outside the program. The export reads an {@link InventorySnapshot},
+ * which never changes once taken, so it can run on a background thread while the inventory keeps
+ * changing. The file holds one consistent state as long as the snapshot does, which
+ * {@link TradingCardInventorySystem#snapshotState()} ensures by capturing it while no operation is
+ * in progress.
+ *
+ * The text is streamed: rows are formatted straight into a large buffer that is written to the
+ * channel whenever it fills, so the document is never held in memory. Names, enum constants, values
+ * and counts are written byte by byte without building intermediate strings, so a row costs little
+ * more than copying its bytes.
+ *
+ * The CSV file has one row per line with the columns
+ * {@code kind,container,type,name,rarity,variant,value,copies}. The first row after the header is
+ * the balance ({@code money}, with the amount under value); then come the collection's cards
+ * ({@code card} rows with an empty container), and for each binder or deck a {@code binder} or
+ * {@code deck} row, with the binder's selling price under value, followed by its {@code card} rows.
+ * The JSON file is one object with {@code money}, {@code collection} and {@code containers} members.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import enums.*;
+import model.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Streaming exporter of an inventory snapshot.
+ */
+public final class InventoryExporter {
+
+    /**
+     * The supported file formats.
+     */
+    public enum Format {
+        /** Comma-separated values, one row per card. */
+        CSV,
+        /** One JSON document. */
+        JSON;
+
+        /**
+         * Picks the format from a file name: {@code .json} files are JSON, anything else is CSV.
+         *
+         * @param file The file.
+         * @return The format.
+         */
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    /**
+     * The outcome of an export.
+     *
+     * @param rows  The number of card rows written.
+     * @param bytes The number of bytes written.
+     * @param nanos The time the export took.
+     */
+    public record Report(long rows, long bytes, long nanos) {
+
+        /**
+         * Returns the export speed.
+         *
+         * @return Card rows written per second.
+         */
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    /** CSV header line. */
+    private static final byte[] CSV_HEADER = ascii("kind,container,type,name,rarity,variant,value,copies\n");
+
+    /** Rarity names as bytes, by ordinal. */
+    private static final byte[][] RARITIES = names(Rarity.values());
+
+    /** Variant names as bytes, by ordinal. */
+    private static final byte[][] VARIANTS = names(Variant.values());
+
+    /** Longest name written without going through the general encoder. */
+    private static final int MAX_PLAIN_NAME = 256;
+
+    /** Room for everything in a CSV row after the name: enum names, a value, a count and separators. */
+    private static final int MAX_TAIL_BYTES = 128;
+
+    /** JSON text between the fields of a card. */
+    private static final byte[] JSON_NAME = ascii("\n{\"name\":"), JSON_RARITY = ascii(",\"rarity\":"),
+        JSON_VARIANT = ascii(",\"variant\":"), JSON_VALUE = ascii(",\"value\":"),
+        JSON_COPIES = ascii(",\"copies\":"), JSON_NULL = ascii("null");
+
+    /** Room for the JSON keys of a card, on top of {@link #MAX_TAIL_BYTES}. */
+    private static final int JSON_KEYS_BYTES = 64;
+
+    /** The format being written. */
+    private final Format format;
+
+    /** The output. */
+    private final ChannelOutput out;
+
+    /** Card rows written so far. */
+    private long rows;
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param format  The format to write.
+     * @param channel The channel to write to.
+     */
+    private InventoryExporter(Format format, WritableByteChannel channel) {
+        this.format = format;
+        this.out = new ChannelOutput(channel);
+    }
+
+    /**
+     * Exports a snapshot to a file, picking the format from its name. The file is written under a
+     * temporary name and moved into place at the end, so a failed export leaves no partial file.
+     *
+     * @param state The state to export.
+     * @param path  The file to write.
+     * @return What was written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static Report export(InventorySnapshot state, Path path) throws IOException {
+        return export(state, path, Format.of(path));
+    }
+
+    /**
+     * Exports a snapshot to a file. The file is written under a temporary name and moved into place
+     * at the end, so a failed export leaves no partial file.
+     *
+     * @param state  The state to export.
+     * @param path   The file to write.
+     * @param format The format to write.
+     * @return What was written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static Report export(InventorySnapshot state, Path path, Format format) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Report report;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            report = export(state, channel, format);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return report;
+    }
+
+    /**
+     * Exports a snapshot to a channel, which is left open.
+     *
+     * @param state   The state to export.
+     * @param channel The channel to write to.
+     * @param format  The format to write.
+     * @return What was written.
+     * @throws IOException If the write fails.
+     */
+    public static Report export(InventorySnapshot state, WritableByteChannel channel, Format format)
+            throws IOException {
+        long start = System.nanoTime();
+        InventoryExporter exporter = new InventoryExporter(format, channel);
+        try {
+            if (format == Format.CSV) {
+                exporter.writeCsv(state);
+            } else {
+                exporter.writeJson(state);
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        exporter.out.finish();
+        return new Report(exporter.rows, exporter.out.position(), System.nanoTime() - start);
+    }
+
+    /**
+     * Writes the whole state as CSV.
+     *
+     * @param state The state.
+     * @throws IOException If the write fails.
+     */
+    private void writeCsv(InventorySnapshot state) throws IOException {
+        out.put(CSV_HEADER);
+        out.put(ascii("money,,,,,," + state.getMoney() + ",\n"));
+        writeCards(state.getCollection(), ascii("card,,,"));
+        for (InventorySnapshot.ContainerState container : state.getContainers()) {
+            String name = csv(container.name());
+            if (container.binderType() != null) {
+                String price = container.sellingPrice() == null ? "" : container.sellingPrice().toString();
+                out.put(utf8("binder," + name + "," + container.binderType() + ",,,," + price + ",\n"));
+            } else {
+                out.put(utf8("deck," + name + "," + container.deckType() + ",,,,,\n"));
+            }
+            writeCards(container.cards(), utf8("card," + name + ",,"));
+        }
+    }
+
+    /**
+     * Writes the whole state as one JSON object.
+     *
+     * @param state The state.
+     * @throws IOException If the write fails.
+     */
+    private void writeJson(InventorySnapshot state) throws IOException {
+        out.put(ascii("{\"money\":" + state.getMoney() + ",\n\"collection\":["));
+        writeCards(state.getCollection(), null);
+        out.put(ascii("],\n\"containers\":["));
+        boolean first = true;
+        for (InventorySnapshot.ContainerState container : state.getContainers()) {
+            StringBuilder head = new StringBuilder(first ? "\n{\"name\":" : ",\n{\"name\":");
+            head.append(json(container.name()));
+            if (container.binderType() != null) {
+                head.append(",\"kind\":\"binder\",\"type\":\"").append(container.binderType()).append('"');
+                if (container.sellingPrice() != null) {
+                    head.append(",\"sellingPrice\":").append(container.sellingPrice());
+                }
+            } else {
+                head.append(",\"kind\":\"deck\",\"type\":\"").append(container.deckType()).append('"');
+            }
+            head.append(",\"cards\":[");
+            out.put(utf8(head.toString()));
+            writeCards(container.cards(), null);
+            out.put(ascii("]}"));
+            first = false;
+        }
+        out.put(ascii("]}\n"));
+    }
+
+    /**
+     * Writes one row per card in a map.
+     *
+     * @param cards  The cards and counts.
+     * @param prefix For CSV, the bytes that start every row; unused for JSON.
+     * @throws UncheckedIOException If the write fails.
+     */
+    private void writeCards(PersistentCardMap cards, byte[] prefix) {
+        boolean[] first = {true};
+        cards.forEach((card, count) -> {
+            try {
+                if (format == Format.CSV) {
+                    out.put(prefix);
+                    writeCsvCard(card, count);
+                } else {
+                    if (!first[0]) out.reserve(1).put((byte) ',');
+                    writeJsonCard(card, count);
+                }
+                first[0] = false;
+                rows++;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Writes a card's fields and count as the rest of a CSV row.
+     *
+     * @param card  The card.
+     * @param count The number of copies.
+     * @throws IOException If the write fails.
+     */
+    private void writeCsvCard(Card card, int count) throws IOException {
+        if (!putPlain(card.getName(), false)) {
+            out.put(utf8(csv(card.getName())));
+        }
+        ByteBuffer buffer = out.reserve(MAX_TAIL_BYTES);
+        buffer.put((byte) ',').put(RARITIES[card.getRarity().ordinal()]).put((byte) ',');
+        if (card.getVariant() != null) buffer.put(VARIANTS[card.getVariant().ordinal()]);
+        buffer.put((byte) ',');
+        putMoney(buffer, card.getBaseValue().getCents());
+        buffer.put((byte) ',');
+        putDigits(buffer, count);
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * Writes a card and its count as a JSON object on its own line.
+     *
+     * @param card  The card.
+     * @param count The number of copies.
+     * @throws IOException If the write fails.
+     */
+    private void writeJsonCard(Card card, int count) throws IOException {
+        out.put(JSON_NAME);
+        if (!putPlain(card.getName(), true)) {
+            out.put(utf8(json(card.getName())));
+        }
+        ByteBuffer buffer = out.reserve(MAX_TAIL_BYTES + JSON_KEYS_BYTES);
+        buffer.put(JSON_RARITY).put((byte) '"').put(RARITIES[card.getRarity().ordinal()]).put((byte) '"');
+        buffer.put(JSON_VARIANT);
+        if (card.getVariant() != null) {
+            buffer.put((byte) '"').put(VARIANTS[card.getVariant().ordinal()]).put((byte) '"');
+        } else {
+            buffer.put(JSON_NULL);
+        }
+        buffer.put(JSON_VALUE);
+        putMoney(buffer, card.getBaseValue().getCents());
+        buffer.put(JSON_COPIES);
+        putDigits(buffer, count);
+        buffer.put((byte) '}');
+    }
+
+    /**
+     * Writes a short name straight into the buffer if it is plain ASCII that needs no quoting in
+     * CSV or escaping in JSON, which is the common case.
+     *
+     * @param name   The name.
+     * @param quoted True to surround it with quotes, as JSON needs.
+     * @return False if the name was not written and needs the general encoder.
+     * @throws IOException If the write fails.
+     */
+    private boolean putPlain(String name, boolean quoted) throws IOException {
+        int length = name.length();
+        if (length > MAX_PLAIN_NAME || (length > 0 && (name.charAt(0) == ' ' || name.charAt(length - 1) == ' '))) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c < 0x20 || c > 0x7E || c == ',' || c == '"' || c == '\\') return false;
+        }
+        ByteBuffer buffer = out.reserve(length + 2);
+        if (quoted) buffer.put((byte) '"');
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) name.charAt(i));
+        }
+        if (quoted) buffer.put((byte) '"');
+        return true;
+    }
+
+    /**
+     * Writes an amount in cents with exactly two decimals, like {@link Money#toString()}.
+     *
+     * @param buffer The buffer, with room for the text.
+     * @param cents  The amount.
+     */
+    private static void putMoney(ByteBuffer buffer, long cents) {
+        if (cents < 0) {
+            buffer.put((byte) '-');
+            cents = -cents;
+        }
+        putDigits(buffer, cents / 100);
+        int fraction = (int) (cents % 100);
+        buffer.put((byte) '.').put((byte) ('0' + fraction / 10)).put((byte) ('0' + fraction % 10));
+    }
+
+    /**
+     * Writes a non-negative number as decimal digits.
+     *
+     * @param buffer The buffer, with room for the digits.
+     * @param value  The value.
+     */
+    private static void putDigits(ByteBuffer buffer, long value) {
+        long divisor = 1;
+        while (value / divisor >= 10) divisor *= 10;
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Quotes a CSV field if it holds a comma, quote, line break, or leading or trailing space.
+     *
+     * @param text The field.
+     * @return The field as it goes in the file.
+     */
+    private static String csv(String text) {
+        boolean quote = !text.isEmpty() && (text.charAt(0) == ' ' || text.charAt(text.length() - 1) == ' ');
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? '"' + text.replace("\"", "\"\"") + '"' : text;
+    }
+
+    /**
+     * Writes a string as a quoted JSON string.
+     *
+     * @param text The string, or null.
+     * @return The JSON text.
+     */
+    private static String json(String text) {
+        if (text == null) return "null";
+        StringBuilder out = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+                }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    /**
+     * Encodes the names of enum constants.
+     *
+     * @param constants The constants.
+     * @return Their names as bytes, by ordinal.
+     */
+    private static byte[][] names(Enum<?>[] constants) {
+        byte[][] names = new byte[constants.length][];
+        for (Enum<?> constant : constants) {
+            names[constant.ordinal()] = ascii(constant.name());
+        }
+        return names;
+    }
+
+    /**
+     * Encodes text known to be ASCII.
+     *
+     * @param text The text.
+     * @return The bytes.
+     */
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Encodes text as UTF-8.
+     *
+     * @param text The text.
+     * @return The bytes.
+     */
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ * InventoryStore.java
+ *
+ * Durable storage for a {@link TradingCardInventorySystem} in one directory, built from a
+ * write-ahead log and periodic checkpoints. Every operation is appended to the current log segment
+ * by an {@link EventLog}, which syncs it to disk in group-commit batches. A background checkpointer
+ * regularly writes the whole inventory as a {@link SnapshotFile} and deletes the log segments the
+ * snapshot covers, so the log never grows without bound and recovery only replays its tail.
+ *
+ * The directory holds {@code checkpoint-N.snapshot} and {@code wal-N.log} files. A checkpoint
+ * numbered N holds the state right before the first record of segment N. A checkpoint is taken by
+ * rotating to a new segment while no operation is in progress, capturing the state at that same
+ * instant, and saving it. Only once the new checkpoint is on disk are files deleted, and then only
+ * those older than the previous checkpoint: the previous checkpoint and every segment after it are
+ * kept until the next checkpoint is saved. A crash at any point, or a newest checkpoint that turns
+ * out to be unreadable, therefore still leaves a checkpoint with every segment after it.
+ *
+ * On open, the newest readable checkpoint is loaded and the segments from its number onward are
+ * replayed in order. If the segments after it are not all there, or no checkpoint can be read and
+ * the log no longer starts at the first segment, opening fails rather than recovering only part of
+ * the inventory. Recovery time is bounded by the checkpoint thresholds: normally at most one
+ * interval's or {@code checkpointLogBytes} worth of log is replayed, twice that when falling back
+ * to the previous checkpoint.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import model.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log plus checkpoints for one inventory.
+ */
+public class InventoryStore implements Closeable {
+
+    /**
+     * Tuning for durability and recovery time.
+     *
+     * @param flushIntervalMillis      Longest time a record waits in memory before being synced.
+     * @param batchBytes               Buffered bytes that start a sync before the interval is up.
+     * @param checkpointIntervalMillis Longest time between checkpoints while the log is growing.
+     * @param checkpointLogBytes       Log size that starts a checkpoint before the interval is up.
+     */
+    public record Settings(long flushIntervalMillis, int batchBytes,
+                           long checkpointIntervalMillis, long checkpointLogBytes) {
+
+        /** Sync every 50 ms or 64 KiB; checkpoint every 5 minutes or 16 MiB of log. */
+        public static final Settings DEFAULTS = new Settings(EventLog.DEFAULT_FLUSH_INTERVAL_MILLIS,
+                                                             EventLog.DEFAULT_BATCH_BYTES,
+                                                             5 * 60 * 1000, 16L << 20);
+
+        /**
+         * Validates the settings.
+         *
+         * @throws IllegalArgumentException If any value is below 1.
+         */
+        public Settings {
+            if (flushIntervalMillis < 1 || batchBytes < 1 || checkpointIntervalMillis < 1 || checkpointLogBytes < 1) {
+                throw new IllegalArgumentException("Store settings must all be at least 1.");
+            }
+        }
+    }
+
+    /**
+     * What was recovered when the store was opened.
+     *
+     * @param checkpoint The number of the checkpoint loaded, or 0 if none.
+     * @param segments   The number of log segments replayed.
+     * @param events     The number of operations replayed.
+     * @param rejected   The number of replayed operations the inventory refused.
+     * @param nanos      The time recovery took.
+     */
+    public record Recovery(long checkpoint, int segments, long events, long rejected, long nanos) {
+    }
+
+    /** How often the checkpointer checks its thresholds. */
+    private static final long CHECK_PERIOD_MILLIS = 1000;
+
+    /** The directory holding the files. */
+    private final Path directory;
+
+    /** The system being stored. */
+    private final TradingCardInventorySystem tcis;
+
+    /** Tuning. */
+    private final Settings settings;
+
+    /** What was recovered on open. */
+    private final Recovery recovery;
+
+    /** The log, appending to segment {@link #segment}. */
+    private final EventLog log;
+
+    /** Number of the segment being appended to; guarded by this. */
+    private long segment;
+
+    /** Number of the newest checkpoint on disk, or 0 if none; guarded by this. */
+    private long checkpointNumber;
+
+    /** When the last checkpoint finished, from {@link System#nanoTime()}; guarded by this. */
+    private long lastCheckpoint;
+
+    /** True once closed; guarded by this. */
+    private boolean closed;
+
+    /** Runs the background checkpoints. */
+    private final ScheduledExecutorService checkpointer;
+
+    /**
+     * Constructs a store around a recovered system and its open log.
+     *
+     * @param directory The directory.
+     * @param tcis      The system.
+     * @param settings  Tuning.
+     * @param log       The open log.
+     * @param segment   The segment the log appends to.
+     * @param recovery  What was recovered.
+     */
+    private InventoryStore(Path directory, TradingCardInventorySystem tcis, Settings settings,
+                           EventLog log, long segment, Recovery recovery) {
+        this.checkpointNumber = recovery.checkpoint();
+        this.directory = directory;
+        this.tcis = tcis;
+        this.settings = settings;
+        this.log = log;
+        this.segment = segment;
+        this.recovery = recovery;
+        this.lastCheckpoint = System.nanoTime();
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointIfDue, CHECK_PERIOD_MILLIS, CHECK_PERIOD_MILLIS,
+                                            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a store with the default settings. See {@link #open(Path, TradingCardInventorySystem, Settings)}.
+     *
+     * @param directory The directory, created if missing.
+     * @param tcis      A freshly constructed system to recover into.
+     * @return The open store.
+     * @throws IOException If the files cannot be read or written.
+     */
+    public static InventoryStore open(Path directory, TradingCardInventorySystem tcis) throws IOException {
+        return open(directory, tcis, Settings.DEFAULTS);
+    }
+
+    /**
+     * Opens a store: loads the newest checkpoint, replays the log segments after it, and attaches
+     * the log so every later operation is recorded.
+     *
+     * @param directory The directory, created if missing.
+     * @param tcis      A freshly constructed system to recover into.
+     * @param settings  Tuning.
+     * @return The open store.
+     * @throws IOException If the files cannot be read or written, or the log segments a recovery needs
+     *                     are missing.
+     */
+    public static InventoryStore open(Path directory, TradingCardInventorySystem tcis, Settings settings)
+            throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+
+        long checkpoint = 0;
+        long previous = 0;
+        List<Long> checkpoints = numbered(directory, "checkpoint-", ".snapshot");
+        for (int i = checkpoints.size() - 1; i >= 0 && checkpoint == 0; i--) {
+            try {
+                SnapshotFile.open(checkpointPath(directory, checkpoints.get(i)), tcis.getCatalog()).loadInto(tcis);
+                checkpoint = checkpoints.get(i);
+                previous = i > 0 ? checkpoints.get(i - 1) : 0;
+            } catch (IOException damaged) {
+                // Fall back to an older checkpoint and replay more of the log.
+            }
+        }
+
+        List<Long> segments = new ArrayList<>();
+        for (long number : numbered(directory, "wal-", ".log")) {
+            if (number >= checkpoint) segments.add(number);
+        }
+        // Checkpoint N is the state before segment N, and segment 1 starts from an empty inventory.
+        if (checkpoint == 0 && !checkpoints.isEmpty() && (segments.isEmpty() || segments.get(0) != 1)) {
+            throw new IOException("No checkpoint in " + directory + " can be read, and the log does not "
+                                  + "go back far enough to recover without one.");
+        }
+        long expected = Math.max(checkpoint, 1);
+        for (long number : segments) {
+            if (number != expected) {
+                throw new IOException("Log segment " + segmentPath(directory, expected).getFileName()
+                                      + " is missing from " + directory + ".");
+            }
+            expected++;
+        }
+        long current = segments.isEmpty() ? Math.max(checkpoint, 1) : segments.get(segments.size() - 1);
+
+        long events = 0;
+        long rejected = 0;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, segments.get(i)), StandardOpenOption.READ)) {
+                EventReplayer.Result replay = EventReplayer.replay(channel, tcis);
+                events += replay.events();
+                rejected += replay.rejected();
+            }
+        }
+        EventLog log = EventLog.open(segmentPath(directory, current), tcis,
+                                     settings.flushIntervalMillis(), settings.batchBytes());
+        events += log.getReplay().events();
+        rejected += log.getReplay().rejected();
+
+        Recovery recovery = new Recovery(checkpoint, Math.max(segments.size(), 1), events, rejected,
+                                         System.nanoTime() - start);
+        InventoryStore store = new InventoryStore(directory, tcis, settings, log, current, recovery);
+        store.deleteBefore(previous);
+        return store;
+    }
+
+    /**
+     * Returns what was recovered when the store was opened.
+     *
+     * @return The recovery report.
+     */
+    public Recovery getRecovery() {
+        return recovery;
+    }
+
+    /**
+     * Returns the log the store appends to.
+     *
+     * @return The event log.
+     */
+    public EventLog getLog() {
+        return log;
+    }
+
+    /**
+     * Writes a checkpoint now: cuts the log at the current state, saves that state, and once it is on
+     * disk deletes the files older than the previous checkpoint, which is kept as a fallback.
+     * Operations are held off only while the log is cut and the state captured; saving runs
+     * alongside them.
+     *
+     * @throws IOException If the checkpoint cannot be written; the previous one and the whole log
+     *                     are then kept.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (closed) {
+            throw new IOException("Store is closed.");
+        }
+        long next = segment + 1;
+        InventorySnapshot state;
+        try {
+            state = tcis.whileQuiescent(() -> {
+                try {
+                    log.rotate(segmentPath(directory, next));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return tcis.snapshotState();
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        segment = next;
+
+        SnapshotFile.save(state, checkpointPath(directory, next));
+        long previous = checkpointNumber;
+        checkpointNumber = next;
+        lastCheckpoint = System.nanoTime();
+        deleteBefore(previous);
+    }
+
+    /**
+     * Writes a checkpoint if the log has grown past its size limit, or has any records and the
+     * checkpoint interval has passed. Errors are left for the next explicit checkpoint or close.
+     */
+    private synchronized void checkpointIfDue() {
+        if (closed) return;
+        long size = log.size();
+        long age = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastCheckpoint);
+        if (size >= settings.checkpointLogBytes()
+                || (size > EventLog.HEADER_SIZE && age >= settings.checkpointIntervalMillis())) {
+            try {
+                checkpoint();
+            } catch (IOException ignored) {
+                // The log still holds everything; try again on the next round.
+            }
+        }
+    }
+
+    /**
+     * Stops checkpointing and closes the log, writing everything still buffered.
+     *
+     * @throws IOException If the last records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        checkpointer.shutdown();
+        log.close();
+    }
+
+    /**
+     * Deletes checkpoints and log segments numbered below a checkpoint that is kept, so recovery can
+     * still start from it.
+     *
+     * @param checkpoint The checkpoint number, or 0 to delete nothing.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private void deleteBefore(long checkpoint) throws IOException {
+        for (long number : numbered(directory, "wal-", ".log")) {
+            if (number < checkpoint) Files.deleteIfExists(segmentPath(directory, number));
+        }
+        for (long number : numbered(directory, "checkpoint-", ".snapshot")) {
+            if (number < checkpoint) Files.deleteIfExists(checkpointPath(directory, number));
+        }
+    }
+
+    /**
+     * Lists the numbers of the files in a directory named prefix + number + suffix, in ascending order.
+     *
+     * @param directory The directory.
+     * @param prefix    The name prefix.
+     * @param suffix    The name suffix.
+     * @return The numbers found.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private static List<Long> numbered(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                    } catch (NumberFormatException notOurs) {
+                        // Some other file; leave it alone.
+                    }
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /**
+     * Returns the path of a log segment.
+     *
+     * @param directory The directory.
+     * @param number    The segment number.
+     * @return The path.
+     */
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("wal-%06d.log", number));
+    }
+
+    /**
+     * Returns the path of a checkpoint.
+     *
+     * @param directory The directory.
+     * @param number    The checkpoint number.
+     * @return The path.
+     */
+    private static Path checkpointPath(Path directory, long number) {
+        return directory.resolve(String.format("checkpoint-%06d.snapshot", number));
+    }
+}
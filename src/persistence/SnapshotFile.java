@@ -0,0 +1,504 @@
+/**
+ * SnapshotFile.java
+ *
+ * Compact, versioned binary file holding a whole {@link InventorySnapshot}: the collection, every
+ * binder and deck, and the money balance. Card names and container names are stored once each in a
+ * string dictionary, every distinct card once in a fixed-width card table, and container contents as
+ * (card index, count) pairs sorted by index, with the indexes delta-coded and everything written as
+ * varints. A large inventory therefore costs a few bytes per distinct card it holds.
+ *
+ * Saving streams the file through a {@link ChannelOutput} into a temporary file, forces it to disk,
+ * moves it over the old one and forces the directory, so a crash while saving leaves the previous
+ * file intact and a save that returned survives a crash. Opening
+ * maps the file with a {@link MappedByteBuffer} and checks its checksum; nothing else is decoded up
+ * front. Strings and {@link Card} objects are materialized only when first touched, and the fixed-width
+ * tables make any of them reachable without scanning.
+ *
+ * File layout (big-endian fixed-width fields, then varints):
+ * <pre>
+ * header      magic, version, 3 reserved bytes, money cents (long),
+ *             string count, card count, container count (ints)
+ * strings     (string count + 1) int offsets into the blob, then the UTF-8 blob
+ * cards       per card: name string id (int), rarity (byte), variant + 1 or 0 (byte), base cents (long)
+ * collection  entry count, then (card index delta, count) pairs
+ * containers  per container: name string id, kind (0 binder, 1 deck, 2 binder with its own
+ *             admission rules), type, admission mask (kind 2 only), binder price, entries
+ * trailer     CRC32C of everything before it (int)
+ * </pre>
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import enums.*;
+import model.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * A memory-mapped inventory snapshot file with lazily materialized cards.
+ */
+public final class SnapshotFile {
+
+    /** Identifies a snapshot file ("TCSS"). */
+    static final int MAGIC = 0x54435353;
+
+    /** Format version written after the magic number. */
+    static final byte VERSION = 1;
+
+    /** Size of the fixed header in bytes. */
+    static final int HEADER_SIZE = 28;
+
+    /** Size of one card table record in bytes. */
+    static final int CARD_RECORD_SIZE = 14;
+
+    /** Size of the checksum at the end of the file. */
+    static final int TRAILER_SIZE = 4;
+
+    /** The mapped file. */
+    private final MappedByteBuffer map;
+
+    /** The catalog cards are interned into when materialized. */
+    private final CardCatalog catalog;
+
+    /** The money balance in cents. */
+    private final long moneyCents;
+
+    /** Decoded strings, null until first used. */
+    private final String[] strings;
+
+    /** Materialized cards, null until first used. */
+    private final Card[] cards;
+
+    /** Offset of the string offset table. */
+    private final int stringOffsetsAt;
+
+    /** Offset of the string blob. */
+    private final int blobAt;
+
+    /** Offset of the card table. */
+    private final int cardsAt;
+
+    /** Offset of the collection's contents. */
+    private final int contentsAt;
+
+    /** Number of binders and decks. */
+    private final int containerCount;
+
+    /** Number of cards materialized so far. */
+    private int materialized;
+
+    /**
+     * Constructs a view over a mapped file whose checksum has been verified.
+     *
+     * @param map     The mapped file.
+     * @param catalog The catalog to intern cards into.
+     * @throws IOException If the header or table sizes are inconsistent with the file size.
+     */
+    private SnapshotFile(MappedByteBuffer map, CardCatalog catalog) throws IOException {
+        this.map = map;
+        this.catalog = catalog;
+
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not an inventory snapshot.");
+        }
+        if (map.get(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + map.get(4) + ".");
+        }
+        this.moneyCents = map.getLong(8);
+        int stringCount = map.getInt(16);
+        int cardCount = map.getInt(20);
+        this.containerCount = map.getInt(24);
+
+        long end = map.capacity() - TRAILER_SIZE;
+        long offsetsAt = HEADER_SIZE;
+        long blob = offsetsAt + 4L * (stringCount + 1L);
+        if (stringCount < 0 || cardCount < 0 || containerCount < 0 || blob > end) {
+            throw new IOException("Corrupt snapshot header.");
+        }
+        long table = blob + map.getInt((int) blob - 4);
+        long contents = table + (long) CARD_RECORD_SIZE * cardCount;
+        if (table < blob || contents > end) {
+            throw new IOException("Corrupt snapshot header.");
+        }
+
+        this.stringOffsetsAt = (int) offsetsAt;
+        this.blobAt = (int) blob;
+        this.cardsAt = (int) table;
+        this.contentsAt = (int) contents;
+        this.strings = new String[stringCount];
+        this.cards = new Card[cardCount];
+    }
+
+    /**
+     * Writes a snapshot to a file, replacing it only once the new file is completely on disk.
+     * The rename is forced to disk as well before this returns.
+     *
+     * @param state The state to save.
+     * @param path  The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(InventorySnapshot state, Path path) throws IOException {
+        Encoder encoder = new Encoder();
+        long[] collection = encoder.entries(state.getCollection());
+        List<long[]> contents = new ArrayList<>();
+        for (InventorySnapshot.ContainerState container : state.getContainers()) {
+            encoder.string(container.name());
+            contents.add(encoder.entries(container.cards()));
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelOutput out = new ChannelOutput(channel);
+            encoder.writeTables(out, state.getMoney().getCents(), state.getContainers().size());
+            writeEntries(out, collection);
+            for (int i = 0; i < contents.size(); i++) {
+                InventorySnapshot.ContainerState container = state.getContainers().get(i);
+                out.putInt(encoder.string(container.name()));
+                if (container.binderType() != null) {
+                    AdmissionTable admission = container.admission();
+                    boolean custom = !admission.equals(AdmissionTable.forType(container.binderType()));
+                    out.reserve(2).put((byte) (custom ? 2 : 0)).put((byte) container.binderType().ordinal());
+                    if (custom) {
+                        out.putInt(admission.getMask());
+                    }
+                    out.putSignedLong(container.sellingPrice().getCents());
+                } else {
+                    out.reserve(2).put((byte) 1).put((byte) container.deckType().ordinal());
+                }
+                writeEntries(out, contents.get(i));
+            }
+            int crc = out.finish();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).putInt(crc).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces a directory's entries to disk, so files just created, renamed or deleted in it stay
+     * that way after a crash. Does nothing where directories cannot be opened, such as on Windows,
+     * which makes directory changes durable on its own.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory was opened but could not be forced.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException unsupported) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes sorted (card index, count) pairs with delta-coded indexes.
+     *
+     * @param out     The output.
+     * @param entries Packed pairs sorted by card index.
+     * @throws IOException If the write fails.
+     */
+    private static void writeEntries(ChannelOutput out, long[] entries) throws IOException {
+        out.putInt(entries.length);
+        int previous = 0;
+        for (long entry : entries) {
+            int index = (int) (entry >>> 32);
+            out.putInt(index - previous);
+            out.putInt((int) entry);
+            previous = index;
+        }
+    }
+
+    /**
+     * Maps a snapshot file and verifies its checksum. Cards are interned into the given catalog as
+     * they are touched.
+     *
+     * @param path    The file to open.
+     * @param catalog The catalog of the system the snapshot will be used with.
+     * @return The opened snapshot.
+     * @throws IOException If the file cannot be read, is not a snapshot, or is damaged.
+     */
+    public static SnapshotFile open(Path path, CardCatalog catalog) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an inventory snapshot: " + path);
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int end = map.capacity() - TRAILER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(map.slice(0, end));
+        if ((int) crc.getValue() != map.getInt(end)) {
+            throw new IOException("Snapshot is damaged (checksum mismatch): " + path);
+        }
+        return new SnapshotFile(map, catalog);
+    }
+
+    /**
+     * Returns the money balance.
+     *
+     * @return The balance.
+     */
+    public Money getMoney() {
+        return Money.ofCents(moneyCents);
+    }
+
+    /**
+     * Returns the number of distinct cards in the file.
+     *
+     * @return The card count.
+     */
+    public int getCardCount() {
+        return cards.length;
+    }
+
+    /**
+     * Returns the number of binders and decks in the file.
+     *
+     * @return The container count.
+     */
+    public int getContainerCount() {
+        return containerCount;
+    }
+
+    /**
+     * Returns the number of cards materialized so far.
+     *
+     * @return The materialized card count.
+     */
+    public synchronized int getMaterializedCount() {
+        return materialized;
+    }
+
+    /**
+     * Returns a card from the card table, materializing and interning it on first use.
+     *
+     * @param index The card index, from 0 to {@code getCardCount() - 1}.
+     * @return The canonical card.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    public synchronized Card getCard(int index) {
+        Card card = cards[index];
+        if (card == null) {
+            int at = cardsAt + index * CARD_RECORD_SIZE;
+            String name = string(map.getInt(at));
+            Rarity rarity = Rarity.values()[map.get(at + 4)];
+            int variant = map.get(at + 5);
+            Money baseValue = Money.ofCents(map.getLong(at + 6));
+            card = catalog.intern(name, rarity, variant == 0 ? null : Variant.values()[variant - 1], baseValue);
+            cards[index] = card;
+            materialized++;
+        }
+        return card;
+    }
+
+    /**
+     * Decodes the whole inventory. Only cards that some container actually holds are materialized.
+     *
+     * @return The saved state.
+     * @throws IOException If the contents are damaged.
+     */
+    public synchronized InventorySnapshot toSnapshot() throws IOException {
+        ByteBuffer in = map.duplicate().position(contentsAt).limit(map.capacity() - TRAILER_SIZE);
+        try {
+            PersistentCardMap collection = readEntries(in);
+            List<InventorySnapshot.ContainerState> containers = new ArrayList<>(containerCount);
+            for (int i = 0; i < containerCount; i++) {
+                String name = string(Varints.getInt(in));
+                byte kind = in.get();
+                byte type = in.get();
+                if (kind == 0 || kind == 2) {
+                    BinderType binderType = BinderType.values()[type];
+                    AdmissionTable admission = kind == 2
+                        ? AdmissionTable.fromMask(Varints.getInt(in))
+                        : AdmissionTable.forType(binderType);
+                    Money price = Money.ofCents(Varints.getSignedLong(in));
+                    containers.add(new InventorySnapshot.ContainerState(
+                        name, binderType, null, readEntries(in), price, admission));
+                } else {
+                    containers.add(new InventorySnapshot.ContainerState(
+                        name, null, DeckType.values()[type], readEntries(in), null));
+                }
+            }
+            return InventorySnapshot.of(collection, containers, getMoney());
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IOException("Snapshot contents are damaged.", ex);
+        }
+    }
+
+    /**
+     * Replaces a system's whole inventory with the saved one.
+     *
+     * @param tcis The system, whose catalog this file was opened with.
+     * @throws IOException If the contents are damaged; the system is then unchanged.
+     */
+    public void loadInto(TradingCardInventorySystem tcis) throws IOException {
+        tcis.restore(toSnapshot());
+    }
+
+    /**
+     * Decodes a list of (card index delta, count) pairs.
+     *
+     * @param in The contents, positioned at the entry count.
+     * @return The cards and counts.
+     */
+    private PersistentCardMap readEntries(ByteBuffer in) {
+        int size = Varints.getInt(in);
+        PersistentCardMap.Builder entries = new PersistentCardMap.Builder(size);
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            index += Varints.getInt(in);
+            entries.put(getCard(index), Varints.getInt(in));
+        }
+        return entries.build();
+    }
+
+    /**
+     * Returns a string from the dictionary, decoding it on first use.
+     *
+     * @param id The string id.
+     * @return The string.
+     */
+    private String string(int id) {
+        String value = strings[id];
+        if (value == null) {
+            int start = map.getInt(stringOffsetsAt + 4 * id);
+            int end = map.getInt(stringOffsetsAt + 4 * (id + 1));
+            byte[] utf8 = new byte[end - start];
+            map.get(blobAt + start, utf8);
+            value = new String(utf8, StandardCharsets.UTF_8);
+            strings[id] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Collects the string dictionary and card table while a snapshot is being saved.
+     */
+    private static final class Encoder {
+
+        /** String ids by string. */
+        private final Map<String, Integer> stringIds = new HashMap<>();
+
+        /** Strings in id order. */
+        private final List<String> strings = new ArrayList<>();
+
+        /** Card indexes by card instance. */
+        private final Map<Card, Integer> cardIndexes = new IdentityHashMap<>();
+
+        /** Cards in index order. */
+        private final List<Card> cards = new ArrayList<>();
+
+        /**
+         * Returns a string's id, adding it to the dictionary if new.
+         *
+         * @param value The string.
+         * @return Its id.
+         */
+        int string(String value) {
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                stringIds.put(value, id);
+                strings.add(value);
+            }
+            return id;
+        }
+
+        /**
+         * Returns a card map as packed (card index, count) pairs sorted by index,
+         * adding new cards to the card table.
+         *
+         * @param map The card map.
+         * @return The packed pairs.
+         */
+        long[] entries(PersistentCardMap map) {
+            long[] entries = new long[map.size()];
+            int[] next = { 0 };
+            map.forEach((card, count) -> {
+                Integer index = cardIndexes.get(card);
+                if (index == null) {
+                    index = cards.size();
+                    cardIndexes.put(card, index);
+                    cards.add(card);
+                    string(card.getName());
+                }
+                entries[next[0]++] = (long) index << 32 | count;
+            });
+            Arrays.sort(entries);
+            return entries;
+        }
+
+        /**
+         * Writes the header, the string dictionary and the card table.
+         *
+         * @param out            The output.
+         * @param moneyCents     The money balance in cents.
+         * @param containerCount The number of binders and decks.
+         * @throws IOException If the write fails.
+         */
+        void writeTables(ChannelOutput out, long moneyCents, int containerCount) throws IOException {
+            out.reserve(HEADER_SIZE)
+               .putInt(MAGIC).put(VERSION).put((byte) 0).put((byte) 0).put((byte) 0)
+               .putLong(moneyCents)
+               .putInt(strings.size())
+               .putInt(cards.size())
+               .putInt(containerCount);
+
+            byte[][] utf8 = new byte[strings.size()][];
+            int offset = 0;
+            out.reserve(4).putInt(0);
+            for (int i = 0; i < utf8.length; i++) {
+                utf8[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                offset = Math.addExact(offset, utf8[i].length);
+                out.reserve(4).putInt(offset);
+            }
+            for (byte[] bytes : utf8) {
+                out.put(bytes);
+            }
+
+            for (Card card : cards) {
+                out.reserve(CARD_RECORD_SIZE)
+                   .putInt(stringIds.get(card.getName()))
+                   .put((byte) card.getRarity().ordinal())
+                   .put((byte) (card.getVariant() == null ? 0 : card.getVariant().ordinal() + 1))
+                   .putLong(card.getBaseValue().getCents());
+            }
+        }
+    }
+}
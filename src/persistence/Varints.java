@@ -0,0 +1,188 @@
+/**
+ * Varints.java
+ *
+ * Variable-length integer encoding shared by the inventory's binary files. A value is written seven
+ * bits at a time, low bits first, with the top bit of each byte set while more bytes follow, so
+ * small counts and ids take one byte instead of four. Signed values such as money amounts are
+ * zigzag-encoded first, which keeps small negative numbers short too.
+ *
+ * Strings are written as a varint byte length followed by their UTF-8 bytes. An optional string
+ * stores its length plus one, with 0 standing for null.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package persistence;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Static helpers for reading and writing varints and strings in byte buffers.
+ */
+final class Varints {
+
+    /** Largest number of bytes an encoded int can take. */
+    static final int MAX_INT_BYTES = 5;
+
+    /** Largest number of bytes an encoded long can take. */
+    static final int MAX_LONG_BYTES = 10;
+
+    /**
+     * Not instantiable.
+     */
+    private Varints() {
+    }
+
+    /**
+     * Writes an int as an unsigned varint.
+     *
+     * @param out   The buffer, with at least {@link #MAX_INT_BYTES} bytes remaining.
+     * @param value The value; negative values take the full five bytes.
+     */
+    static void putInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a long as an unsigned varint.
+     *
+     * @param out   The buffer, with at least {@link #MAX_LONG_BYTES} bytes remaining.
+     * @param value The value; negative values take the full ten bytes.
+     */
+    static void putLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a signed long, zigzag-encoded so that small magnitudes stay short.
+     *
+     * @param out   The buffer, with at least {@link #MAX_LONG_BYTES} bytes remaining.
+     * @param value The value.
+     */
+    static void putSignedLong(ByteBuffer out, long value) {
+        putLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads an unsigned varint int.
+     *
+     * @param in The buffer.
+     * @return The value.
+     * @throws BufferUnderflowException If the buffer ends inside the value.
+     * @throws IllegalArgumentException If the value is longer than five bytes.
+     */
+    static int getInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    /**
+     * Reads an unsigned varint long.
+     *
+     * @param in The buffer.
+     * @return The value.
+     * @throws BufferUnderflowException If the buffer ends inside the value.
+     * @throws IllegalArgumentException If the value is longer than ten bytes.
+     */
+    static long getLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    /**
+     * Reads a zigzag-encoded signed long.
+     *
+     * @param in The buffer.
+     * @return The value.
+     */
+    static long getSignedLong(ByteBuffer in) {
+        long raw = getLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Returns the number of bytes a string takes when written with {@link #putString}.
+     *
+     * @param utf8 The string's UTF-8 bytes, or null.
+     * @return The largest encoded size.
+     */
+    static int sizeOf(byte[] utf8) {
+        return MAX_INT_BYTES + (utf8 == null ? 0 : utf8.length);
+    }
+
+    /**
+     * Writes a string that may be null.
+     *
+     * @param out  The buffer, with at least {@link #sizeOf(byte[])} bytes remaining.
+     * @param utf8 The string's UTF-8 bytes, or null.
+     */
+    static void putString(ByteBuffer out, byte[] utf8) {
+        if (utf8 == null) {
+            putInt(out, 0);
+            return;
+        }
+        putInt(out, utf8.length + 1);
+        out.put(utf8);
+    }
+
+    /**
+     * Reads a string written with {@link #putString}.
+     *
+     * @param in The buffer.
+     * @return The string, or null.
+     * @throws BufferUnderflowException If the buffer ends inside the string.
+     */
+    static String getString(ByteBuffer in) {
+        int length = getInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes a string to UTF-8 for {@link #putString}.
+     *
+     * @param value The string, or null.
+     * @return Its bytes, or null.
+     */
+    static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * InventoryStressCheck.java
+ *
+ * A self-checking stress run of the model's trickiest parts, started from the command line with
+ * {@code java stress.InventoryStressCheck}. It checks three things against simple reference models:
+ * that {@link CardCountMap} stays correct through long runs of insertions and backward-shift
+ * deletions, that a failed {@link InventoryTransaction} leaves cards, money and the indexes exactly
+ * as they were, and that many threads moving cards back and forth between the same two containers
+ * neither deadlock nor lose or duplicate a copy.
+ *
+ * Each check throws an {@link AssertionError} describing the first mismatch it finds, so it does not
+ * depend on assertions being enabled. The run prints one line per check and exits normally only if
+ * every check passed.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package stress;
+
+import enums.*;
+import model.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command-line stress check of the model.
+ */
+public class InventoryStressCheck {
+
+    /** Seed for every random choice, so a failure can be replayed. */
+    private static final long SEED = 20240501L;
+
+    /** Threads moving cards at the same time. */
+    private static final int THREADS = 8;
+
+    /** Moves each thread makes. */
+    private static final int MOVES_PER_THREAD = 20_000;
+
+    /** Longest time the concurrent moves may take before they count as deadlocked. */
+    private static final long MOVE_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Runs every check.
+     *
+     * @param args command-line arguments (not used)
+     * @throws Exception If a check fails or is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        checkCountMapRemoval();
+        System.out.println("CardCountMap insertions and removals: ok");
+        checkRollback();
+        System.out.println("Transaction rollback: ok");
+        checkConcurrentMoves();
+        System.out.println("Concurrent moves between two containers: ok");
+    }
+
+    /**
+     * Inserts, updates and removes cards at random in a small {@link CardCountMap}, so probe runs
+     * are long and wrap around the table, and compares every lookup with a {@link HashMap}.
+     */
+    private static void checkCountMapRemoval() {
+        Random random = new Random(SEED);
+        List<Card> pool = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            pool.add(new Card("Card " + i, Rarity.COMMON, Variant.NORMAL, Money.ofCents(100)));
+        }
+
+        CardCountMap map = new CardCountMap(4);
+        Map<Card, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 50_000; step++) {
+            Card card = pool.get(random.nextInt(pool.size()));
+            if (random.nextInt(3) == 0) {
+                int removed = map.remove(card);
+                Integer had = expected.remove(card);
+                check(removed == (had == null ? -1 : had), "remove returned " + removed + " for " + card.getName());
+            } else {
+                int delta = 1 + random.nextInt(5);
+                map.addTo(card, delta);
+                expected.merge(card, delta, Integer::sum);
+            }
+
+            if (step % 97 == 0) {
+                check(map.size() == expected.size(), "size " + map.size() + " instead of " + expected.size());
+                for (Card each : pool) {
+                    int count = expected.getOrDefault(each, 0);
+                    check(map.get(each) == count, each.getName() + " has " + map.get(each) + " instead of " + count);
+                    check(map.containsKey(each) == expected.containsKey(each), each.getName() + " presence is wrong");
+                }
+            }
+        }
+
+        for (Card card : pool) {
+            map.remove(card);
+        }
+        check(map.isEmpty(), "map not empty after removing every card");
+        check(map.nextSlot(-1) == -1, "an emptied map still has an occupied slot");
+    }
+
+    /**
+     * Runs transactions that fail part way through and checks that each left the collection,
+     * a binder, the balance and both indexes untouched.
+     */
+    private static void checkRollback() {
+        TradingCardInventorySystem tcis = new TradingCardInventorySystem();
+        Card dragon = tcis.getCatalog().intern("Dragon", Rarity.RARE, Variant.FULL_ART, Money.ofCents(1250));
+        Card goblin = tcis.getCatalog().intern("Goblin", Rarity.COMMON, Variant.NORMAL, Money.ofCents(40));
+        tcis.addCards(dragon, 3);
+        tcis.addCards(goblin, 5);
+        tcis.addMoney(Money.ofCents(500));
+        tcis.createBinder("Trades", BinderType.NON_CURATED);
+        Binder binder = (Binder) tcis.findContainer("Trades");
+        tcis.moveCards(tcis.getCollection(), binder, Map.of(goblin, 2));
+
+        String before = describe(tcis);
+
+        // Fails on the last step, after a move, an add and a payment were applied.
+        expectRefused(() -> tcis.runTransaction(tx -> tx.move(tcis.getCollection(), binder, dragon, 1)
+            .add(tcis.getCollection(), goblin, 4)
+            .addMoney(Money.ofCents(-100), "Rollback check")
+            .remove(tcis.getCollection(), dragon, 10)));
+        check(describe(tcis).equals(before), "a failed move and removal changed the inventory:\n"
+              + before + "\n" + describe(tcis));
+
+        // Fails on the balance, after cards were taken out of the binder.
+        expectRefused(() -> tcis.runTransaction(tx -> tx.remove(binder, goblin, 2)
+            .addMoney(Money.ofCents(-10_000), "Rollback check")));
+        check(describe(tcis).equals(before), "a failed payment changed the inventory:\n"
+              + before + "\n" + describe(tcis));
+    }
+
+    /**
+     * Moves cards between the collection and one binder in both directions from several threads at
+     * once, then checks that no copy was lost or duplicated and that both indexes agree with the
+     * containers.
+     *
+     * @throws Exception If a mover fails, the moves time out, or the thread is interrupted.
+     */
+    private static void checkConcurrentMoves() throws Exception {
+        TradingCardInventorySystem tcis = new TradingCardInventorySystem();
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Card card = tcis.getCatalog().intern("Card " + i, Rarity.UNCOMMON, Variant.NORMAL, Money.ofCents(100 + i));
+            tcis.addCards(card, 40);
+            cards.add(card);
+        }
+        tcis.createBinder("Shared", BinderType.NON_CURATED);
+        CardContainer collection = tcis.getCollection();
+        CardContainer binder = tcis.findContainer("Shared");
+        int total = tcis.getTotalCardCount();
+
+        AtomicInteger moved = new AtomicInteger();
+        ExecutorService movers = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(SEED + t);
+            results.add(movers.submit(() -> {
+                for (int i = 0; i < MOVES_PER_THREAD; i++) {
+                    boolean forward = random.nextBoolean();
+                    Card card = cards.get(random.nextInt(cards.size()));
+                    try {
+                        moved.addAndGet(tcis.moveCards(forward ? collection : binder, forward ? binder : collection,
+                                                       Map.of(card, 1 + random.nextInt(3))));
+                    } catch (IllegalStateException contended) {
+                        // Retries ran out under contention; nothing was changed.
+                    }
+                }
+                return null;
+            }));
+        }
+        movers.shutdown();
+        check(movers.awaitTermination(MOVE_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+              "moves did not finish within " + MOVE_TIMEOUT_SECONDS + " s; likely a deadlock");
+        for (Future<?> result : results) {
+            result.get();
+        }
+
+        check(moved.get() > 0, "no card was ever moved");
+        check(tcis.getTotalCardCount() == total,
+              "card total went from " + total + " to " + tcis.getTotalCardCount());
+        check(binder.getUniqueCards() <= binder.getCapacity(), "binder holds more cards than its capacity");
+        check(tcis.getValueIndex().totalCopies() == total,
+              "value index counts " + tcis.getValueIndex().totalCopies() + " copies instead of " + total);
+        for (Card card : cards) {
+            int copies = collection.getCardCount(card) + binder.getCardCount(card);
+            check(copies == 40, card.getName() + " has " + copies + " copies instead of 40");
+            for (LocationIndex.Location location : tcis.locate(card)) {
+                int actual = location.container().getCardCount(card);
+                check(location.count() == actual, "location index has " + location.count() + " of "
+                      + card.getName() + " in " + location.container().getName() + " instead of " + actual);
+            }
+        }
+    }
+
+    /**
+     * Describes the parts of an inventory a rollback must restore: every container's cards, the
+     * balance, and the value and location indexes.
+     *
+     * @param tcis The system.
+     * @return A description that is equal for equal states.
+     */
+    private static String describe(TradingCardInventorySystem tcis) {
+        StringBuilder text = new StringBuilder("money=").append(tcis.getMoney());
+        List<CardContainer> containers = new ArrayList<>();
+        containers.add(tcis.getCollection());
+        containers.addAll(tcis.getBinders());
+        containers.addAll(tcis.getDecks());
+        for (CardContainer container : containers) {
+            Map<String, Integer> cards = new TreeMap<>();
+            container.getCardsWithCounts().forEach((card, count) -> cards.put(card.getName(), count));
+            text.append(' ').append(container.getName()).append('=').append(cards);
+        }
+        for (Binder binder : tcis.getBinders()) {
+            text.append(' ').append(binder.getName()).append(" price=").append(binder.getSellingPrice());
+        }
+        for (ValueIndex.Entry entry : tcis.getValueIndex().top(tcis.getValueIndex().size())) {
+            text.append(" value:").append(entry.card().getName()).append('=').append(entry.copies());
+            for (LocationIndex.Location location : tcis.locate(entry.card())) {
+                text.append(" at:").append(location.container().getName()).append('=').append(location.count());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Runs an operation that must be refused because it breaks a rule.
+     *
+     * @param operation The operation.
+     */
+    private static void expectRefused(Runnable operation) {
+        try {
+            operation.run();
+        } catch (IllegalArgumentException refused) {
+            return;
+        }
+        throw new AssertionError("an operation that breaks a rule was accepted");
+    }
+
+    /**
+     * Fails the run if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message   What went wrong.
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * InventoryThroughput.java
+ *
+ * A command-line throughput run of the inventory under concurrent load, started with
+ * {@code java stress.InventoryThroughput [seconds per run]}. Each workload runs at 1, 2, 4, 8, 16
+ * and 32 threads, on a fresh inventory each time, and the operations completed per second are
+ * printed as one table row per thread count:
+ *
+ * - collection adds: every thread adds and removes copies in the collection, so all of them
+ *   contend for the collection's lock;
+ * - shared moves: every thread moves cards between the collection and a binder of its own, so
+ *   the collection is shared and the binders are not;
+ * - disjoint moves: every thread moves cards between two binders of its own, so no container lock
+ *   is shared and threads meet only at the commit gate and the system-wide indexes.
+ *
+ * The number of processors is printed first: threads beyond it can only show the cost of
+ * contention, not a speedup.
+ *
+ * @version 2.0
+ * @author Theodore Garcia
+ * @author Ronin Zerna
+ */
+
+package stress;
+
+import enums.*;
+import model.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Command-line throughput run of the inventory.
+ */
+public class InventoryThroughput {
+
+    /**
+     * One thread's share of a workload.
+     */
+    @FunctionalInterface
+    private interface Operation {
+
+        /**
+         * Performs one operation.
+         *
+         * @param random The thread's own random source.
+         */
+        void run(Random random);
+    }
+
+    /**
+     * The kinds of load measured.
+     */
+    private enum Workload {
+
+        /** Adds and removes copies in the collection from every thread. */
+        COLLECTION_ADDS("collection adds") {
+            @Override
+            Operation prepare(TradingCardInventorySystem tcis, List<Card> cards, int thread) {
+                return random -> {
+                    Card card = cards.get(random.nextInt(cards.size()));
+                    if (random.nextBoolean()) {
+                        tcis.addCards(card, 1);
+                    } else {
+                        tcis.removeCards(card, 1);
+                    }
+                };
+            }
+        },
+
+        /** Moves cards between the collection and a binder per thread. */
+        SHARED_MOVES("shared moves") {
+            @Override
+            Operation prepare(TradingCardInventorySystem tcis, List<Card> cards, int thread) {
+                tcis.createBinder("Shared " + thread, BinderType.NON_CURATED);
+                CardContainer collection = tcis.getCollection();
+                CardContainer binder = tcis.findContainer("Shared " + thread);
+                return random -> move(tcis, random.nextBoolean() ? collection : binder, collection, binder, cards, random);
+            }
+        },
+
+        /** Moves cards between two binders that belong to one thread only. */
+        DISJOINT_MOVES("disjoint moves") {
+            @Override
+            Operation prepare(TradingCardInventorySystem tcis, List<Card> cards, int thread) {
+                tcis.createBinder("Left " + thread, BinderType.NON_CURATED);
+                tcis.createBinder("Right " + thread, BinderType.NON_CURATED);
+                CardContainer left = tcis.findContainer("Left " + thread);
+                CardContainer right = tcis.findContainer("Right " + thread);
+                Map<Card, Integer> stock = new HashMap<>();
+                for (Card card : cards) {
+                    stock.put(card, COPIES_PER_BINDER);
+                }
+                tcis.moveCards(tcis.getCollection(), left, stock);
+                return random -> move(tcis, random.nextBoolean() ? left : right, left, right, cards, random);
+            }
+        };
+
+        /** The column heading. */
+        private final String title;
+
+        /**
+         * Constructs a workload.
+         *
+         * @param title The column heading.
+         */
+        Workload(String title) {
+            this.title = title;
+        }
+
+        /**
+         * Sets up one thread's containers and returns its operation.
+         *
+         * @param tcis   The system, whose collection holds every card.
+         * @param cards  The cards to work with.
+         * @param thread The thread number.
+         * @return The operation the thread repeats.
+         */
+        abstract Operation prepare(TradingCardInventorySystem tcis, List<Card> cards, int thread);
+
+        /**
+         * Moves one to three copies of a random card from one container of a pair to the other.
+         *
+         * @param tcis   The system.
+         * @param source The container to take from.
+         * @param a      One container of the pair.
+         * @param b      The other.
+         * @param cards  The cards to choose from.
+         * @param random The thread's random source.
+         */
+        private static void move(TradingCardInventorySystem tcis, CardContainer source, CardContainer a,
+                                 CardContainer b, List<Card> cards, Random random) {
+            Card card = cards.get(random.nextInt(cards.size()));
+            tcis.moveCards(source, source == a ? b : a, Map.of(card, 1 + random.nextInt(3)));
+        }
+    }
+
+    /** Thread counts measured, one table row each. */
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    /** Seed for every random choice, so runs are comparable. */
+    private static final long SEED = 20240501L;
+
+    /** Different cards in play; within a binder's capacity. */
+    private static final int CARDS = 12;
+
+    /** Copies of each card a binder starts with in the disjoint workload. */
+    private static final int COPIES_PER_BINDER = 20;
+
+    /** Copies of each card the collection starts with, on top of what the binders take. */
+    private static final int COLLECTION_COPIES = 1_000;
+
+    /** Default length of each measured run. */
+    private static final double DEFAULT_SECONDS = 1.0;
+
+    /** Shortest warm-up of each workload, per thread count warmed up. */
+    private static final long WARM_UP_NANOS = 2_000_000_000L;
+
+    /**
+     * Runs every workload at every thread count and prints the table.
+     *
+     * @param args optionally, the seconds each run lasts
+     * @throws InterruptedException If the run is interrupted.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_SECONDS;
+        long nanos = (long) (seconds * 1e9);
+
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors()
+                           + ", " + seconds + " s per run, operations per second");
+        StringBuilder heading = new StringBuilder(String.format("%8s", "threads"));
+        for (Workload workload : Workload.values()) {
+            // Unreported warm-up on one and on several threads, so the first row is not measuring the compiler.
+            measure(workload, 1, Math.max(nanos, WARM_UP_NANOS));
+            measure(workload, 4, Math.max(nanos, WARM_UP_NANOS));
+            heading.append(String.format("%18s", workload.title));
+        }
+        System.out.println(heading);
+
+        for (int threads : THREAD_COUNTS) {
+            StringBuilder row = new StringBuilder(String.format("%8d", threads));
+            for (Workload workload : Workload.values()) {
+                row.append(String.format("%,18.0f", measure(workload, threads, nanos)));
+            }
+            System.out.println(row);
+        }
+    }
+
+    /**
+     * Runs one workload on a fresh inventory.
+     *
+     * @param workload The workload.
+     * @param threads  The number of threads.
+     * @param nanos    How long to run.
+     * @return Operations completed per second.
+     * @throws InterruptedException If the run is interrupted.
+     */
+    private static double measure(Workload workload, int threads, long nanos) throws InterruptedException {
+        TradingCardInventorySystem tcis = new TradingCardInventorySystem();
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = tcis.getCatalog().intern("Card " + i, Rarity.UNCOMMON, Variant.NORMAL, Money.ofCents(100 + i));
+            tcis.addCards(card, COLLECTION_COPIES + COPIES_PER_BINDER * threads);
+            cards.add(card);
+        }
+        List<Operation> operations = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            operations.add(workload.prepare(tcis, cards, t));
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] completed = new long[threads];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Random random = new Random(SEED + t);
+            Thread worker = new Thread(() -> {
+                Operation operation = operations.get(thread);
+                long done = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    try {
+                        operation.run(random);
+                        done++;
+                    } catch (IllegalArgumentException | IllegalStateException refused) {
+                        // Too few copies or too much contention; nothing changed.
+                    }
+                }
+                completed[thread] = done;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        Thread.sleep(nanos / 1_000_000);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - began;
+
+        long total = 0;
+        for (long done : completed) {
+            total += done;
+        }
+        return total * 1e9 / elapsed;
+    }
+}
@@ -19,6 +19,7 @@ import enums.*;
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
+import java.util.Set;
 import java.awt.event.*;
 
 public class BinderViewHelper extends CardContainerViewHelper {
@@ -80,17 +81,17 @@ public class BinderViewHelper extends CardContainerViewHelper {
 
         if (binder.getType() == BinderType.LUXURY) {
             addStyledButton(buttonPanel, "Set Price", e -> {
-                double min = binder.getTotalValue();
+                Money min = binder.getTotalValue();
                 String input = JOptionPane.showInputDialog(
                     null,
-                    String.format("Enter new price for '%s' (min $%.2f):", binder.getName(), min),
-                    String.format("%.2f", min)
+                    String.format("Enter new price for '%s' (min $%s):", binder.getName(), min),
+                    min.toString()
                 );
                 if (input != null) {
                     try {
-                        double newPrice = Double.parseDouble(input);
-                        if (newPrice < min) {
-                            showErrorDialog("Price must be at least $" + String.format("%.2f", min));
+                        Money newPrice = Money.parse(input);
+                        if (newPrice.compareTo(min) < 0) {
+                            showErrorDialog("Price must be at least $" + min);
                         } else {
                             binderController.handleSetPrice(binder, newPrice);
                         }
@@ -175,12 +176,13 @@ public class BinderViewHelper extends CardContainerViewHelper {
      * @return The selected card, or null if cancelled.
      */
     public static Card selectOutgoingCard(Binder binder) {
-        if (binder.getCards().isEmpty()) {
+        Set<Card> cards = binder.getCards();
+        if (cards.isEmpty()) {
             showErrorDialog("No cards available to trade!");
             return null;
         }
 
-        JComboBox<Card> cardCombo = new JComboBox<>(binder.getCards().toArray(new Card[0]));
+        JComboBox<Card> cardCombo = new JComboBox<>(cards.toArray(new Card[0]));
         JPanel panel = new JPanel();
         panel.add(new JLabel("Select card to trade away:"));
         panel.add(cardCombo);
@@ -193,10 +195,13 @@ public class BinderViewHelper extends CardContainerViewHelper {
 
     /**
      * Opens a dialog to create the incoming card in a trade.
+     * If the name is close to cards already in the catalog, those are offered instead.
      *
+     * @param binder  The binder the card will go into.
+     * @param catalog The catalog to suggest existing cards from.
      * @return A new Card object if created successfully, or null if cancelled.
      */
-    public static Card createIncomingCardDialog(Binder binder) {
+    public static Card createIncomingCardDialog(Binder binder, CardCatalog catalog) {
         JTextField nameField = new JTextField();
         JComboBox<Rarity> rarityBox = new JComboBox<>(Rarity.values());
         JComboBox<Variant> variantBox = new JComboBox<>(Variant.values());
@@ -217,8 +222,10 @@ public class BinderViewHelper extends CardContainerViewHelper {
                         nameField.getText().trim(),
                         (Rarity) rarityBox.getSelectedItem(),
                         (Variant) variantBox.getSelectedItem(),
-                        Double.parseDouble(valueField.getText())
+                        Money.parse(valueField.getText())
                     );
+                card = suggestExistingCard(catalog, card);
+                if (card == null) continue;
             	if(!binder.canAddCard(card)) {
             		throw new IllegalArgumentException("Card does not meet the requirements of the binder.");
             	}
@@ -240,9 +247,9 @@ public class BinderViewHelper extends CardContainerViewHelper {
      * @param difference  The value difference.
      * @return True if the user confirms, false otherwise.
      */
-    public static boolean confirmUnbalancedTrade(String outgoingStr, String incomingStr, double difference) {
+    public static boolean confirmUnbalancedTrade(String outgoingStr, String incomingStr, Money difference) {
         String message = String.format(
-            "Trade Imbalance!\n\nOutgoing: %s\nIncoming: %s\n\nDifference: $%.2f\n\nProceed anyway?",
+            "Trade Imbalance!\n\nOutgoing: %s\nIncoming: %s\n\nDifference: $%s\n\nProceed anyway?",
             outgoingStr, incomingStr, difference
         );
 
@@ -276,12 +283,13 @@ public class BinderViewHelper extends CardContainerViewHelper {
         Binder binder = (Binder) container;
         BinderController binderController = (BinderController) controller;
 
-        List<Card> availableCards = tcis.getCollection().getAllCards().stream()
-            .filter(card -> !binder.getCards().contains(card))
+        Collection collection = tcis.getCollection();
+        List<Card> availableCards = collection.cardsOf(binder.getAdmissionTable().select(collection)).stream()
+            .filter(card -> binder.getCardCount(card) == 0)
             .toList();
 
         if (availableCards.isEmpty()) {
-            showErrorDialog("No available cards in collection to add!");
+            showErrorDialog("No cards in collection that this binder accepts!");
             return;
         }
 
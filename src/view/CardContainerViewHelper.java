@@ -18,9 +18,13 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.List;
+import java.util.Set;
 
 
 public abstract class CardContainerViewHelper {
+
+    /** Most existing cards offered when a typed name looks like a typo. */
+    private static final int SUGGESTION_LIMIT = 10;
 	
 	  /**
      * Adds a standardized action button to a container panel.
@@ -83,9 +87,7 @@ public abstract class CardContainerViewHelper {
      */
 
     protected static Card selectCardToRemove(CardContainer container) {
-        List<Card> available = container.getCards().stream()
-            .filter(c -> container.getCardCount(c) > 0)
-            .toList();
+        Set<Card> available = container.getCards();
         if (available.isEmpty()) {
             showErrorDialog("No cards available to remove.");
             return null;
@@ -116,19 +118,20 @@ public abstract class CardContainerViewHelper {
      */
     public static void showContainerDetails(CardContainer container) {
     	StringBuilder sb = new StringBuilder();
+        ContainerSnapshot snapshot = container.snapshot();
         int i = 1;
         // Format each card's information
-        for (Card c : container.getCards()) {
-            sb.append(String.format("[%d]. Name : %s | Rarity: %s | Variant: %s | Base: $%.2f\n", 
+        for (Card c : snapshot.getCards()) {
+            sb.append(String.format("[%d]. Name : %s | Rarity: %s | Variant: %s | Base: $%s\n", 
             						i, c.getName(), c.getRarity(), c.getVariant(), c.getBaseValue()));
             i++;
         }
         // Append total value at bottom
-        sb.append("\nTotal Value: $").append(container.getTotalValue());
+        sb.append("\nTotal Value: $").append(snapshot.getTotalValue());
         if (container instanceof Binder binder && binder.isSellable()) {
-            sb.append(String.format("\nSell Price: $%.2f", binder.getSellingValue()));
+            sb.append(String.format("\nSell Price: $%s", binder.getSellingValue()));
         } else if (container instanceof Deck deck && deck.isSellable()) {
-            sb.append(String.format("\nSell Price: $%.2f", deck.getTotalValue()));
+            sb.append(String.format("\nSell Price: $%s", deck.getTotalValue()));
         }
         JOptionPane.showMessageDialog(null, sb.toString());
     }
@@ -159,6 +162,36 @@ public abstract class CardContainerViewHelper {
 	    panel.add(Box.createVerticalStrut(8));
 	}
     
+    /**
+     * Offers existing catalog cards with names close to a typed one, so a misspelled name does not
+     * create a near-duplicate card. Nothing is asked if the catalog already has the exact name or
+     * nothing close to it.
+     *
+     * @param catalog The catalog to search.
+     * @param typed   The card as typed by the user.
+     * @return The existing card picked, the typed card if the user keeps it, or null if cancelled.
+     */
+    public static Card suggestExistingCard(CardCatalog catalog, Card typed) {
+        List<Card> similar = catalog.findSimilar(typed.getName(), SUGGESTION_LIMIT);
+        if (similar.isEmpty() || similar.stream().anyMatch(card -> card.getName().equals(typed.getName()))) {
+            return typed;
+        }
+
+        DefaultListModel<Object> options = new DefaultListModel<>();
+        options.addElement("Keep \"" + typed.getName() + "\" as a new card");
+        similar.forEach(options::addElement);
+        JList<Object> list = new JList<>(options);
+        list.setSelectedIndex(1);
+        list.setVisibleRowCount(Math.min(options.size(), 8));
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel("Did you mean one of these existing cards?"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(list), BorderLayout.CENTER);
+        int result = JOptionPane.showConfirmDialog(null, panel, "Similar Cards", JOptionPane.OK_CANCEL_OPTION);
+        if (result != JOptionPane.OK_OPTION) return null;
+        return list.getSelectedValue() instanceof Card card ? card : typed;
+    }
+    
     /**
      * Abstract method to show card addition dialog (implemented by subclasses).
      * 
@@ -15,6 +15,8 @@ import model.*;
 import controller.*;
 import enums.*;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.util.List;
 
@@ -23,6 +25,11 @@ public class CollectionPanel extends JPanel {
     private TradingCardInventorySystem tcis;
     private TCISGUI parentGui;
     private JPanel cardsGrid;
+    private JTextField searchField;
+    private JLabel searchStatus;
+
+    /** Most cards shown for a search, so each keystroke only builds a screenful of panels. */
+    private static final int SEARCH_LIMIT = 60;
 
     /**
      * Constructs a {@code CollectionPanel} with the given inventory system and parent GUI.
@@ -45,12 +52,38 @@ public class CollectionPanel extends JPanel {
         addCardButton.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
         addCardButton.addActionListener(e -> CollectionController.openAddCardDialog(tcis, parentGui, this));
 
-        // Top bar containing the Add Card button
+        // Bulk import from a CSV or JSON-lines price list
+        JButton importButton = new JButton("Import");
+        importButton.setFont(FontManager.NEXA_H.deriveFont(22f));
+        importButton.setBackground(new Color(100, 140, 240));
+        importButton.setForeground(Color.WHITE);
+        importButton.setFocusPainted(false);
+        importButton.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
+        importButton.addActionListener(e -> CollectionController.openImportDialog(tcis, parentGui, this));
+
+        // Top bar containing the Add Card and Import buttons
         JPanel topBar = new JPanel();
         topBar.setBackground(new Color(245, 245, 250));
         topBar.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         topBar.setLayout(new FlowLayout(FlowLayout.LEFT));
         topBar.add(addCardButton);
+        topBar.add(importButton);
+
+        // Search-as-you-type box over the collection's name index
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(FontManager.NEXA_H.deriveFont(18f));
+        searchField = new JTextField(18);
+        searchField.setFont(FontManager.NEXA_H.deriveFont(18f));
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { refreshCards(); }
+            public void removeUpdate(DocumentEvent e) { refreshCards(); }
+            public void changedUpdate(DocumentEvent e) { refreshCards(); }
+        });
+        searchStatus = new JLabel();
+        topBar.add(Box.createHorizontalStrut(20));
+        topBar.add(searchLabel);
+        topBar.add(searchField);
+        topBar.add(searchStatus);
         add(topBar, BorderLayout.NORTH);
 
         // Grid layout for displaying cards (3 per row)
@@ -71,22 +104,38 @@ public class CollectionPanel extends JPanel {
     /**
      * Rebuilds and repopulates the card grid with the current card collection.
      * Clears existing components before re-adding updated card panels.
+     * While the search box has text, only the first matches of a name prefix search are shown,
+     * and only their counts are looked up, so a keystroke does not walk the whole collection.
      */
     public void refreshCards() {
         cardsGrid.removeAll();
-        List<Card> allCards = tcis.getCollection().getAllCards();
+        String query = searchField.getText().trim();
+        List<Card> matches = null;
+        if (query.isEmpty()) {
+            searchStatus.setText("");
+        } else {
+            matches = tcis.getCollection().findByNamePrefix(query, SEARCH_LIMIT);
+            searchStatus.setText(matches.size() == SEARCH_LIMIT
+                ? "First " + SEARCH_LIMIT + " matches" : matches.size() + " matches");
+        }
+        // Taken after the search, so a match sold meanwhile shows up with no copies and is skipped.
+        ContainerSnapshot contents = tcis.getCollection().snapshot();
+        Iterable<Card> shown = matches != null ? matches : contents.getCards();
 
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(10, 10, 10, 10);
         gbc.anchor = GridBagConstraints.NORTHWEST;
         gbc.fill = GridBagConstraints.NONE;
 
-        for (int i = 0; i < allCards.size(); i++) {
-            Card card = allCards.get(i);
-            JPanel cardPanel = createFixedCardPanel(card);
+        int i = 0;
+        for (Card card : shown) {
+            int count = contents.getCardCount(card);
+            if (count == 0) continue;
+            JPanel cardPanel = createFixedCardPanel(card, count);
             gbc.gridx = i % 3;
             gbc.gridy = i / 3;
             cardsGrid.add(cardPanel, gbc);
+            i++;
         }
 
         cardsGrid.revalidate();
@@ -96,10 +145,11 @@ public class CollectionPanel extends JPanel {
     /**
      * Creates a styled and sized panel for displaying a card’s data and action buttons.
      *
-     * @param card the card to display
+     * @param card   the card to display
+     * @param copies the number of copies in the collection
      * @return the constructed {@code JPanel} representing the card
      */
-    private JPanel createFixedCardPanel(Card card) {
+    private JPanel createFixedCardPanel(Card card, int copies) {
         JPanel cardPanel = new JPanel();
         cardPanel.setPreferredSize(new Dimension(220, 320));
         cardPanel.setBackground(getColorByRarity(card.getRarity()));
@@ -122,14 +172,14 @@ public class CollectionPanel extends JPanel {
         contentPanel.add(nameLabel);
         contentPanel.add(Box.createVerticalStrut(8));
 
-        JLabel copiesLabel = new JLabel("Copies: " + tcis.getCollection().getCardCount(card));
+        JLabel copiesLabel = new JLabel("Copies: " + copies);
         copiesLabel.setFont(FontManager.NEXA_EL.deriveFont(15f));
         copiesLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         copiesLabel.setHorizontalAlignment(SwingConstants.CENTER);
         contentPanel.add(copiesLabel);
         contentPanel.add(Box.createVerticalStrut(5));
 
-        JLabel valueLabel = new JLabel("Value: $" + String.format("%.2f", card.getTotalValue()));
+        JLabel valueLabel = new JLabel("Value: $" + card.getTotalValue());
         valueLabel.setFont(FontManager.NEXA_H.deriveFont(15f));
         valueLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         valueLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -14,7 +14,6 @@ import model.*;
 import controller.*;
 import enums.*;
 import java.util.List;
-import java.util.Map;
 import javax.swing.*;
 import java.awt.*;
 
@@ -160,9 +159,7 @@ public class DeckViewHelper extends CardContainerViewHelper {
         }
 
         // Get available cards from collection
-        List<Card> availableCards = tcis.getCollection().getCardsWithCounts().entrySet().stream()
-            .filter(entry -> entry.getValue() > 0)
-            .map(Map.Entry::getKey)
+        List<Card> availableCards = tcis.getCollection().getCards().stream()
             .filter(card -> !deck.hasCard(card.getName()))
             .toList();
 
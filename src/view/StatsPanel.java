@@ -1,6 +1,7 @@
 /**
  * A Swing panel that shows live statistics from the Trading Card Inventory System in a clean and interactive layout.
- * This panel displays total money, total cards, number of binders, and number of decks,
+ * This panel displays total money, total cards, number of binders, number of decks, the number of
+ * distinct cards owned and the value of the most valuable one,
  * each inside visually styled cards with rounded corners, accent colors, and hover effects.
  * It updates dynamically using system data and is designed to give users a quick overview
  * of their collection at a glance.
@@ -20,13 +21,15 @@ import java.awt.event.MouseEvent;
 
 /**
  * Panel displaying real-time statistics from the inventory system in card-style boxes.
- * Includes cards for total money, total cards, total binders, and total decks.
+ * Includes cards for total money, total cards, total binders, total decks, card types and top value.
  */
 public class StatsPanel extends JPanel {
     private JLabel moneyLabel;
     private JLabel totalCardsLabel;
     private JLabel binderCountLabel;
     private JLabel deckCountLabel;
+    private JLabel cardTypesLabel;
+    private JLabel topValueLabel;
     private TradingCardInventorySystem tcis;
 
     /**
@@ -36,7 +39,7 @@ public class StatsPanel extends JPanel {
      */
     public StatsPanel(TradingCardInventorySystem tcis) {
         this.tcis = tcis;
-        setLayout(new GridLayout(2, 2, 20, 20));
+        setLayout(new GridLayout(3, 2, 20, 20));
         setBackground(new Color(240, 240, 250));
         setBorder(BorderFactory.createEmptyBorder(30, 30, 30, 30));
 
@@ -44,11 +47,15 @@ public class StatsPanel extends JPanel {
         totalCardsLabel = new JLabel();
         binderCountLabel = new JLabel();
         deckCountLabel = new JLabel();
+        cardTypesLabel = new JLabel();
+        topValueLabel = new JLabel();
 
         add(createStatCard("Total Money", moneyLabel, new Color(100, 140, 240)));
         add(createStatCard("Total Cards", totalCardsLabel, new Color(120, 200, 255)));
         add(createStatCard("Total Binders", binderCountLabel, new Color(180, 150, 255)));
         add(createStatCard("Total Decks", deckCountLabel, new Color(255, 180, 120)));
+        add(createStatCard("Card Types", cardTypesLabel, new Color(120, 210, 170)));
+        add(createStatCard("Most Valuable", topValueLabel, new Color(240, 120, 150)));
 
         refreshStats();
     }
@@ -102,10 +109,22 @@ public class StatsPanel extends JPanel {
      * Updates the displayed statistics with current data from {@code tcis}.
      */
     public void refreshStats() {
-        moneyLabel.setText("$" + String.format("%.2f", tcis.getMoney()));
+        moneyLabel.setText("$" + tcis.getMoney());
         totalCardsLabel.setText(String.valueOf(tcis.getTotalCardCount()));
-        binderCountLabel.setText(String.valueOf(tcis.getBinders().size()));
-        deckCountLabel.setText(String.valueOf(tcis.getDecks().size()));
+        binderCountLabel.setText(String.valueOf(tcis.getBinderCount()));
+        deckCountLabel.setText(String.valueOf(tcis.getDeckCount()));
+
+        ValueIndex values = tcis.getValueIndex();
+        cardTypesLabel.setText(String.valueOf(values.size()));
+        java.util.List<ValueIndex.Entry> top = values.top(1);
+        if (top.isEmpty()) {
+            topValueLabel.setText("-");
+            topValueLabel.setToolTipText(null);
+        } else {
+            Card card = top.get(0).card();
+            topValueLabel.setText("$" + card.getTotalValue());
+            topValueLabel.setToolTipText(card.getName());
+        }
     }
 
     /**
@@ -13,9 +13,13 @@
 package view;
 
 import model.*;
+import persistence.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * The main GUI window that manages layout and navigation between the different views
@@ -23,6 +27,7 @@ import java.awt.event.*;
  */
 public class TCISGUI extends JFrame {
     private TradingCardInventorySystem tcis;
+    private InventoryHistory history;
     private JLabel moneyLabel;
     private StatsPanel statsPanel;
     private JPanel contentPanel;
@@ -38,6 +43,7 @@ public class TCISGUI extends JFrame {
      */
     public TCISGUI(TradingCardInventorySystem tcis) {
         this.tcis = tcis;
+        this.history = new InventoryHistory(tcis);
         setTitle("Trading Card Inventory System");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1100, 750);
@@ -56,13 +62,49 @@ public class TCISGUI extends JFrame {
         titleLabel.setForeground(Color.WHITE);
         titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        moneyLabel = new JLabel("$0.0", SwingConstants.CENTER);
+        moneyLabel = new JLabel("$0.00", SwingConstants.CENTER);
         moneyLabel.setFont(FontManager.NEXA_H.deriveFont(22f));
         moneyLabel.setForeground(Color.WHITE);
         moneyLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
+        // Undo/redo controls
+        JPanel historyBar = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
+        historyBar.setOpaque(false);
+        JButton undoBtn = new JButton("Undo");
+        JButton redoBtn = new JButton("Redo");
+        JButton saveBtn = new JButton("Save");
+        JButton openBtn = new JButton("Open");
+        JButton exportBtn = new JButton("Export");
+        undoBtn.addActionListener(e -> undo());
+        redoBtn.addActionListener(e -> redo());
+        saveBtn.addActionListener(e -> saveSnapshot());
+        openBtn.addActionListener(e -> openSnapshot());
+        exportBtn.addActionListener(e -> exportInventory());
+        historyBar.add(undoBtn);
+        historyBar.add(redoBtn);
+        historyBar.add(saveBtn);
+        historyBar.add(openBtn);
+        historyBar.add(exportBtn);
+
+        JRootPane root = getRootPane();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+            .put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+            .put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        root.getActionMap().put("undo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                undo();
+            }
+        });
+        root.getActionMap().put("redo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                redo();
+            }
+        });
+
         header.add(titleLabel);
         header.add(moneyLabel);
+        header.add(historyBar);
         add(header, BorderLayout.NORTH);
 
         // Sidebar setup
@@ -107,6 +149,7 @@ public class TCISGUI extends JFrame {
 
         // Load initial panel
         showCollectionPanel();
+        updateMoneyDisplay();
 
         setVisible(true);
     }
@@ -150,13 +193,15 @@ public class TCISGUI extends JFrame {
      * Updates the money label in the header to reflect current funds.
      */
     public void updateMoneyDisplay() {
-        moneyLabel.setText("$" + String.format("%.2f", tcis.getMoney()));
+        moneyLabel.setText("$" + tcis.getMoney());
     }
 
     /**
      * Updates the statistics panel if it is currently active.
+     * Every action ends with this call, so it also records the action as an undo step.
      */
     public void updateStatsPanel() {
+        history.record();
         if (statsPanel != null) {
             statsPanel.refreshStats();
         }
@@ -183,6 +228,97 @@ public class TCISGUI extends JFrame {
         repaint();
     }
 
+    /**
+     * Undoes the last action and refreshes the display.
+     */
+    public void undo() {
+        if (history.undo()) {
+            refreshAll();
+        }
+    }
+
+    /**
+     * Redoes the last undone action and refreshes the display.
+     */
+    public void redo() {
+        if (history.redo()) {
+            refreshAll();
+        }
+    }
+
+    /**
+     * Asks for a file and saves the whole inventory to it as a snapshot.
+     */
+    public void saveSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("inventory.snapshot"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try {
+            // Hold off operations until the file is written, so it matches the state on screen.
+            tcis.whileQuiescent(() -> {
+                try {
+                    SnapshotFile.save(tcis.snapshotState(), chooser.getSelectedFile().toPath());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not save: " + ex.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Asks for a snapshot file and replaces the whole inventory with it.
+     * Opening a snapshot is recorded like any other action, so it can be undone.
+     */
+    public void openSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try {
+            history.record();
+            SnapshotFile.open(chooser.getSelectedFile().toPath(), tcis.getCatalog()).loadInto(tcis);
+            refreshAll();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not open: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Asks for a file and exports the whole inventory to it as CSV, or as JSON for a {@code .json}
+     * file. The state is captured right away, between operations, and written on a background
+     * thread, so the window stays usable and later changes do not end up in the file.
+     */
+    public void exportInventory() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("inventory.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        InventorySnapshot state = tcis.snapshotState();
+        File file = chooser.getSelectedFile();
+        new SwingWorker<InventoryExporter.Report, Void>() {
+            @Override
+            protected InventoryExporter.Report doInBackground() throws IOException {
+                return InventoryExporter.export(state, file.toPath());
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    InventoryExporter.Report report = get();
+                    JOptionPane.showMessageDialog(TCISGUI.this, String.format(
+                        "Exported %,d rows (%,d bytes) in %,d ms.", report.rows(), report.bytes(),
+                        report.nanos() / 1_000_000));
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(TCISGUI.this, "Could not export: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Returns the current binder panel, if it has been initialized.
      *
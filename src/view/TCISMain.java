@@ -1,6 +1,7 @@
 /**
  * The entry point for launching the Trading Card Inventory System application.
- * Initializes the system backend and loads the main GUI on the Event Dispatch Thread (EDT)
+ * Initializes the system backend, recovers it from its checkpoint and log, and loads the main GUI on the
+ * Event Dispatch Thread (EDT)
  * 
  * @version 2.0  
  * @author Theodore Garcia  
@@ -10,21 +11,93 @@ package view;
 
 import controller.*;
 import model.*;
+import persistence.*;
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class TCISMain {
 
+    /** Directory holding the inventory's checkpoints and write-ahead log, recovered on startup. */
+    private static final String DATA_DIRECTORY = "inventory-data";
+
     /**
      * Main method that initializes the application.
      *
      * @param args command-line arguments (not used)
      */
     public static void main(String[] args) {
+        TradingCardInventorySystem tcis = new TradingCardInventorySystem();
+        InventoryStore store = openStore(tcis);
+
         SwingUtilities.invokeLater(() -> {
-            TradingCardInventorySystem tcis = new TradingCardInventorySystem();
             TCISGUI gui = new TCISGUI(tcis);
             gui.setVisible(true);
+            if (store == null) {
+                JOptionPane.showMessageDialog(gui, "Could not open " + DATA_DIRECTORY + "; changes will not be saved.");
+            } else {
+                store.getLog().setFailureListener(ex -> SwingUtilities.invokeLater(() -> warnNotSaving(gui, ex)));
+                if (store.getRecovery().rejected() > 0) {
+                    warnRecoveryRejected(gui, store.getRecovery());
+                }
+            }
         });
     }
+
+    /**
+     * Tells the user that the log could no longer be written and later changes are not being saved.
+     *
+     * @param gui The main window.
+     * @param ex  The write error.
+     */
+    private static void warnNotSaving(TCISGUI gui, IOException ex) {
+        gui.setTitle(gui.getTitle() + " (not saving)");
+        JOptionPane.showMessageDialog(gui, "Could not write " + DATA_DIRECTORY + ": " + ex.getMessage()
+            + "\nChanges made from now on will not be saved.", "Saving Stopped", JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Tells the user that some logged operations were refused while recovering, so the inventory
+     * shown differs from what was recorded.
+     *
+     * @param gui      The main window.
+     * @param recovery What was recovered.
+     */
+    private static void warnRecoveryRejected(TCISGUI gui, InventoryStore.Recovery recovery) {
+        gui.setTitle(gui.getTitle() + " (recovered with errors)");
+        JOptionPane.showMessageDialog(gui, String.format(
+            "%d of %d recorded changes in %s could not be applied while recovering."
+            + "\nThe inventory may differ from how it was left; check it before continuing.",
+            recovery.rejected(), recovery.events(), DATA_DIRECTORY), "Recovery Incomplete", JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Recovers the inventory from its last checkpoint and log, and keeps recording every later change.
+     * The store is flushed and closed when the application exits.
+     *
+     * @param tcis The freshly created system.
+     * @return The open store, or null if it could not be opened.
+     */
+    private static InventoryStore openStore(TradingCardInventorySystem tcis) {
+        try {
+            InventoryStore store = InventoryStore.open(Path.of(DATA_DIRECTORY), tcis);
+            InventoryStore.Recovery recovery = store.getRecovery();
+            if (recovery.rejected() > 0) {
+                System.err.println("Recovered " + DATA_DIRECTORY + " with " + recovery.rejected() + " of "
+                                   + recovery.events() + " logged changes refused: " + recovery);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException ex) {
+                    System.err.println("Could not write " + DATA_DIRECTORY + ": " + ex.getMessage());
+                }
+            }));
+            return store;
+        } catch (IOException ex) {
+            System.err.println("Could not open " + DATA_DIRECTORY + ": " + ex.getMessage());
+            return null;
+        }
+    }
 }